@@ -0,0 +1,17 @@
+package org.schabi.newpipe.extractor;
+
+/**
+ * Receives the outcome of an asynchronous operation, on the thread which completed it.
+ * <p>
+ * Not called when the operation was cancelled.
+ */
+public interface AsyncCallback<T> {
+
+    void onSuccess(T result);
+
+    /**
+     * @param e usually an {@link java.io.IOException} or an
+     *          {@link org.schabi.newpipe.extractor.exceptions.ExtractionException}
+     */
+    void onFailure(Exception e);
+}
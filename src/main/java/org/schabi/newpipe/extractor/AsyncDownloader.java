@@ -0,0 +1,30 @@
+package org.schabi.newpipe.extractor;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Downloader} which is able to make requests without blocking the calling thread.
+ * <p>
+ * Implementations backed by a non-blocking HTTP client can serve many requests with a few threads.
+ * Blocking downloaders can be adapted with
+ * {@link org.schabi.newpipe.extractor.downloader.AsyncDownloaderAdapter}, which runs them on an executor.
+ */
+public interface AsyncDownloader extends Downloader {
+
+    /**
+     * Start a request to the supplied URL.
+     * <p>
+     * Cancelling the returned future aborts the request; a response which arrives anyway is closed.
+     * Otherwise, the caller is responsible for calling {@link DownloadResponse#close()} on the response.
+     *
+     * @param siteUrl        the URL of the resource to download
+     * @param requestHeaders request header properties, may be empty
+     * @param callback       called once the response headers arrived or the request failed, may be null
+     * @return a future completed with the response, or failed with an {@link java.io.IOException} or a
+     * {@link org.schabi.newpipe.extractor.exceptions.ReCaptchaException}
+     */
+    Future<DownloadResponse> downloadAsync(String siteUrl, Map<String, String> requestHeaders,
+                                           @Nullable AsyncCallback<DownloadResponse> callback);
+}
@@ -0,0 +1,212 @@
+package org.schabi.newpipe.extractor;
+
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time an extraction may take, which can also be cancelled before it is over.
+ * <p>
+ * A deadline is made current for a thread with {@link #setCurrent(Deadline)}, and applies to everything the
+ * extractors do on it: fetching pages, parsing DASH manifests, loading the signature decrypter, paging...
+ * Work handed to an executor by the extractor keeps the deadline of the thread which submitted it.
+ * <pre>
+ *     final Deadline previous = Deadline.setCurrent(Deadline.after(5, TimeUnit.SECONDS));
+ *     try {
+ *         info = StreamInfo.getInfo(url);
+ *     } finally {
+ *         Deadline.setCurrent(previous);
+ *     }
+ * </pre>
+ * Downloaders get it through {@link #current()} to bound their timeouts by {@link #getRemainingMillis()}.
+ * Those which don't can be wrapped in a {@link org.schabi.newpipe.extractor.downloader.DeadlineDownloader}.
+ */
+public class Deadline {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The time it expires at, in {@link System#nanoTime()}, or -1 if it never does
+     */
+    private final long expiresAt;
+    private volatile boolean cancelled = false;
+    private final Set<Closeable> resources = Collections.newSetFromMap(new ConcurrentHashMap<Closeable, Boolean>());
+
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Nonnull
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * A deadline without time limit, which is only over once cancelled.
+     */
+    @Nonnull
+    public static Deadline cancellable() {
+        return new Deadline(-1);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // State
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * @return the time left in milliseconds, 0 if it is over and {@link Long#MAX_VALUE} if there is no time limit
+     */
+    public long getRemainingMillis() {
+        if (cancelled) return 0;
+        if (expiresAt == -1) return Long.MAX_VALUE;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    /**
+     * Whether the time is over or the deadline was cancelled.
+     */
+    public boolean isOver() {
+        return cancelled || (expiresAt != -1 && expiresAt - System.nanoTime() <= 0);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancel the work bound to this deadline: the next check fails, and the responses being read are closed.
+     */
+    public void cancel() {
+        cancelled = true;
+        final List<Closeable> toClose = new ArrayList<>(resources);
+        resources.clear();
+        for (Closeable resource : toClose) {
+            closeQuietly(resource);
+        }
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline is over
+     */
+    public void check() throws DeadlineExceededException {
+        if (cancelled) throw new DeadlineExceededException("Extraction cancelled");
+        if (isOver()) throw new DeadlineExceededException("Extraction deadline exceeded");
+    }
+
+    /**
+     * Close the resource if the deadline is cancelled before it is {@link #unregister(Closeable) unregistered}.
+     */
+    public void register(Closeable resource) {
+        resources.add(resource);
+        // cancel() may have gone through the resources before it was added
+        if (cancelled && resources.remove(resource)) closeQuietly(resource);
+    }
+
+    public void unregister(Closeable resource) {
+        resources.remove(resource);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Current deadline
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * The deadline of the extraction running on this thread, falling back to the one of the
+     * {@link ExtractionContext#current() current context}, or null if there is none.
+     */
+    @Nullable
+    public static Deadline current() {
+        final Deadline deadline = CURRENT.get();
+        if (deadline != null) return deadline;
+        final ExtractionContext context = ExtractionContext.currentOrNull();
+        return context == null ? null : context.getDeadline();
+    }
+
+    /**
+     * Make the deadline the current one of this thread.
+     *
+     * @param deadline the new deadline, or null to remove it
+     * @return the previous one, to restore once done
+     */
+    @Nullable
+    public static Deadline setCurrent(@Nullable Deadline deadline) {
+        final Deadline previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+
+    /**
+     * Check the current deadline of this thread, if there is one.
+     *
+     * @throws DeadlineExceededException if it is over
+     */
+    public static void checkCurrent() throws DeadlineExceededException {
+        final Deadline deadline = current();
+        if (deadline != null) deadline.check();
+    }
+
+    /**
+     * Bind the runnable to the current deadline, for running it on another thread.
+     * <p>
+     * Like {@link #wrap(Callable)}, the runnable is not run if the deadline is over by then.
+     * It has no way to report the {@link DeadlineExceededException}, so it is skipped silently.
+     */
+    @Nonnull
+    public static Runnable wrap(final Runnable runnable) {
+        final Deadline deadline = current();
+        if (deadline == null) return runnable;
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (deadline.isOver()) return;
+                final Deadline previous = setCurrent(deadline);
+                try {
+                    runnable.run();
+                } finally {
+                    setCurrent(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Bind the callable to the current deadline, for running it on another thread.
+     */
+    @Nonnull
+    public static <V> Callable<V> wrap(final Callable<V> callable) {
+        final Deadline deadline = current();
+        if (deadline == null) return callable;
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                final Deadline previous = setCurrent(deadline);
+                try {
+                    deadline.check();
+                    return callable.call();
+                } finally {
+                    setCurrent(previous);
+                }
+            }
+        };
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package org.schabi.newpipe.extractor;
+
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Response of a download, with the body available as a stream.
+ * <p>
+ * Obtained through {@link #open(Downloader, String, Map)} which uses
+ * {@link StreamingDownloader#downloadStream(String, Map)} when the downloader supports it and
+ * wraps the result of the plain {@link Downloader#download(String, Map)} otherwise.
+ */
+public class DownloadResponse implements Closeable {
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    /**
+     * The value of the "Accept-Encoding" header {@link StreamingDownloader}s should send,
+     * listing the encodings {@link #fromRawBody(String, int, Map, InputStream)} is able to decode.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final String url;
+    private final int responseCode;
+    private final Map<String, List<String>> responseHeaders;
+    @Nullable
+    private final String contentEncoding;
+
+    @Nullable
+    private final CountingInputStream body;
+    /**
+     * The body as received, before decoding. Same as {@link #body} if it was not encoded.
+     */
+    @Nullable
+    private final CountingInputStream wireBody;
+    @Nullable
+    private final String content;
+
+    public DownloadResponse(String url, int responseCode, Map<String, List<String>> responseHeaders,
+                            @Nonnull InputStream body) {
+        this(url, responseCode, responseHeaders, null, new CountingInputStream(body), null, null);
+    }
+
+    private DownloadResponse(String url, int responseCode, Map<String, List<String>> responseHeaders,
+                             @Nullable String contentEncoding, @Nullable CountingInputStream body,
+                             @Nullable CountingInputStream wireBody, @Nullable String content) {
+        this.url = url;
+        this.responseCode = responseCode;
+        this.responseHeaders = responseHeaders != null
+                ? responseHeaders : Collections.<String, List<String>>emptyMap();
+        this.contentEncoding = contentEncoding;
+        this.body = body;
+        this.wireBody = wireBody != null ? wireBody : body;
+        this.content = content;
+    }
+
+    /**
+     * Wrap a body as it was received, which is decoded according to its "Content-Encoding" header
+     * while it is read.
+     * <p>
+     * The "Content-Encoding" and "Content-Length" headers are left out of the response headers,
+     * since they don't describe the decoded body.
+     *
+     * @throws IOException if the encoding is not one of {@link #ACCEPT_ENCODING}
+     */
+    public static DownloadResponse fromRawBody(String url, int responseCode, Map<String, List<String>> responseHeaders,
+                                               @Nonnull InputStream rawBody) throws IOException {
+        final String encoding = getHeader(responseHeaders, "Content-Encoding");
+        if (encoding == null || encoding.trim().isEmpty() || encoding.trim().equalsIgnoreCase("identity")) {
+            return new DownloadResponse(url, responseCode, responseHeaders, rawBody);
+        }
+
+        final Map<String, List<String>> decodedHeaders = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            if (!"Content-Encoding".equalsIgnoreCase(header.getKey())
+                    && !"Content-Length".equalsIgnoreCase(header.getKey())) {
+                decodedHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+
+        final CountingInputStream wireBody = new CountingInputStream(rawBody);
+        final CountingInputStream body = new CountingInputStream(decode(wireBody, encoding.trim().toLowerCase()));
+        return new DownloadResponse(url, responseCode, decodedHeaders, encoding.trim().toLowerCase(), body,
+                wireBody, null);
+    }
+
+    private static InputStream decode(InputStream wireBody, String encoding) throws IOException {
+        final PushbackInputStream input = new PushbackInputStream(wireBody, 2);
+        final byte[] start = new byte[2];
+        // A single read may return only one byte, even if more are coming
+        int read = 0;
+        while (read < start.length) {
+            final int result = input.read(start, read, start.length - read);
+            if (result == -1) break;
+            read += result;
+        }
+        // Bodies of e.g. 304 responses are empty, even if the response claims an encoding
+        if (read == 0) return input;
+        input.unread(start, 0, read);
+
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(input, 8192);
+            case "deflate":
+                // Should be in the zlib format, but some servers send raw deflate data
+                final boolean zlib = read == 2 && (start[0] & 0x0f) == 8
+                        && (((start[0] & 0xff) << 8) | (start[1] & 0xff)) % 31 == 0;
+                return new InflaterInputStream(input, new Inflater(!zlib), 8192);
+            default:
+                throw new IOException("Unsupported content encoding: " + encoding);
+        }
+    }
+
+    /**
+     * A response like this one, whose body is read through the given stream instead, e.g. to watch
+     * or limit how it is read. The stream should read from {@link #getInputStream()}.
+     * <p>
+     * The encoding and the count of the bytes received stay the ones of this response.
+     */
+    public DownloadResponse withBody(@Nonnull InputStream body) {
+        final CountingInputStream countedBody = new CountingInputStream(body);
+        return new DownloadResponse(url, responseCode, responseHeaders, contentEncoding, countedBody,
+                wireBody != null ? wireBody : countedBody, null);
+    }
+
+    /**
+     * Wrap an already downloaded body, e.g. the result of {@link Downloader#download(String)}.
+     */
+    public static DownloadResponse fromString(String url, @Nonnull String content) {
+        return new DownloadResponse(url, 200, null, null, null, null, content);
+    }
+
+    public static DownloadResponse open(Downloader downloader, String siteUrl) throws IOException, ReCaptchaException {
+        return open(downloader, siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Download the given url with the given downloader, streaming the body if the downloader is a
+     * {@link StreamingDownloader}.
+     */
+    public static DownloadResponse open(Downloader downloader, String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        if (downloader instanceof StreamingDownloader) {
+            return ((StreamingDownloader) downloader).downloadStream(siteUrl, requestHeaders);
+        }
+
+        final String result = requestHeaders.isEmpty()
+                ? downloader.download(siteUrl)
+                : downloader.download(siteUrl, requestHeaders);
+        return fromString(siteUrl, result);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Getters
+    //////////////////////////////////////////////////////////////////////////*/
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Nonnull
+    public Map<String, List<String>> getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * Get the first value of a response header, ignoring the case of its name.
+     *
+     * @return the value or null if the header is not present
+     */
+    @Nullable
+    public String getHeader(String name) {
+        return getHeader(responseHeaders, name);
+    }
+
+    @Nullable
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name)
+                    && entry.getValue() != null && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The encoding the body was transferred with, e.g. "gzip", or null if it was sent as is.
+     * The body handed out by this response is always decoded.
+     */
+    @Nullable
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * How many bytes of the body were received so far, before decoding.
+     * For a body which was downloaded as a string, this is its size in UTF-8.
+     */
+    public long getWireBytes() {
+        if (wireBody == null) return getDecodedBytes();
+        return wireBody.getCount();
+    }
+
+    /**
+     * How many bytes of the decoded body were read so far.
+     */
+    public long getDecodedBytes() {
+        if (body != null) return body.getCount();
+        //noinspection ConstantConditions
+        return content.getBytes(Charset.forName(DEFAULT_CHARSET)).length;
+    }
+
+    /**
+     * Get the charset declared in the "Content-Type" header, falling back to UTF-8.
+     */
+    @Nonnull
+    public String getCharset() {
+        final String contentType = getHeader("Content-Type");
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                    final String charset = param.substring("charset=".length()).replace("\"", "").trim();
+                    if (!charset.isEmpty() && Charset.isSupported(charset)) {
+                        return charset;
+                    }
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    /**
+     * The raw body of the response. Can only be consumed once.
+     */
+    @Nonnull
+    public InputStream getInputStream() throws IOException {
+        if (body != null) return body;
+        //noinspection ConstantConditions
+        return new ByteArrayInputStream(content.getBytes(DEFAULT_CHARSET));
+    }
+
+    /**
+     * The body of the response, decoded with {@link #getCharset()}. Can only be consumed once.
+     */
+    @Nonnull
+    public Reader getReader() throws IOException {
+        if (body != null) return new InputStreamReader(body, getCharset());
+        //noinspection ConstantConditions
+        return new StringReader(content);
+    }
+
+    /**
+     * Read the whole body into a string.
+     * <p>
+     * Only meant as an adapter for code that is not able to consume the body incrementally.
+     */
+    @Nonnull
+    public String readBody() throws IOException {
+        if (body == null) return content;
+
+        final StringBuilder builder = new StringBuilder();
+        final Reader reader = getReader();
+        final char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Read the whole raw body.
+     */
+    @Nonnull
+    public byte[] readBytes() throws IOException {
+        final InputStream inputStream = getInputStream();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body != null) body.close();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        /**
+         * Only written by the thread reading the body, but may be read by others
+         */
+        private volatile long count = 0;
+        private long mark = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = in.read();
+            if (result != -1) count++;
+            return result;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] buffer, int offset, int length) throws IOException {
+            final int result = in.read(buffer, offset, length);
+            if (result > 0) count += result;
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+            in.mark(readLimit);
+            mark = count;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            in.reset();
+            count = mark;
+        }
+    }
+}
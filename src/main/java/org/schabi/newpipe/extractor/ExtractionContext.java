@@ -0,0 +1,347 @@
+package org.schabi.newpipe.extractor;
+
+import org.schabi.newpipe.extractor.downloader.ForwardingDownloader;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+import org.schabi.newpipe.extractor.utils.ExpiringCache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Everything an extraction needs from its environment: the downloader, the preferred language,
+ * the deadline, the caches and where to report metrics to.
+ * <p>
+ * Several contexts can be used at the same time, e.g. one per user when serving many of them,
+ * by passing them to the factory methods of {@link StreamingService}. The extractors use the context
+ * they were created with for every request, including the ones made after the page was fetched.
+ * Code which doesn't get a context (the url handlers, the search engines, ...) uses the
+ * {@link #current() current context} of the thread, which is the {@link #getDefault() default one}
+ * set up by {@link NewPipe#init(Downloader)} unless another was made current.
+ * <p>
+ * Contexts are immutable; the {@code with} methods return a copy which shares the caches of the original.
+ */
+public final class ExtractionContext {
+    private static final ThreadLocal<ExtractionContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Receives the timings of the work done within a context
+     */
+    public interface MetricsSink {
+        /**
+         * Called once the response of a request arrived, or the request failed.
+         *
+         * @param millis the time until the response arrived
+         * @param error  the reason the request failed, or null if it didn't
+         */
+        void onDownload(String url, long millis, @Nullable Exception error);
+
+        /**
+         * Called once an extractor fetched its page, or failed to.
+         *
+         * @param millis the time spent fetching the page
+         * @param error  the reason the fetch failed, or null if it didn't
+         */
+        void onFetchPage(Extractor extractor, long millis, @Nullable Exception error);
+    }
+
+    public static final MetricsSink NO_METRICS = new MetricsSink() {
+        @Override
+        public void onDownload(String url, long millis, @Nullable Exception error) {
+        }
+
+        @Override
+        public void onFetchPage(Extractor extractor, long millis, @Nullable Exception error) {
+        }
+    };
+
+    /**
+     * Caches which are specific to a context, like the extracted streams whose urls only work
+     * for the address they were requested from.
+     */
+    public static final class Caches {
+        private final ConcurrentMap<String, ExpiringCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+        /**
+         * Get the cache with the given name, creating it with the given limits if it doesn't exist yet.
+         * The same name has to be used with the same types everywhere.
+         */
+        @Nonnull
+        @SuppressWarnings("unchecked")
+        public <K, V> ExpiringCache<K, V> get(String name, int maxSize, long timeToLive) {
+            ExpiringCache<?, ?> cache = caches.get(name);
+            if (cache == null) {
+                final ExpiringCache<K, V> created = new ExpiringCache<>(maxSize, timeToLive);
+                cache = caches.putIfAbsent(name, created);
+                if (cache == null) cache = created;
+            }
+            return (ExpiringCache<K, V>) cache;
+        }
+
+        public void clear() {
+            for (ExpiringCache<?, ?> cache : caches.values()) {
+                cache.clear();
+            }
+        }
+    }
+
+    private final Downloader downloader;
+    /**
+     * The downloader given out, which reports to the metrics sink
+     */
+    private final Downloader measuredDownloader;
+    @Nullable
+    private final String language;
+    @Nullable
+    private final Deadline deadline;
+    private final Caches caches;
+    private final MetricsSink metrics;
+
+    public ExtractionContext(@Nonnull Downloader downloader) {
+        this(downloader, null, null, new Caches(), NO_METRICS);
+    }
+
+    private ExtractionContext(@Nonnull Downloader downloader, @Nullable String language, @Nullable Deadline deadline,
+                              @Nonnull Caches caches, @Nonnull MetricsSink metrics) {
+        if (downloader == null) throw new NullPointerException("downloader is null");
+        if (caches == null) throw new NullPointerException("caches is null");
+        if (metrics == null) throw new NullPointerException("metrics is null");
+        this.downloader = downloader;
+        this.language = language;
+        this.deadline = deadline;
+        this.caches = caches;
+        this.metrics = metrics;
+        this.measuredDownloader = metrics == NO_METRICS ? downloader : new MeasuredDownloader(downloader, metrics);
+    }
+
+    @Nonnull
+    public ExtractionContext withDownloader(@Nonnull Downloader downloader) {
+        return new ExtractionContext(downloader, language, deadline, caches, metrics);
+    }
+
+    /**
+     * @param language the language the sites should answer in, as an "Accept-Language" value, or null for their default
+     */
+    @Nonnull
+    public ExtractionContext withLanguage(@Nullable String language) {
+        return new ExtractionContext(downloader, language, deadline, caches, metrics);
+    }
+
+    @Nonnull
+    public ExtractionContext withDeadline(@Nullable Deadline deadline) {
+        return new ExtractionContext(downloader, language, deadline, caches, metrics);
+    }
+
+    /**
+     * A copy which doesn't share the caches of this context.
+     */
+    @Nonnull
+    public ExtractionContext withNewCaches() {
+        return new ExtractionContext(downloader, language, deadline, new Caches(), metrics);
+    }
+
+    @Nonnull
+    public ExtractionContext withMetrics(@Nonnull MetricsSink metrics) {
+        return new ExtractionContext(downloader, language, deadline, caches, metrics);
+    }
+
+    /**
+     * The downloader to make the requests of this context with.
+     */
+    @Nonnull
+    public Downloader getDownloader() {
+        return measuredDownloader;
+    }
+
+    @Nullable
+    public String getLanguage() {
+        return language;
+    }
+
+    @Nullable
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    @Nonnull
+    public Caches getCaches() {
+        return caches;
+    }
+
+    @Nonnull
+    public MetricsSink getMetrics() {
+        return metrics;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Current context
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * The context set up by {@link NewPipe#init(Downloader)}.
+     *
+     * @throws IllegalStateException if NewPipe was not initialized
+     */
+    @Nonnull
+    public static ExtractionContext getDefault() {
+        final ExtractionContext context = NewPipe.getDefaultContext();
+        if (context == null) throw new IllegalStateException("NewPipe is not initialized");
+        return context;
+    }
+
+    /**
+     * The context made current on this thread, or the default one.
+     *
+     * @throws IllegalStateException if there is none
+     */
+    @Nonnull
+    public static ExtractionContext current() {
+        final ExtractionContext context = CURRENT.get();
+        return context != null ? context : getDefault();
+    }
+
+    /**
+     * Like {@link #current()}, but without failing when NewPipe was not initialized.
+     */
+    @Nullable
+    static ExtractionContext currentOrNull() {
+        final ExtractionContext context = CURRENT.get();
+        return context != null ? context : NewPipe.getDefaultContext();
+    }
+
+    /**
+     * Make the context the current one of this thread.
+     *
+     * @param context the new context, or null to use the default one again
+     * @return the previously set one, to restore once done
+     */
+    @Nullable
+    public static ExtractionContext setCurrent(@Nullable ExtractionContext context) {
+        final ExtractionContext previous = CURRENT.get();
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * Bind the runnable to the current context, {@link Deadline#current() deadline} and
+     * {@link RequestFlow#current() request flow} of this thread, for running it on another thread.
+     */
+    @Nonnull
+    public static Runnable wrap(Runnable runnable) {
+        final Runnable withDeadline = Deadline.wrap(RequestFlow.wrap(runnable));
+        final ExtractionContext context = CURRENT.get();
+        if (context == null) return withDeadline;
+        return new Runnable() {
+            @Override
+            public void run() {
+                final ExtractionContext previous = setCurrent(context);
+                try {
+                    withDeadline.run();
+                } finally {
+                    setCurrent(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Bind the callable to the current context, {@link Deadline#current() deadline} and
+     * {@link RequestFlow#current() request flow} of this thread, for running it on another thread.
+     */
+    @Nonnull
+    public static <V> Callable<V> wrap(Callable<V> callable) {
+        final Callable<V> withDeadline = Deadline.wrap(RequestFlow.wrap(callable));
+        final ExtractionContext context = CURRENT.get();
+        if (context == null) return withDeadline;
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                final ExtractionContext previous = setCurrent(context);
+                try {
+                    return withDeadline.call();
+                } finally {
+                    setCurrent(previous);
+                }
+            }
+        };
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Metrics
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static class MeasuredDownloader extends ForwardingDownloader {
+        private final MetricsSink metrics;
+
+        MeasuredDownloader(Downloader delegate, MetricsSink metrics) {
+            super(delegate);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String download(String siteUrl) throws IOException, ReCaptchaException {
+            final long start = System.nanoTime();
+            try {
+                final String page = super.download(siteUrl);
+                report(siteUrl, start, null);
+                return page;
+            } catch (IOException | ReCaptchaException | RuntimeException e) {
+                report(siteUrl, start, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+            final long start = System.nanoTime();
+            try {
+                final String page = super.download(siteUrl, language);
+                report(siteUrl, start, null);
+                return page;
+            } catch (IOException | ReCaptchaException | RuntimeException e) {
+                report(siteUrl, start, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public String download(String siteUrl, Map<String, String> customProperties)
+                throws IOException, ReCaptchaException {
+            final long start = System.nanoTime();
+            try {
+                final String page = super.download(siteUrl, customProperties);
+                report(siteUrl, start, null);
+                return page;
+            } catch (IOException | ReCaptchaException | RuntimeException e) {
+                report(siteUrl, start, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                throws IOException, ReCaptchaException {
+            final long start = System.nanoTime();
+            try {
+                final DownloadResponse response = super.downloadStream(siteUrl, requestHeaders);
+                report(siteUrl, start, null);
+                return response;
+            } catch (IOException | ReCaptchaException | RuntimeException e) {
+                report(siteUrl, start, e);
+                throw e;
+            }
+        }
+
+        private void report(String url, long start, @Nullable Exception error) {
+            metrics.onDownload(url, (System.nanoTime() - start) / 1000000, error);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.schabi.newpipe.extractor.exceptions.ParsingException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 public abstract class Extractor {
     /**
@@ -34,15 +35,25 @@ public abstract class Extractor {
     @Nullable
     private String cleanUrl;
     private boolean pageFetched = false;
-    private final Downloader downloader;
+    /**
+     * Where the requests of the extractor are made from, see {@link #setContext(ExtractionContext)}
+     */
+    @Nonnull
+    private ExtractionContext context;
+    /**
+     * Executor for the requests which can be issued concurrently, see {@link #setExecutor(Executor)}
+     */
+    @Nullable
+    private Executor executor;
 
     public Extractor(StreamingService service, String url) throws ExtractionException {
         if(service == null) throw new NullPointerException("service is null");
         if(url == null) throw new NullPointerException("url is null");
         this.service = service;
         this.originalUrl = url;
-        this.downloader = NewPipe.getDownloader();
-        if(downloader == null) throw new NullPointerException("downloader is null");
+        final ExtractionContext current = ExtractionContext.currentOrNull();
+        if(current == null) throw new NullPointerException("downloader is null");
+        this.context = current;
     }
 
     /**
@@ -53,12 +64,30 @@ public abstract class Extractor {
 
     /**
      * Fetch the current page.
-     * @throws IOException if the page can not be loaded
+     * <p>
+     * The context of the extractor is the current one while the page is fetched, so the helpers
+     * which don't get the downloader passed use it as well.
+     * @throws IOException if the page can not be loaded, or the {@link Deadline#current() current deadline} is over
      * @throws ExtractionException if the pages content is not understood
      */
     public void fetchPage() throws IOException, ExtractionException {
         if(pageFetched) return;
-        onFetchPage(downloader);
+        final ExtractionContext previousContext = ExtractionContext.setCurrent(context);
+        // The requests of the page belong together, unless they are part of a bigger flow already
+        final boolean newFlow = RequestFlow.current() == null;
+        if (newFlow) RequestFlow.setCurrent(new RequestFlow());
+        final long start = System.nanoTime();
+        try {
+            Deadline.checkCurrent();
+            onFetchPage(context.getDownloader());
+            context.getMetrics().onFetchPage(this, (System.nanoTime() - start) / 1000000, null);
+        } catch (IOException | ExtractionException | RuntimeException e) {
+            context.getMetrics().onFetchPage(this, (System.nanoTime() - start) / 1000000, e);
+            throw e;
+        } finally {
+            if (newFlow) RequestFlow.setCurrent(null);
+            ExtractionContext.setCurrent(previousContext);
+        }
         pageFetched = true;
     }
 
@@ -70,6 +99,47 @@ public abstract class Extractor {
         return pageFetched;
     }
 
+    /**
+     * The downloader of the extractor's context, for extractors which have to load more
+     * after the page was fetched.
+     */
+    @Nonnull
+    protected Downloader getDownloader() {
+        return context.getDownloader();
+    }
+
+    /**
+     * Make the requests of this extractor within the given context instead of the one which was
+     * current when it was created.
+     * <p>
+     * Has to be called before {@link #fetchPage()}.
+     */
+    public void setContext(@Nonnull ExtractionContext context) {
+        if(context == null) throw new NullPointerException("context is null");
+        if(pageFetched) throw new IllegalStateException("The page was already fetched");
+        this.context = context;
+    }
+
+    @Nonnull
+    public ExtractionContext getContext() {
+        return context;
+    }
+
+    /**
+     * Set an executor on which the extractor may issue requests which don't depend on each other
+     * concurrently, e.g. while fetching the page. Without one every request is done on the calling thread.
+     * <p>
+     * Has to be set before calling {@link #fetchPage()}.
+     */
+    public void setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+    }
+
+    @Nullable
+    public Executor getExecutor() {
+        return executor;
+    }
+
     /**
      * Fetch the current page.
      * @param downloader the download to use
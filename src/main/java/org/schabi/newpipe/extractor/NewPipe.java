@@ -22,6 +22,7 @@ package org.schabi.newpipe.extractor;
 
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
 /**
@@ -29,17 +30,30 @@ import java.util.List;
  */
 public class NewPipe {
     private static final String TAG = NewPipe.class.toString();
-    private static Downloader downloader = null;
+    @Nullable
+    private static ExtractionContext defaultContext = null;
 
     private NewPipe() {
     }
 
     public static void init(Downloader d) {
-        downloader = d;
+        defaultContext = d == null ? null : new ExtractionContext(d);
     }
 
+    /**
+     * The downloader of the {@link ExtractionContext#current() current context}.
+     */
     public static Downloader getDownloader() {
-        return downloader;
+        final ExtractionContext context = ExtractionContext.currentOrNull();
+        return context == null ? null : context.getDownloader();
+    }
+
+    /**
+     * The context used when no other one is given, or null if NewPipe was not initialized.
+     */
+    @Nullable
+    public static ExtractionContext getDefaultContext() {
+        return defaultContext;
     }
 
     /*//////////////////////////////////////////////////////////////////////////
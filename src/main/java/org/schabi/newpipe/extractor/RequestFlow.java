@@ -0,0 +1,85 @@
+package org.schabi.newpipe.extractor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+
+/**
+ * Groups the requests which belong together, e.g. the ones made while fetching the page of an extractor.
+ * <p>
+ * Some sites expect such requests to come from the same client: the embed page and the video info of an
+ * age restricted YouTube video, for example. Downloaders which spread the requests over several routes
+ * (see {@link org.schabi.newpipe.extractor.downloader.EgressPoolDownloader}) use the
+ * {@link #current() current flow} of the thread to send them through the same route.
+ * Work handed to an executor keeps the flow of the thread which submitted it, see {@link #wrap(Runnable)}.
+ * <p>
+ * Flows are compared by identity.
+ */
+public final class RequestFlow {
+    private static final ThreadLocal<RequestFlow> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The flow the requests of this thread belong to, or null if there is none.
+     */
+    @Nullable
+    public static RequestFlow current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Make the flow the current one of this thread.
+     *
+     * @param flow the new flow, or null to remove it
+     * @return the previous one, to restore once done
+     */
+    @Nullable
+    public static RequestFlow setCurrent(@Nullable RequestFlow flow) {
+        final RequestFlow previous = CURRENT.get();
+        if (flow == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(flow);
+        }
+        return previous;
+    }
+
+    /**
+     * Bind the runnable to the current flow, for running it on another thread.
+     */
+    @Nonnull
+    public static Runnable wrap(final Runnable runnable) {
+        final RequestFlow flow = current();
+        if (flow == null) return runnable;
+        return new Runnable() {
+            @Override
+            public void run() {
+                final RequestFlow previous = setCurrent(flow);
+                try {
+                    runnable.run();
+                } finally {
+                    setCurrent(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Bind the callable to the current flow, for running it on another thread.
+     */
+    @Nonnull
+    public static <V> Callable<V> wrap(final Callable<V> callable) {
+        final RequestFlow flow = current();
+        if (flow == null) return callable;
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                final RequestFlow previous = setCurrent(flow);
+                try {
+                    return callable.call();
+                } finally {
+                    setCurrent(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package org.schabi.newpipe.extractor;
+
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A {@link Downloader} which is able to hand out the body of a response as a stream,
+ * so extractors can consume big documents (watch pages, player code, manifests...)
+ * incrementally instead of buffering them into a {@link String} first.
+ * <p>
+ * Extractors should not check for this interface themselves, but call
+ * {@link DownloadResponse#open(Downloader, String, Map)}, which falls back to the
+ * plain {@link Downloader#download(String, Map)} for downloaders that can't stream.
+ * <p>
+ * Implementations should ask for a compressed body by sending {@link DownloadResponse#ACCEPT_ENCODING}
+ * as "Accept-Encoding" header, unless the caller set one, and wrap the body they receive with
+ * {@link DownloadResponse#fromRawBody(String, int, Map, java.io.InputStream)}, which decodes it while it is read.
+ */
+public interface StreamingDownloader extends Downloader {
+
+    /**
+     * Open a connection to the supplied URL and return the response without reading its body.
+     * <p>
+     * The caller is responsible for calling {@link DownloadResponse#close()} once done with it.
+     *
+     * @param siteUrl        the URL of the resource to download
+     * @param requestHeaders request header properties, may be empty
+     * @return the response, with the body available through {@link DownloadResponse#getInputStream()}
+     * @throws IOException
+     */
+    DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException, ReCaptchaException;
+}
@@ -8,6 +8,7 @@ import org.schabi.newpipe.extractor.search.SearchEngine;
 import org.schabi.newpipe.extractor.stream.StreamExtractor;
 import org.schabi.newpipe.extractor.subscription.SubscriptionExtractor;
 
+import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
@@ -82,6 +83,50 @@ public abstract class StreamingService {
         return getPlaylistExtractor(url, null);
     }
 
+    /*//////////////////////////////////////////////////////////////////////////
+    // Extractors within a context
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Get an extractor which makes all its requests within the given context,
+     * instead of the {@link ExtractionContext#current() current one}.
+     */
+    public StreamExtractor getStreamExtractor(String url, @Nonnull ExtractionContext context)
+            throws IOException, ExtractionException {
+        final ExtractionContext previous = ExtractionContext.setCurrent(context);
+        try {
+            final StreamExtractor extractor = getStreamExtractor(url);
+            extractor.setContext(context);
+            return extractor;
+        } finally {
+            ExtractionContext.setCurrent(previous);
+        }
+    }
+
+    public ChannelExtractor getChannelExtractor(String url, String nextPageUrl, @Nonnull ExtractionContext context)
+            throws IOException, ExtractionException {
+        final ExtractionContext previous = ExtractionContext.setCurrent(context);
+        try {
+            final ChannelExtractor extractor = getChannelExtractor(url, nextPageUrl);
+            extractor.setContext(context);
+            return extractor;
+        } finally {
+            ExtractionContext.setCurrent(previous);
+        }
+    }
+
+    public PlaylistExtractor getPlaylistExtractor(String url, String nextPageUrl, @Nonnull ExtractionContext context)
+            throws IOException, ExtractionException {
+        final ExtractionContext previous = ExtractionContext.setCurrent(context);
+        try {
+            final PlaylistExtractor extractor = getPlaylistExtractor(url, nextPageUrl);
+            extractor.setContext(context);
+            return extractor;
+        } finally {
+            ExtractionContext.setCurrent(previous);
+        }
+    }
+
     /**
      * figure out where the link is pointing to (a channel, video, playlist, etc.)
      */
@@ -1,14 +1,20 @@
 package org.schabi.newpipe.extractor.channel;
 
+import org.schabi.newpipe.extractor.AsyncCallback;
 import org.schabi.newpipe.extractor.ListExtractor.InfoItemPage;
 import org.schabi.newpipe.extractor.ListInfo;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
 import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.utils.CallbackTask;
 import org.schabi.newpipe.extractor.utils.ExtractorHelper;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /*
  * Created by Christian Schabesberger on 31.07.16.
@@ -52,6 +58,29 @@ public class ChannelInfo extends ListInfo {
         return getInfo(extractor);
     }
 
+    /**
+     * Get the info of a channel on the given executor, without blocking the calling thread.
+     *
+     * @param callback called with the info or the error once the extraction is over, may be null
+     */
+    public static Future<ChannelInfo> getInfoAsync(String url, Executor executor,
+                                                   @Nullable AsyncCallback<ChannelInfo> callback) {
+        return getInfoAsync(null, url, executor, callback);
+    }
+
+    /**
+     * @param service the service of the channel, or null to find it from the url
+     */
+    public static Future<ChannelInfo> getInfoAsync(@Nullable final StreamingService service, final String url,
+                                                   Executor executor, @Nullable AsyncCallback<ChannelInfo> callback) {
+        return CallbackTask.submit(executor, new Callable<ChannelInfo>() {
+            @Override
+            public ChannelInfo call() throws Exception {
+                return service != null ? getInfo(service, url) : getInfo(url);
+            }
+        }, callback);
+    }
+
     public static ChannelInfo getInfo(ChannelExtractor extractor) throws ParsingException {
 
         // important data
@@ -0,0 +1,58 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.AsyncCallback;
+import org.schabi.newpipe.extractor.AsyncDownloader;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.utils.CallbackTask;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link AsyncDownloader} running the requests of a blocking {@link Downloader} on an executor.
+ * <p>
+ * Each request still holds a thread of the executor while it is running, but the calling thread is free.
+ * Cancelling a request interrupts the thread making it.
+ */
+public class AsyncDownloaderAdapter extends ForwardingDownloader implements AsyncDownloader {
+    private final Executor executor;
+
+    public AsyncDownloaderAdapter(@Nonnull Downloader delegate, @Nonnull Executor executor) {
+        super(delegate);
+        if (executor == null) throw new NullPointerException("executor is null");
+        this.executor = executor;
+    }
+
+    @Override
+    public Future<DownloadResponse> downloadAsync(final String siteUrl, final Map<String, String> requestHeaders,
+                                                  @Nullable AsyncCallback<DownloadResponse> callback) {
+        final CallbackTask<DownloadResponse> task = new CallbackTask<DownloadResponse>(new Callable<DownloadResponse>() {
+            @Override
+            public DownloadResponse call() throws Exception {
+                return downloadStream(siteUrl, requestHeaders);
+            }
+        }, callback) {
+            @Override
+            protected void set(DownloadResponse response) {
+                super.set(response);
+                // Nobody will get the response of a request cancelled while it was running
+                if (isCancelled()) closeQuietly(response);
+            }
+        };
+        task.submit(executor);
+        return task;
+    }
+
+    private static void closeQuietly(DownloadResponse response) {
+        try {
+            response.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
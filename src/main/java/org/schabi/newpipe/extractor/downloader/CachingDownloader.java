@@ -0,0 +1,338 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Downloader} which keeps the responses of another one in memory.
+ * <p>
+ * Which urls are cached, and for how long, is decided by {@link Policy policies}: a response is served
+ * from the cache for the time to live of the first policy matching its url. Once that time is over,
+ * the entry is revalidated with "If-None-Match" / "If-Modified-Since" if the server sent an "ETag" or
+ * "Last-Modified" header, so an unchanged resource costs a request but no body.
+ * <p>
+ * The bodies are kept within a byte budget, evicting the least recently used ones first.
+ * Hits, misses, revalidations and evictions are counted per policy, see {@link #getStats()}.
+ */
+public class CachingDownloader extends ForwardingDownloader {
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * A class of urls which are cached for the same time
+     */
+    public static class Policy {
+        private final String name;
+        private final Pattern urlPattern;
+        private final long timeToLive;
+
+        /**
+         * @param name       the name of the url class, used for the stats
+         * @param urlRegex   the regex the urls of the class are found with
+         * @param timeToLive how long a response is used without asking the server, in milliseconds
+         */
+        public Policy(String name, String urlRegex, long timeToLive) {
+            this.name = name;
+            this.urlPattern = Pattern.compile(urlRegex);
+            this.timeToLive = timeToLive;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTimeToLive() {
+            return timeToLive;
+        }
+
+        boolean matches(String url) {
+            return urlPattern.matcher(url).find();
+        }
+    }
+
+    /**
+     * Snapshot of the counters of a policy
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long revalidations;
+        private final long evictions;
+
+        Stats(long hits, long misses, long revalidations, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.revalidations = revalidations;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Responses served from the cache without any request
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Responses which had to be downloaded
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Responses served from the cache after the server said they didn't change
+         */
+        public long getRevalidations() {
+            return revalidations;
+        }
+
+        /**
+         * Entries removed to stay within the byte budget
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", revalidations=" + revalidations
+                    + ", evictions=" + evictions;
+        }
+    }
+
+    /**
+     * The policies used by {@link #CachingDownloader(Downloader)}: YouTube players are versioned by their url
+     * and are kept for a day, SoundCloud resolve results for an hour and watch pages, which contain urls
+     * expiring after some hours, for five minutes.
+     */
+    public static List<Policy> getDefaultPolicies() {
+        return Arrays.asList(
+                new Policy("youtube-player", "^https?://(www\\.)?youtube\\.com/yts/jsbin/.+\\.js", TimeUnit.DAYS.toMillis(1)),
+                new Policy("soundcloud-resolve", "^https?://api\\.soundcloud\\.com/resolve", TimeUnit.HOURS.toMillis(1)),
+                new Policy("youtube-watch", "^https?://(www\\.)?youtube\\.com/watch\\?", TimeUnit.MINUTES.toMillis(5)));
+    }
+
+    private final long maxBytes;
+    private final List<Policy> policies;
+    private final Map<String, Counters> counters = new LinkedHashMap<>();
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    public CachingDownloader(@Nonnull Downloader delegate) {
+        this(delegate, DEFAULT_MAX_BYTES, getDefaultPolicies());
+    }
+
+    /**
+     * @param maxBytes the maximum size of all the cached bodies together
+     * @param policies the url classes to cache, the first matching one is used for a url
+     */
+    public CachingDownloader(@Nonnull Downloader delegate, long maxBytes, List<Policy> policies) {
+        super(delegate);
+        this.maxBytes = maxBytes;
+        this.policies = new ArrayList<>(policies);
+        for (Policy policy : policies) {
+            counters.put(policy.getName(), new Counters());
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Downloader
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, customProperties);
+    }
+
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        final Policy policy = getPolicy(siteUrl);
+        if (policy == null) {
+            return super.downloadStream(siteUrl, requestHeaders);
+        }
+        final Counters policyCounters = counters.get(policy.getName());
+
+        final String key = getRequestKey(siteUrl, requestHeaders);
+        final CacheEntry cached = getEntry(key);
+        final long now = System.currentTimeMillis();
+        if (cached != null && now < cached.storedAt + policy.getTimeToLive()) {
+            policyCounters.hits.incrementAndGet();
+            return cached.toResponse(siteUrl);
+        }
+
+        Map<String, String> headers = requestHeaders;
+        if (cached != null && (cached.eTag != null || cached.lastModified != null)) {
+            headers = new HashMap<>(requestHeaders);
+            if (cached.eTag != null) headers.put("If-None-Match", cached.eTag);
+            if (cached.lastModified != null) headers.put("If-Modified-Since", cached.lastModified);
+        }
+
+        final DownloadResponse response = DownloadResponse.open(delegate, siteUrl, headers);
+        if (cached != null && response.getResponseCode() == 304) {
+            response.close();
+            policyCounters.revalidations.incrementAndGet();
+            final CacheEntry refreshed = new CacheEntry(cached.policy, cached.responseHeaders, cached.body, now);
+            store(key, refreshed);
+            return refreshed.toResponse(siteUrl);
+        }
+
+        policyCounters.misses.incrementAndGet();
+        if (response.getResponseCode() != 200 || isNoStore(response)) {
+            remove(key);
+            return response;
+        }
+
+        final CacheEntry entry;
+        try {
+            entry = new CacheEntry(policy, response.getResponseHeaders(), response.readBytes(), now);
+        } finally {
+            response.close();
+        }
+        store(key, entry);
+        return entry.toResponse(siteUrl);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Cache
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Get the counters of every policy, by policy name.
+     */
+    @Nonnull
+    public Map<String, Stats> getStats() {
+        final Map<String, Stats> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            final Counters c = entry.getValue();
+            stats.put(entry.getKey(), new Stats(c.hits.get(), c.misses.get(), c.revalidations.get(), c.evictions.get()));
+        }
+        return stats;
+    }
+
+    /**
+     * @return the size of all the cached bodies together, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    @Nullable
+    private Policy getPolicy(String url) {
+        for (Policy policy : policies) {
+            if (policy.matches(url)) return policy;
+        }
+        return null;
+    }
+
+    @Nullable
+    private synchronized CacheEntry getEntry(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void store(String key, CacheEntry entry) {
+        remove(key);
+        if (entry.body.length > maxBytes) return;
+
+        entries.put(key, entry);
+        size += entry.body.length;
+
+        final Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (size > maxBytes && iterator.hasNext()) {
+            final CacheEntry eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.body.length;
+            counters.get(eldest.policy.getName()).evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        final CacheEntry previous = entries.remove(key);
+        if (previous != null) size -= previous.body.length;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static boolean isNoStore(DownloadResponse response) {
+        final String cacheControl = response.getHeader("Cache-Control");
+        return cacheControl != null && cacheControl.toLowerCase().contains("no-store");
+    }
+
+    private static class Counters {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong revalidations = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    private static class CacheEntry {
+        final Policy policy;
+        final Map<String, List<String>> responseHeaders;
+        final byte[] body;
+        final long storedAt;
+
+        @Nullable
+        final String eTag;
+        @Nullable
+        final String lastModified;
+
+        CacheEntry(Policy policy, Map<String, List<String>> responseHeaders, byte[] body, long storedAt) {
+            this.policy = policy;
+            this.responseHeaders = responseHeaders;
+            this.body = body;
+            this.storedAt = storedAt;
+
+            this.eTag = getHeader(responseHeaders, "ETag");
+            this.lastModified = getHeader(responseHeaders, "Last-Modified");
+        }
+
+        @Nullable
+        private static String getHeader(Map<String, List<String>> headers, String name) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        DownloadResponse toResponse(String url) {
+            return new DownloadResponse(url, 200, responseHeaders, new ByteArrayInputStream(body));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+import org.schabi.newpipe.extractor.utils.ExpiringCache;
+import org.schabi.newpipe.extractor.utils.SingleFlight;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Downloader} which makes concurrent requests for the same url and headers share one response.
+ * <p>
+ * The first caller downloads the response, the ones asking for it while it is running wait and get
+ * the same body (or the same exception, unless it is the first caller's deadline or interruption, see
+ * {@link SingleFlight}). Nothing is kept afterwards, see {@link CachingDownloader} for that.
+ * The body of a shared response has to be read completely before it is handed out, so it is not streamed.
+ */
+public class CoalescingDownloader extends ForwardingDownloader {
+    private final SingleFlight<String, SharedResponse> inFlight = new SingleFlight<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+
+    public CoalescingDownloader(@Nonnull Downloader delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, customProperties);
+    }
+
+    @Override
+    public DownloadResponse downloadStream(final String siteUrl, final Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        requests.incrementAndGet();
+        final String key = getRequestKey(siteUrl, requestHeaders);
+        final SharedResponse shared;
+        try {
+            shared = inFlight.execute(key, new ExpiringCache.Loader<String, SharedResponse>() {
+                @Nonnull
+                @Override
+                public SharedResponse load(String key) throws IOException, ReCaptchaException {
+                    downloads.incrementAndGet();
+                    final DownloadResponse response = DownloadResponse.open(delegate, siteUrl, requestHeaders);
+                    try {
+                        return new SharedResponse(response.getResponseCode(), response.getResponseHeaders(),
+                                response.readBytes());
+                    } finally {
+                        response.close();
+                    }
+                }
+            });
+        } catch (ReCaptchaException e) {
+            throw e;
+        } catch (ExtractionException e) {
+            throw new IOException(e);
+        }
+        return new DownloadResponse(siteUrl, shared.responseCode, shared.responseHeaders,
+                new ByteArrayInputStream(shared.body));
+    }
+
+    /**
+     * @return how many responses were handed out
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return how many of the handed out responses were actually downloaded, the others were shared
+     */
+    public long getDownloadCount() {
+        return downloads.get();
+    }
+
+    private static class SharedResponse {
+        final int responseCode;
+        final Map<String, List<String>> responseHeaders;
+        final byte[] body;
+
+        SharedResponse(int responseCode, Map<String, List<String>> responseHeaders, byte[] body) {
+            this.responseCode = responseCode;
+            this.responseHeaders = responseHeaders;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A {@link Downloader} which enforces the {@link Deadline#current() current deadline} of the calling thread
+ * for downloaders which don't know about deadlines.
+ * <p>
+ * No request is started once the deadline is over, and the body of a response fails to read as soon as it is.
+ * Cancelling the deadline closes the responses being read, which aborts their transfer.
+ * A request which is waiting for the server is not interrupted: the wrapped downloader has to bound its
+ * timeouts by {@link Deadline#getRemainingMillis()} for that.
+ */
+public class DeadlineDownloader extends ForwardingDownloader {
+
+    public DeadlineDownloader(@Nonnull Downloader delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, customProperties);
+    }
+
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        final Deadline deadline = Deadline.current();
+        if (deadline == null) return super.downloadStream(siteUrl, requestHeaders);
+
+        deadline.check();
+        final DownloadResponse response = super.downloadStream(siteUrl, requestHeaders);
+        try {
+            deadline.check();
+        } catch (IOException e) {
+            response.close();
+            throw e;
+        }
+
+        final FilterInputStream body = new FilterInputStream(response.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                deadline.check();
+                try {
+                    return super.read();
+                } catch (IOException e) {
+                    // Closed by a cancellation while reading
+                    deadline.check();
+                    throw e;
+                }
+            }
+
+            @Override
+            public int read(@Nonnull byte[] buffer, int offset, int length) throws IOException {
+                deadline.check();
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    deadline.check();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                deadline.unregister(this);
+                super.close();
+            }
+        };
+        deadline.register(body);
+        return response.withBody(body);
+    }
+}
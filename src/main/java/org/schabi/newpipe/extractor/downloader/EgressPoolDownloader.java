@@ -0,0 +1,357 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.RequestFlow;
+import org.schabi.newpipe.extractor.StreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.HttpResponseException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Downloader} which spreads the requests over several routes, e.g. downloaders using different
+ * proxies or egress addresses, preferring the routes which work best.
+ * <p>
+ * Every route is scored by its response time and by how often it fails or gets reCaptcha challenges,
+ * all as moving averages. Each request goes through the better of two random routes, so the load stays
+ * spread while the bad routes get less of it. A route answered with a reCaptcha challenge (or HTTP 429) is
+ * quarantined for a time which doubles with each consecutive challenge, a route failing for more than
+ * half of its requests for a shorter time. Only the failures of the route count: neither the end of the
+ * caller's {@link Deadline} nor error statuses like 404, for which the route did deliver the answer.
+ * <p>
+ * The requests of a {@link RequestFlow} (e.g. all the requests made while fetching the page of an
+ * extractor) go through the same route, as long as it is not quarantined.
+ */
+public class EgressPoolDownloader implements StreamingDownloader {
+    private static final double SMOOTHING = 0.2;
+    private static final double MAX_ERROR_RATE = 0.5;
+    private static final int MIN_REQUESTS = 5;
+    private static final long ERROR_QUARANTINE = TimeUnit.SECONDS.toMillis(30);
+    private static final long CAPTCHA_QUARANTINE = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_CAPTCHA_QUARANTINE = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * A way out, i.e. a downloader sending its requests through a specific proxy or address
+     */
+    public static class Route {
+        private final String name;
+        private final Downloader downloader;
+
+        public Route(String name, @Nonnull Downloader downloader) {
+            if (downloader == null) throw new NullPointerException("downloader is null");
+            this.name = name;
+            this.downloader = downloader;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Downloader getDownloader() {
+            return downloader;
+        }
+    }
+
+    /**
+     * Snapshot of the state of a route
+     */
+    public static class RouteStats {
+        private final String name;
+        private final long requests;
+        private final double latency;
+        private final double errorRate;
+        private final double captchaRate;
+        private final long quarantine;
+
+        RouteStats(String name, long requests, double latency, double errorRate, double captchaRate,
+                   long quarantine) {
+            this.name = name;
+            this.requests = requests;
+            this.latency = latency;
+            this.errorRate = errorRate;
+            this.captchaRate = captchaRate;
+            this.quarantine = quarantine;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Average time until the response arrived, in milliseconds
+         */
+        public double getLatency() {
+            return latency;
+        }
+
+        /**
+         * Average ratio of the requests which failed, between 0 and 1
+         */
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        /**
+         * Average ratio of the requests which got a reCaptcha challenge, between 0 and 1
+         */
+        public double getCaptchaRate() {
+            return captchaRate;
+        }
+
+        /**
+         * @return the time the route is still quarantined for, in milliseconds, 0 if it is not
+         */
+        public long getQuarantine() {
+            return quarantine;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": requests=" + requests + ", latency=" + Math.round(latency) + "ms, errorRate="
+                    + errorRate + ", captchaRate=" + captchaRate + ", quarantine=" + quarantine + "ms";
+        }
+    }
+
+    private final List<RouteState> routes = new ArrayList<>();
+    private final Map<RequestFlow, RouteState> flowRoutes = new WeakHashMap<>();
+    private final Random random = new Random();
+
+    public EgressPoolDownloader(@Nonnull List<Route> routes) {
+        if (routes.isEmpty()) throw new IllegalArgumentException("No route");
+        for (Route route : routes) {
+            this.routes.add(new RouteState(route));
+        }
+    }
+
+    @Nonnull
+    public List<RouteStats> getStats() {
+        final List<RouteStats> stats = new ArrayList<>();
+        for (RouteState route : routes) {
+            stats.add(route.getStats());
+        }
+        return stats;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Downloader
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return download(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return download(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        final DownloadResponse response = downloadStream(siteUrl, customProperties);
+        try {
+            return response.readBody();
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        final RouteState route = getRoute();
+        final long start = System.nanoTime();
+
+        final DownloadResponse response;
+        try {
+            response = DownloadResponse.open(route.route.getDownloader(), siteUrl, requestHeaders);
+        } catch (ReCaptchaException e) {
+            route.onCaptcha();
+            throw e;
+        } catch (HttpResponseException e) {
+            if (e.getResponseCode() == 429) {
+                route.onCaptcha();
+            } else {
+                route.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            throw e;
+        } catch (InterruptedIOException e) {
+            if (isTimeoutOfRoute(e)) route.onError();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            route.onError();
+            throw e;
+        }
+
+        if (response.getResponseCode() == 429) {
+            route.onCaptcha();
+            response.close();
+            throw new ReCaptchaException("reCaptcha Challenge requested");
+        }
+        route.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return response;
+    }
+
+    /**
+     * Whether the route timed out by itself, rather than because the caller was cancelled, interrupted
+     * or ran out of time
+     */
+    private static boolean isTimeoutOfRoute(InterruptedIOException e) {
+        if (!(e instanceof SocketTimeoutException) || Thread.currentThread().isInterrupted()) return false;
+        final Deadline deadline = Deadline.current();
+        return deadline == null || !deadline.isOver();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Routing
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private RouteState getRoute() {
+        final RequestFlow flow = RequestFlow.current();
+        synchronized (flowRoutes) {
+            if (flow != null) {
+                final RouteState route = flowRoutes.get(flow);
+                if (route != null && route.getQuarantine() == 0) return route;
+            }
+
+            final RouteState route = chooseRoute();
+            if (flow != null) flowRoutes.put(flow, route);
+            return route;
+        }
+    }
+
+    /**
+     * The better of two random routes which are not quarantined,
+     * or the one released first if all of them are.
+     */
+    private RouteState chooseRoute() {
+        final List<RouteState> available = new ArrayList<>();
+        RouteState releasedFirst = null;
+        for (RouteState route : routes) {
+            final long quarantine = route.getQuarantine();
+            if (quarantine == 0) {
+                available.add(route);
+            } else if (releasedFirst == null || quarantine < releasedFirst.getQuarantine()) {
+                releasedFirst = route;
+            }
+        }
+
+        if (available.isEmpty()) return releasedFirst;
+        if (available.size() == 1) return available.get(0);
+
+        final int first = random.nextInt(available.size());
+        final int second = (first + 1 + random.nextInt(available.size() - 1)) % available.size();
+        final RouteState a = available.get(first);
+        final RouteState b = available.get(second);
+        final double priorLatency = getMeanLatency();
+        return a.getScore(priorLatency) <= b.getScore(priorLatency) ? a : b;
+    }
+
+    /**
+     * The mean latency of the routes which had successes, or 1 if none had
+     */
+    private double getMeanLatency() {
+        double sum = 0;
+        int count = 0;
+        for (RouteState route : routes) {
+            final double latency = route.getLatency();
+            if (latency >= 0) {
+                sum += latency;
+                count++;
+            }
+        }
+        return count == 0 ? 1 : Math.max(1, sum / count);
+    }
+
+    private static class RouteState {
+        final Route route;
+
+        private long requests = 0;
+        private long successes = 0;
+        private double latency = 0;
+        private double errorRate = 0;
+        private double captchaRate = 0;
+
+        private long quarantinedUntil = 0;
+        private long captchaQuarantine = 0;
+
+        RouteState(Route route) {
+            this.route = route;
+        }
+
+        /**
+         * Lower is better. Routes without requests yet score 0, so each of them gets tried.
+         *
+         * @param priorLatency the latency assumed for a route which had no success yet, so a route which only
+         *                     failed doesn't look faster than the healthy ones
+         */
+        synchronized double getScore(double priorLatency) {
+            if (requests == 0) return 0;
+            return (successes == 0 ? priorLatency : latency) * (1 + 2 * errorRate) * (1 + 10 * captchaRate);
+        }
+
+        /**
+         * @return the average latency, or -1 if the route had no success yet
+         */
+        synchronized double getLatency() {
+            return successes == 0 ? -1 : latency;
+        }
+
+        synchronized long getQuarantine() {
+            return Math.max(0, quarantinedUntil - System.currentTimeMillis());
+        }
+
+        synchronized void onSuccess(long responseTime) {
+            latency = successes == 0 ? responseTime : latency + SMOOTHING * (responseTime - latency);
+            successes++;
+            record(false, false);
+            captchaQuarantine = 0;
+        }
+
+        synchronized void onError() {
+            record(true, false);
+            if (requests >= MIN_REQUESTS && errorRate > MAX_ERROR_RATE) {
+                quarantine(ERROR_QUARANTINE);
+            }
+        }
+
+        synchronized void onCaptcha() {
+            record(false, true);
+            // The other requests sent before the route got quarantined may get challenges too
+            if (getQuarantine() > 0) return;
+            captchaQuarantine = captchaQuarantine == 0
+                    ? CAPTCHA_QUARANTINE : Math.min(MAX_CAPTCHA_QUARANTINE, captchaQuarantine * 2);
+            quarantine(captchaQuarantine);
+        }
+
+        private void record(boolean error, boolean captcha) {
+            requests++;
+            errorRate += SMOOTHING * ((error ? 1 : 0) - errorRate);
+            captchaRate += SMOOTHING * ((captcha ? 1 : 0) - captchaRate);
+        }
+
+        private void quarantine(long duration) {
+            quarantinedUntil = Math.max(quarantinedUntil, System.currentTimeMillis() + duration);
+        }
+
+        synchronized RouteStats getStats() {
+            return new RouteStats(route.getName(), requests, latency, errorRate, captchaRate, getQuarantine());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.StreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link Downloader} which forwards every call to another one.
+ * <p>
+ * Base class for the decorators of this package, which only override what they change.
+ * It is always a {@link StreamingDownloader}: if the wrapped downloader can't stream, the body is
+ * downloaded as a string and wrapped (see {@link DownloadResponse#open(Downloader, String, Map)}).
+ */
+public class ForwardingDownloader implements StreamingDownloader {
+    protected final Downloader delegate;
+
+    public ForwardingDownloader(@Nonnull Downloader delegate) {
+        if (delegate == null) throw new NullPointerException("delegate is null");
+        this.delegate = delegate;
+    }
+
+    @Nonnull
+    public Downloader getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Key identifying a request, requests to the same url with different headers (e.g. "Accept-Language")
+     * get different keys.
+     */
+    protected static String getRequestKey(String siteUrl, Map<String, String> requestHeaders) {
+        if (requestHeaders.isEmpty()) return siteUrl;
+        return siteUrl + "\n" + new TreeMap<>(requestHeaders);
+    }
+
+    /**
+     * Download the body as a string through {@link #downloadStream(String, Map)},
+     * for decorators which handle every request there.
+     */
+    protected String downloadThroughStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        final DownloadResponse response = downloadStream(siteUrl, requestHeaders);
+        try {
+            return response.readBody();
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return delegate.download(siteUrl, language);
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        return delegate.download(siteUrl, customProperties);
+    }
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return delegate.download(siteUrl);
+    }
+
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        return DownloadResponse.open(delegate, siteUrl, requestHeaders);
+    }
+}
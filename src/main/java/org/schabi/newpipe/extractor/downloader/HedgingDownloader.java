@@ -0,0 +1,380 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.RequestFlow;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Downloader} which sends a second, identical request when the first one is slow, and uses whichever
+ * response comes first. All the requests of the extractors are idempotent GETs, so this is safe.
+ * <p>
+ * A request is slow when it didn't get a response within the given percentile of the recent response times
+ * of its host. The duplicate can go through another downloader, e.g. using another route or proxy.
+ * To keep the additional load small, only a given ratio of the requests can be hedged.
+ * See {@link #getStats()} for how often hedging helped.
+ */
+public class HedgingDownloader extends ForwardingDownloader {
+    private static final int WINDOW_SIZE = 128;
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * When to hedge a request
+     */
+    public static class Settings {
+        private final double percentile;
+        private final double maxHedgeRatio;
+        private final long minDelay;
+
+        /**
+         * @param percentile    the percentile of the recent response times after which the request is hedged,
+         *                      e.g. 0.95
+         * @param maxHedgeRatio the maximum ratio of requests which are hedged, e.g. 0.05
+         * @param minDelay      the minimum time to wait before hedging, in milliseconds
+         */
+        public Settings(double percentile, double maxHedgeRatio, long minDelay) {
+            if (percentile <= 0 || percentile > 1) throw new IllegalArgumentException("percentile must be in (0, 1]");
+            if (maxHedgeRatio < 0 || maxHedgeRatio > 1) {
+                throw new IllegalArgumentException("maxHedgeRatio must be in [0, 1]");
+            }
+            this.percentile = percentile;
+            this.maxHedgeRatio = maxHedgeRatio;
+            this.minDelay = minDelay;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public double getMaxHedgeRatio() {
+            return maxHedgeRatio;
+        }
+
+        public long getMinDelay() {
+            return minDelay;
+        }
+    }
+
+    public static final Settings DEFAULT_SETTINGS = new Settings(0.95, 0.05, 50);
+
+    /**
+     * Snapshot of the counters
+     */
+    public static class Stats {
+        private final long requests;
+        private final long hedges;
+        private final long hedgeWins;
+        private final long overBudget;
+
+        Stats(long requests, long hedges, long hedgeWins, long overBudget) {
+            this.requests = requests;
+            this.hedges = hedges;
+            this.hedgeWins = hedgeWins;
+            this.overBudget = overBudget;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Duplicate requests which were sent
+         */
+        public long getHedges() {
+            return hedges;
+        }
+
+        /**
+         * Duplicate requests which got their response before the original one
+         */
+        public long getHedgeWins() {
+            return hedgeWins;
+        }
+
+        /**
+         * Slow requests which were not hedged because of the budget
+         */
+        public long getOverBudget() {
+            return overBudget;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requests + ", hedges=" + hedges + ", hedgeWins=" + hedgeWins
+                    + ", overBudget=" + overBudget;
+        }
+    }
+
+    private final Downloader hedgeDelegate;
+    private final Executor executor;
+    private final Settings settings;
+
+    private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+
+    /**
+     * @param executor runs the requests, two per hedged request
+     */
+    public HedgingDownloader(@Nonnull Downloader delegate, @Nonnull Executor executor) {
+        this(delegate, delegate, executor, DEFAULT_SETTINGS);
+    }
+
+    /**
+     * @param hedgeDelegate the downloader the duplicate requests are sent with, may be the same as the delegate
+     * @param executor      runs the requests, two per hedged request
+     */
+    public HedgingDownloader(@Nonnull Downloader delegate, @Nonnull Downloader hedgeDelegate,
+                             @Nonnull Executor executor, @Nonnull Settings settings) {
+        super(delegate);
+        this.hedgeDelegate = hedgeDelegate;
+        this.executor = executor;
+        this.settings = settings;
+    }
+
+    @Nonnull
+    public Stats getStats() {
+        return new Stats(requests.get(), hedges.get(), hedgeWins.get(), overBudget.get());
+    }
+
+    /**
+     * @return how long a request to the host of the url waits before being hedged,
+     * or -1 if not enough responses were seen to know
+     */
+    public long getHedgeDelay(String url) throws IOException {
+        final LatencyWindow window = latencies.get(getHost(url));
+        return window == null ? -1 : window.getDelay();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Downloader
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, customProperties);
+    }
+
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        requests.incrementAndGet();
+        final LatencyWindow window = getWindow(getHost(siteUrl));
+        final long delay = window.getDelay();
+
+        final Race race = new Race();
+        if (!race.start(delegate, siteUrl, requestHeaders, false, window)) {
+            // No thread to run the request on, nor to hedge it
+            return DownloadResponse.open(delegate, siteUrl, requestHeaders);
+        }
+
+        try {
+            Attempt first = delay < 0 ? race.take() : race.poll(delay);
+            if (first == null) {
+                if (hedges.get() < settings.getMaxHedgeRatio() * requests.get()
+                        && race.start(hedgeDelegate, siteUrl, requestHeaders, true, window)) {
+                    hedges.incrementAndGet();
+                } else {
+                    overBudget.incrementAndGet();
+                }
+                first = race.take();
+            }
+
+            Attempt winner = first;
+            if (winner.error != null && race.pending() > 0) {
+                // The other request may still succeed
+                final Attempt second = race.take();
+                if (second.error == null) winner = second;
+            }
+            final Exception error = winner.error;
+            if (error instanceof IOException) throw (IOException) error;
+            if (error instanceof ReCaptchaException) throw (ReCaptchaException) error;
+            if (error instanceof RuntimeException) throw (RuntimeException) error;
+            if (error != null) throw new IOException(error);
+
+            if (winner.hedge) hedgeWins.incrementAndGet();
+            return winner.response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } finally {
+            race.finish();
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static String getHost(String url) throws IOException {
+        return new URL(url).getHost().toLowerCase();
+    }
+
+    private LatencyWindow getWindow(String host) {
+        LatencyWindow window = latencies.get(host);
+        if (window == null) {
+            final LatencyWindow created = new LatencyWindow();
+            window = latencies.putIfAbsent(host, created);
+            if (window == null) window = created;
+        }
+        return window;
+    }
+
+    private static class Attempt {
+        final boolean hedge;
+        @Nullable
+        final DownloadResponse response;
+        @Nullable
+        final Exception error;
+
+        Attempt(boolean hedge, @Nullable DownloadResponse response, @Nullable Exception error) {
+            this.hedge = hedge;
+            this.response = response;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The requests sent for one download. The responses which are not used are closed.
+     */
+    private class Race {
+        private final BlockingQueue<Attempt> outcomes = new LinkedBlockingQueue<>();
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private final FutureTask<?>[] tasks = new FutureTask<?>[2];
+        private int started = 0;
+        private int taken = 0;
+
+        /**
+         * @return false if the executor rejected the request
+         */
+        boolean start(final Downloader downloader, final String siteUrl, final Map<String, String> requestHeaders,
+                      final boolean hedge, final LatencyWindow window) {
+            // The attempts belong to the flow of the caller, whose requests may have to come from the same address
+            final FutureTask<Void> task = new FutureTask<>(Deadline.wrap(RequestFlow.wrap(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final long start = System.nanoTime();
+                    Attempt attempt;
+                    try {
+                        final DownloadResponse response = DownloadResponse.open(downloader, siteUrl, requestHeaders);
+                        window.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        attempt = new Attempt(hedge, response, null);
+                    } catch (IOException | ExtractionException | RuntimeException e) {
+                        attempt = new Attempt(hedge, null, e);
+                    }
+                    outcomes.add(attempt);
+                    if (finished.get()) closeUnused();
+                    return null;
+                }
+            })));
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+            tasks[started++] = task;
+            return true;
+        }
+
+        int pending() {
+            return started - taken;
+        }
+
+        Attempt take() throws InterruptedException {
+            final Attempt attempt = outcomes.take();
+            taken++;
+            return attempt;
+        }
+
+        @Nullable
+        Attempt poll(long timeout) throws InterruptedException {
+            final Attempt attempt = outcomes.poll(timeout, TimeUnit.MILLISECONDS);
+            if (attempt != null) taken++;
+            return attempt;
+        }
+
+        /**
+         * Abort the requests still running, and close the responses which came too late
+         */
+        void finish() {
+            finished.set(true);
+            for (int i = 0; i < started; i++) {
+                tasks[i].cancel(true);
+            }
+            closeUnused();
+        }
+
+        private void closeUnused() {
+            Attempt attempt;
+            while ((attempt = outcomes.poll()) != null) {
+                if (attempt.response != null) {
+                    try {
+                        attempt.response.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The most recent response times of a host
+     */
+    private class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count = 0;
+        private int next = 0;
+
+        synchronized void add(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+        }
+
+        /**
+         * @return the configured percentile of the samples, at least the minimum delay,
+         * or -1 if there are too few samples
+         */
+        synchronized long getDelay() {
+            if (count < MIN_SAMPLES) return -1;
+            final long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            final int index = Math.max(0, (int) Math.ceil(settings.getPercentile() * count) - 1);
+            return Math.max(settings.getMinDelay(), sorted[index]);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Downloader} which limits the requests made to each host, to avoid being answered with
+ * reCaptcha challenges (HTTP 429) and to back off when it happens anyway.
+ * <p>
+ * Every host gets a token bucket, which limits the rate of the requests, and a cap on the number of
+ * concurrent requests. The rate is adapted like TCP's congestion window (AIMD): it is halved each time
+ * the host answers with 429 (or the wrapped downloader throws a {@link ReCaptchaException}), and
+ * increased by a tenth of the configured rate after each successful request.
+ * <p>
+ * After a 429, the host is considered throttled for a backoff time which doubles with every consecutive 429.
+ * Requests wait for the end of it, and callers can check {@link #isThrottled(String)} to avoid
+ * starting expensive extractions in the meantime.
+ * <p>
+ * The wait is bounded by the {@link Deadline#current() current deadline}: a request which could not
+ * start before it is over fails right away with a {@link DeadlineExceededException}.
+ */
+public class RateLimitingDownloader extends ForwardingDownloader {
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * How often a request waiting under a deadline checks whether it was cancelled
+     */
+    private static final long CANCEL_CHECK_INTERVAL = 500;
+
+    /**
+     * The limits applied to a host
+     */
+    public static class Limits {
+        private final double requestsPerSecond;
+        private final int burst;
+        private final int maxConcurrentRequests;
+        private final long initialBackoff;
+
+        /**
+         * @param requestsPerSecond     the maximum rate of requests
+         * @param burst                 how many requests can be made at once after a calm period
+         * @param maxConcurrentRequests the maximum number of requests running at the same time
+         * @param initialBackoff        how long to wait after the first 429, in milliseconds
+         */
+        public Limits(double requestsPerSecond, int burst, int maxConcurrentRequests, long initialBackoff) {
+            if (requestsPerSecond <= 0) throw new IllegalArgumentException("requestsPerSecond must be positive");
+            if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+            if (maxConcurrentRequests < 1) throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            this.initialBackoff = initialBackoff;
+        }
+
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public long getInitialBackoff() {
+            return initialBackoff;
+        }
+    }
+
+    public static final Limits DEFAULT_LIMITS = new Limits(5, 10, 4, TimeUnit.SECONDS.toMillis(2));
+
+    private final Limits defaultLimits;
+    private final ConcurrentMap<String, Limits> hostLimits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+
+    public RateLimitingDownloader(@Nonnull Downloader delegate) {
+        this(delegate, DEFAULT_LIMITS);
+    }
+
+    public RateLimitingDownloader(@Nonnull Downloader delegate, @Nonnull Limits defaultLimits) {
+        super(delegate);
+        this.defaultLimits = defaultLimits;
+    }
+
+    /**
+     * Use other limits than the default ones for the given host.
+     * Has to be called before the first request to the host.
+     */
+    public void setLimits(String host, Limits limits) {
+        hostLimits.put(host.toLowerCase(), limits);
+    }
+
+    /**
+     * Whether the host of the given url answered with a 429 recently, and requests to it are held back.
+     */
+    public boolean isThrottled(String url) {
+        final HostLimiter limiter;
+        try {
+            limiter = limiters.get(getHost(url));
+        } catch (IOException e) {
+            return false;
+        }
+        return limiter != null && limiter.getRemainingBackoff() > 0;
+    }
+
+    /**
+     * Whether any host is throttled at the moment.
+     */
+    public boolean isThrottled() {
+        for (HostLimiter limiter : limiters.values()) {
+            if (limiter.getRemainingBackoff() > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The current allowed rate of requests for the host of the url, lower than the configured one
+     * after the host answered with 429s.
+     */
+    public double getCurrentRate(String url) throws IOException {
+        final String host = getHost(url);
+        final HostLimiter limiter = limiters.get(host);
+        return limiter != null ? limiter.getRate() : getLimits(host).getRequestsPerSecond();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Downloader
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, customProperties);
+    }
+
+    /**
+     * Wait until the host can be requested, then download the url.
+     * The concurrency slot is given back once the response arrived, not when its body is read.
+     */
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        final HostLimiter limiter = getLimiter(getHost(siteUrl));
+        final long startedAt = limiter.acquire();
+        try {
+            final DownloadResponse response;
+            try {
+                response = super.downloadStream(siteUrl, requestHeaders);
+            } catch (ReCaptchaException e) {
+                limiter.onThrottled();
+                throw e;
+            }
+
+            if (response.getResponseCode() == 429) {
+                limiter.onThrottled();
+                response.close();
+                throw new ReCaptchaException("reCaptcha Challenge requested");
+            }
+            limiter.onSuccess(startedAt);
+            return response;
+        } finally {
+            limiter.release();
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static String getHost(String url) throws IOException {
+        return new URL(url).getHost().toLowerCase();
+    }
+
+    private Limits getLimits(String host) {
+        final Limits limits = hostLimits.get(host);
+        return limits != null ? limits : defaultLimits;
+    }
+
+    private HostLimiter getLimiter(String host) {
+        HostLimiter limiter = limiters.get(host);
+        if (limiter == null) {
+            final HostLimiter created = new HostLimiter(getLimits(host));
+            limiter = limiters.putIfAbsent(host, created);
+            if (limiter == null) limiter = created;
+        }
+        return limiter;
+    }
+
+    private static class HostLimiter {
+        private final Limits limits;
+        private final Semaphore concurrentRequests;
+
+        private double rate;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private long throttledUntil = 0;
+        private long backoff = 0;
+
+        HostLimiter(Limits limits) {
+            this.limits = limits;
+            this.concurrentRequests = new Semaphore(limits.getMaxConcurrentRequests(), true);
+            this.rate = limits.getRequestsPerSecond();
+            this.tokens = limits.getBurst();
+        }
+
+        /**
+         * Wait for a request slot and a token, for no longer than the current deadline allows.
+         *
+         * @return when the request was let through, in milliseconds since the epoch
+         */
+        long acquire() throws InterruptedIOException {
+            final Deadline deadline = Deadline.current();
+            try {
+                if (deadline == null) {
+                    concurrentRequests.acquire();
+                } else {
+                    deadline.check();
+                    while (!concurrentRequests.tryAcquire(
+                            Math.min(deadline.getRemainingMillis(), CANCEL_CHECK_INTERVAL), TimeUnit.MILLISECONDS)) {
+                        deadline.check();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a request slot");
+            }
+
+            try {
+                long wait;
+                while ((wait = reserve()) > 0) {
+                    if (deadline != null) {
+                        deadline.check();
+                        if (wait > deadline.getRemainingMillis()) {
+                            throw new DeadlineExceededException("Extraction deadline exceeded before the host "
+                                    + "could be requested again");
+                        }
+                        wait = Math.min(wait, CANCEL_CHECK_INTERVAL);
+                    }
+                    Thread.sleep(wait);
+                }
+                return System.currentTimeMillis();
+            } catch (InterruptedException e) {
+                concurrentRequests.release();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+            } catch (DeadlineExceededException e) {
+                concurrentRequests.release();
+                throw e;
+            }
+        }
+
+        void release() {
+            concurrentRequests.release();
+        }
+
+        /**
+         * Take a token if the host isn't throttled and there is one.
+         *
+         * @return 0 if the request can be made, or how many milliseconds to wait before trying again
+         */
+        private synchronized long reserve() {
+            final long remainingBackoff = getRemainingBackoff();
+            if (remainingBackoff > 0) return remainingBackoff;
+
+            final long now = System.nanoTime();
+            tokens = Math.min(limits.getBurst(), tokens + (now - lastRefill) / 1e9 * rate);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / rate * 1000));
+        }
+
+        synchronized long getRemainingBackoff() {
+            return Math.max(0, throttledUntil - System.currentTimeMillis());
+        }
+
+        synchronized double getRate() {
+            return rate;
+        }
+
+        /**
+         * @param startedAt when the request was let through
+         */
+        synchronized void onSuccess(long startedAt) {
+            // A request sent before the last 429 doesn't tell whether the host calmed down since
+            if (startedAt < throttledUntil) return;
+            backoff = 0;
+            rate = Math.min(limits.getRequestsPerSecond(), rate + limits.getRequestsPerSecond() / 10);
+        }
+
+        synchronized void onThrottled() {
+            // The requests which were already running when the first 429 came don't count again
+            if (getRemainingBackoff() > 0) return;
+
+            rate = Math.max(limits.getRequestsPerSecond() / 16, rate / 2);
+            backoff = backoff == 0 ? limits.getInitialBackoff() : Math.min(MAX_BACKOFF, backoff * 2);
+            throttledUntil = System.currentTimeMillis() + backoff;
+            // Don't let the requests which waited for the backoff go all at once
+            tokens = Math.min(tokens, 1);
+        }
+    }
+}
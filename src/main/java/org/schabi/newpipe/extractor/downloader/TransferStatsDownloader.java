@@ -0,0 +1,205 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nonnull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Downloader} which counts, per class of urls, how many bytes were transferred and how many
+ * they were once decoded, to know how much the compression of the responses saves.
+ * <p>
+ * A response is counted once it is closed. The wrapped downloader has to decode the bodies with
+ * {@link DownloadResponse#fromRawBody(String, int, Map, java.io.InputStream)} for the transferred bytes
+ * to be known, otherwise both counts are the same.
+ */
+public class TransferStatsDownloader extends ForwardingDownloader {
+    /**
+     * Name of the class of the urls not matching any other
+     */
+    public static final String OTHER = "other";
+
+    /**
+     * A class of urls whose transfers are counted together
+     */
+    public static class EndpointClass {
+        private final String name;
+        private final Pattern urlPattern;
+
+        public EndpointClass(String name, String urlRegex) {
+            this.name = name;
+            this.urlPattern = Pattern.compile(urlRegex);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        boolean matches(String url) {
+            return urlPattern.matcher(url).find();
+        }
+    }
+
+    /**
+     * Snapshot of the counters of an endpoint class
+     */
+    public static class Stats {
+        private final long responses;
+        private final long wireBytes;
+        private final long decodedBytes;
+
+        Stats(long responses, long wireBytes, long decodedBytes) {
+            this.responses = responses;
+            this.wireBytes = wireBytes;
+            this.decodedBytes = decodedBytes;
+        }
+
+        public long getResponses() {
+            return responses;
+        }
+
+        /**
+         * Bytes received, before decoding
+         */
+        public long getWireBytes() {
+            return wireBytes;
+        }
+
+        /**
+         * Bytes of the decoded bodies
+         */
+        public long getDecodedBytes() {
+            return decodedBytes;
+        }
+
+        /**
+         * @return the bytes which did not have to be transferred thanks to the compression
+         */
+        public long getSavedBytes() {
+            return decodedBytes - wireBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "responses=" + responses + ", wireBytes=" + wireBytes + ", decodedBytes=" + decodedBytes;
+        }
+    }
+
+    public static List<EndpointClass> getDefaultEndpointClasses() {
+        return Arrays.asList(
+                new EndpointClass("youtube-watch", "^https?://(www\\.)?youtube\\.com/watch\\?"),
+                new EndpointClass("youtube-player", "^https?://(www\\.)?youtube\\.com/yts/jsbin/"),
+                new EndpointClass("youtube-video-info", "^https?://(www\\.)?youtube\\.com/get_video_info\\?"),
+                new EndpointClass("youtube-dash", "^https?://[^/]*\\.(youtube|googlevideo)\\.com/api/manifest/dash/"),
+                new EndpointClass("soundcloud-api", "^https?://api(-v2)?\\.soundcloud\\.com/"),
+                new EndpointClass("soundcloud-page", "^https?://(www\\.)?soundcloud\\.com/"));
+    }
+
+    private final List<EndpointClass> endpointClasses;
+    private final Map<String, Counters> counters = new LinkedHashMap<>();
+
+    public TransferStatsDownloader(@Nonnull Downloader delegate) {
+        this(delegate, getDefaultEndpointClasses());
+    }
+
+    /**
+     * @param endpointClasses the url classes to count separately, the first matching one is used for a url
+     */
+    public TransferStatsDownloader(@Nonnull Downloader delegate, List<EndpointClass> endpointClasses) {
+        super(delegate);
+        this.endpointClasses = new ArrayList<>(endpointClasses);
+        for (EndpointClass endpointClass : endpointClasses) {
+            counters.put(endpointClass.getName(), new Counters());
+        }
+        counters.put(OTHER, new Counters());
+    }
+
+    /**
+     * Get the counters of every endpoint class, by name, including {@link #OTHER}.
+     */
+    @Nonnull
+    public Map<String, Stats> getStats() {
+        final Map<String, Stats> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            final Counters c = entry.getValue();
+            stats.put(entry.getKey(), new Stats(c.responses.get(), c.wireBytes.get(), c.decodedBytes.get()));
+        }
+        return stats;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Downloader
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        return downloadThroughStream(siteUrl, customProperties);
+    }
+
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+            throws IOException, ReCaptchaException {
+        final DownloadResponse response = super.downloadStream(siteUrl, requestHeaders);
+        final Counters endpointCounters = counters.get(getEndpointClass(siteUrl));
+
+        return response.withBody(new FilterInputStream(response.getInputStream()) {
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        endpointCounters.add(response);
+                    }
+                }
+            }
+        });
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private String getEndpointClass(String url) {
+        for (EndpointClass endpointClass : endpointClasses) {
+            if (endpointClass.matches(url)) return endpointClass.getName();
+        }
+        return OTHER;
+    }
+
+    private static class Counters {
+        final AtomicLong responses = new AtomicLong();
+        final AtomicLong wireBytes = new AtomicLong();
+        final AtomicLong decodedBytes = new AtomicLong();
+
+        void add(DownloadResponse response) {
+            responses.incrementAndGet();
+            wireBytes.addAndGet(response.getWireBytes());
+            decodedBytes.addAndGet(response.getDecodedBytes());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.schabi.newpipe.extractor.exceptions;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown when the {@link org.schabi.newpipe.extractor.Deadline} of an extraction is over or was cancelled.
+ * <p>
+ * An {@link java.io.IOException}, so it goes through every download call unchanged.
+ */
+public class DeadlineExceededException extends InterruptedIOException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
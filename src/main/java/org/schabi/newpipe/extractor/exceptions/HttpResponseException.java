@@ -0,0 +1,29 @@
+package org.schabi.newpipe.extractor.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link org.schabi.newpipe.extractor.Downloader} which doesn't hand out the responses of
+ * failed requests, when the server answered with an error status.
+ * <p>
+ * Lets the callers tell e.g. a rejected or missing resource from a transfer which failed.
+ */
+public class HttpResponseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int responseCode;
+
+    public HttpResponseException(int responseCode, String message) {
+        super(message);
+        this.responseCode = responseCode;
+    }
+
+    public HttpResponseException(int responseCode, String message, Throwable cause) {
+        super(message, cause);
+        this.responseCode = responseCode;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+}
@@ -20,14 +20,20 @@ package org.schabi.newpipe.extractor.kiosk;
  * along with NewPipe.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import org.schabi.newpipe.extractor.AsyncCallback;
 import org.schabi.newpipe.extractor.ListExtractor;
 import org.schabi.newpipe.extractor.ListInfo;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.utils.CallbackTask;
 import org.schabi.newpipe.extractor.utils.ExtractorHelper;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 public class KioskInfo extends ListInfo {
 
@@ -60,6 +66,32 @@ public class KioskInfo extends ListInfo {
         return getInfo(extractor);
     }
 
+    /**
+     * Get the info of a kiosk on the given executor, without blocking the calling thread.
+     *
+     * @param callback called with the info or the error once the extraction is over, may be null
+     */
+    public static Future<KioskInfo> getInfoAsync(String url, String contentCountry, Executor executor,
+                                                 @Nullable AsyncCallback<KioskInfo> callback) {
+        return getInfoAsync(null, url, contentCountry, executor, callback);
+    }
+
+    /**
+     * @param service the service of the kiosk, or null to find it from the url
+     */
+    public static Future<KioskInfo> getInfoAsync(@Nullable final StreamingService service,
+                                                 final String url,
+                                                 final String contentCountry,
+                                                 Executor executor,
+                                                 @Nullable AsyncCallback<KioskInfo> callback) {
+        return CallbackTask.submit(executor, new Callable<KioskInfo>() {
+            @Override
+            public KioskInfo call() throws Exception {
+                return service != null ? getInfo(service, url, contentCountry) : getInfo(url, contentCountry);
+            }
+        }, callback);
+    }
+
     /**
      * Get KioskInfo from KioskExtractor
      *
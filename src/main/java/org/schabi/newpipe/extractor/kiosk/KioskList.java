@@ -1,10 +1,12 @@
 package org.schabi.newpipe.extractor.kiosk;
 
+import org.schabi.newpipe.extractor.ExtractionContext;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.UrlIdHandler;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
 
+import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -94,6 +96,21 @@ public  class KioskList {
         throw new ExtractionException("Could not find a kiosk that fits to the url: " + url);
     }
 
+    /**
+     * Get the extractor of the kiosk with the given url, making all its requests within the given context.
+     */
+    public KioskExtractor getExtractorByUrl(String url, String nextPageUrl, @Nonnull ExtractionContext context)
+            throws ExtractionException, IOException {
+        final ExtractionContext previous = ExtractionContext.setCurrent(context);
+        try {
+            final KioskExtractor extractor = getExtractorByUrl(url, nextPageUrl);
+            extractor.setContext(context);
+            return extractor;
+        } finally {
+            ExtractionContext.setCurrent(previous);
+        }
+    }
+
     public UrlIdHandler getUrlIdHandlerByType(String type) {
         return kioskList.get(type).handler;
     }
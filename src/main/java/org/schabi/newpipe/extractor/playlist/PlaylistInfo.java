@@ -1,13 +1,19 @@
 package org.schabi.newpipe.extractor.playlist;
 
+import org.schabi.newpipe.extractor.AsyncCallback;
 import org.schabi.newpipe.extractor.ListExtractor.InfoItemPage;
 import org.schabi.newpipe.extractor.ListInfo;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
 import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.utils.CallbackTask;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import static org.schabi.newpipe.extractor.utils.ExtractorHelper.getInfoItemsOrLogError;
 
@@ -31,6 +37,29 @@ public class PlaylistInfo extends ListInfo {
         return getInfo(extractor);
     }
 
+    /**
+     * Get the info of a playlist on the given executor, without blocking the calling thread.
+     *
+     * @param callback called with the info or the error once the extraction is over, may be null
+     */
+    public static Future<PlaylistInfo> getInfoAsync(String url, Executor executor,
+                                                    @Nullable AsyncCallback<PlaylistInfo> callback) {
+        return getInfoAsync(null, url, executor, callback);
+    }
+
+    /**
+     * @param service the service of the playlist, or null to find it from the url
+     */
+    public static Future<PlaylistInfo> getInfoAsync(@Nullable final StreamingService service, final String url,
+                                                    Executor executor, @Nullable AsyncCallback<PlaylistInfo> callback) {
+        return CallbackTask.submit(executor, new Callable<PlaylistInfo>() {
+            @Override
+            public PlaylistInfo call() throws Exception {
+                return service != null ? getInfo(service, url) : getInfo(url);
+            }
+        }, callback);
+    }
+
     /**
      * Get PlaylistInfo from PlaylistExtractor
      *
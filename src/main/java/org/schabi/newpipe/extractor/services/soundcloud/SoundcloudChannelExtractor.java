@@ -1,8 +1,6 @@
 package org.schabi.newpipe.extractor.services.soundcloud;
 
 import com.grack.nanojson.JsonObject;
-import com.grack.nanojson.JsonParser;
-import com.grack.nanojson.JsonParserException;
 import org.schabi.newpipe.extractor.Downloader;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.channel.ChannelExtractor;
@@ -27,14 +25,10 @@ public class SoundcloudChannelExtractor extends ChannelExtractor {
 
         userId = getUrlIdHandler().getId(getOriginalUrl());
         String apiUrl = "https://api.soundcloud.com/users/" + userId +
-                "?client_id=" + SoundcloudParsingHelper.clientId();
+                "?client_id=" + SoundcloudParsingHelper.clientId(downloader);
 
-        String response = downloader.download(apiUrl);
-        try {
-            user = JsonParser.object().from(response);
-        } catch (JsonParserException e) {
-            throw new ParsingException("Could not parse json response", e);
-        }
+        user = SoundcloudParsingHelper.downloadJson(downloader, apiUrl);
+        SoundcloudParsingHelper.getResolveCache().put(getOriginalUrl(), user);
     }
 
     @Nonnull
@@ -90,11 +84,11 @@ public class SoundcloudChannelExtractor extends ChannelExtractor {
         StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
 
         String apiUrl = "https://api-v2.soundcloud.com/users/" + getId() + "/tracks"
-                + "?client_id=" + SoundcloudParsingHelper.clientId()
+                + "?client_id=" + SoundcloudParsingHelper.clientId(getDownloader())
                 + "&limit=20"
                 + "&linked_partitioning=1";
 
-        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(15, collector, apiUrl);
+        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(getDownloader(), 15, collector, apiUrl, getExecutor());
         return collector;
     }
 
@@ -105,7 +99,7 @@ public class SoundcloudChannelExtractor extends ChannelExtractor {
         }
 
         StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
-        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(15, collector, nextPageUrl);
+        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(getDownloader(), 15, collector, nextPageUrl, getExecutor());
 
         return new InfoItemPage(collector, nextPageUrl);
     }
@@ -45,7 +45,7 @@ public class SoundcloudChartsExtractor extends KioskExtractor {
         }
 
         StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
-        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApi(collector, nextPageUrl, true);
+        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApi(getDownloader(), collector, nextPageUrl, true);
 
         return new InfoItemPage(collector, nextPageUrl);
     }
@@ -57,7 +57,7 @@ public class SoundcloudChartsExtractor extends KioskExtractor {
 
         String apiUrl = "https://api-v2.soundcloud.com/charts" +
                 "?genre=soundcloud:genres:all-music" +
-                "&client_id=" + SoundcloudParsingHelper.clientId();
+                "&client_id=" + SoundcloudParsingHelper.clientId(getDownloader());
 
         if (getId().equals("Top 50")) {
             apiUrl += "&kind=top";
@@ -71,7 +71,7 @@ public class SoundcloudChartsExtractor extends KioskExtractor {
             apiUrl += "&region=soundcloud:regions:" + contentCountry;
         }
 
-        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApi(collector, apiUrl, true);
+        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApi(getDownloader(), collector, apiUrl, true);
         return collector;
     }
 }
@@ -0,0 +1,405 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.exceptions.HttpResponseException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+import org.schabi.newpipe.extractor.utils.ExpiringCache;
+import org.schabi.newpipe.extractor.utils.Parser.RegexException;
+import org.schabi.newpipe.extractor.utils.SingleFlight;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the client_id the SoundCloud api is called with.
+ * <p>
+ * Finding a client_id means downloading the home page and a big script of the web app, so the id is
+ * saved to a {@link Store} and reused by the next runs, after a cheap request checked it is still
+ * accepted. An id older than the refresh age is still used, but a new one is searched for in the
+ * background, or by the caller when there is no executor. When the api rejects an id anyway,
+ * {@link #refresh(Downloader, String)} replaces it. Concurrent callers share a single search.
+ */
+public class SoundcloudClientIdManager {
+    public static final long DEFAULT_REFRESH_AGE = TimeUnit.HOURS.toMillis(12);
+
+    private static final String VALIDATION_URL = "https://api-v2.soundcloud.com/?client_id=";
+    private static final String HOME_URL = "https://soundcloud.com";
+
+    private static final int MAX_MATCH_LENGTH = 512;
+    private static final Pattern APP_SCRIPT = Pattern.compile("src=\"(https://a-v2\\.sndcdn\\.com/assets/app[^\"]{0,256})\"");
+    private static final Pattern CLIENT_ID = Pattern.compile(",client_id:\"([^\"]{0,256})\"");
+    private static final Pattern CLIENT_ID_PARAMETER = Pattern.compile("([?&]client_id=)([^&]*)");
+
+    /**
+     * A client_id and when it was found
+     */
+    public static final class ClientId {
+        private final String id;
+        private final long obtainedAt;
+
+        public ClientId(@Nonnull String id, long obtainedAt) {
+            if (id == null || id.isEmpty()) throw new IllegalArgumentException("id is empty");
+            this.id = id;
+            this.obtainedAt = obtainedAt;
+        }
+
+        @Nonnull
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the time the id was found at, in milliseconds since the epoch
+         */
+        public long getObtainedAt() {
+            return obtainedAt;
+        }
+    }
+
+    /**
+     * Where the client_id is kept between runs
+     */
+    public interface Store {
+        /**
+         * @return the saved id, or null if there is none
+         */
+        @Nullable
+        ClientId load() throws IOException;
+
+        void save(@Nonnull ClientId clientId) throws IOException;
+    }
+
+    /**
+     * A store which doesn't keep anything, so every run has to find its own id
+     */
+    public static final Store NO_STORE = new Store() {
+        @Nullable
+        @Override
+        public ClientId load() {
+            return null;
+        }
+
+        @Override
+        public void save(@Nonnull ClientId clientId) {
+        }
+    };
+
+    /**
+     * Keeps the client_id in a properties file
+     */
+    public static class FileStore implements Store {
+        private final File file;
+
+        public FileStore(@Nonnull File file) {
+            this.file = file;
+        }
+
+        @Nullable
+        @Override
+        public synchronized ClientId load() throws IOException {
+            if (!file.isFile()) return null;
+
+            final Properties properties = new Properties();
+            final InputStream input = new FileInputStream(file);
+            try {
+                properties.load(input);
+            } finally {
+                input.close();
+            }
+
+            final String id = properties.getProperty("client_id");
+            if (id == null || id.isEmpty()) return null;
+            try {
+                return new ClientId(id, Long.parseLong(properties.getProperty("obtained_at", "0")));
+            } catch (NumberFormatException e) {
+                return new ClientId(id, 0);
+            }
+        }
+
+        @Override
+        public synchronized void save(@Nonnull ClientId clientId) throws IOException {
+            final Properties properties = new Properties();
+            properties.setProperty("client_id", clientId.getId());
+            properties.setProperty("obtained_at", Long.toString(clientId.getObtainedAt()));
+
+            // Write next to the file first, so a crash doesn't leave a truncated one behind
+            final File temporary = new File(file.getPath() + ".tmp");
+            final OutputStream output = new FileOutputStream(temporary);
+            try {
+                properties.store(output, "SoundCloud client_id");
+            } finally {
+                output.close();
+            }
+            if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+    private final Store store;
+    private final long refreshAge;
+    @Nullable
+    private final Executor executor;
+
+    @Nullable
+    private volatile ClientId clientId;
+    private final SingleFlight<String, ClientId> loading = new SingleFlight<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    public SoundcloudClientIdManager() {
+        this(NO_STORE, DEFAULT_REFRESH_AGE, null);
+    }
+
+    /**
+     * @param store      where the id is kept between runs
+     * @param refreshAge the age, in milliseconds, after which a new id is searched for in the background
+     * @param executor   the executor the background searches run on, or null to search on the calling thread
+     */
+    public SoundcloudClientIdManager(@Nonnull Store store, long refreshAge, @Nullable Executor executor) {
+        if (store == null) throw new NullPointerException("store is null");
+        this.store = store;
+        this.refreshAge = refreshAge;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the client_id, taking it from the store or searching for it if there isn't one yet.
+     *
+     * @param downloader the downloader to search for the id with, if needed
+     */
+    @Nonnull
+    public String get(Downloader downloader) throws IOException, ReCaptchaException, RegexException {
+        final ClientId current = clientId;
+        if (current == null) return load("initial", downloader, null, false).getId();
+
+        if (System.currentTimeMillis() - current.getObtainedAt() > refreshAge) {
+            refreshStale(downloader, current.getId());
+        }
+        return current.getId();
+    }
+
+    /**
+     * Replace the id after the api rejected it.
+     * <p>
+     * If the id was replaced already in the meantime, e.g. by another request which got rejected
+     * at the same time, the new one is returned without searching again. The id is checked first,
+     * since the api also answers 401 and 403 for private or blocked resources: if it is still accepted,
+     * it is returned unchanged and kept.
+     *
+     * @param rejectedId the id which was rejected
+     * @return the new id, or the rejected one if it is still valid
+     */
+    @Nonnull
+    public String refresh(Downloader downloader, @Nonnull String rejectedId)
+            throws IOException, ReCaptchaException, RegexException {
+        final ClientId current = clientId;
+        if (current != null && !current.getId().equals(rejectedId)) return current.getId();
+        return load("refresh", downloader, rejectedId, true).getId();
+    }
+
+    /**
+     * Put the fresh client_id into an api url whose id was rejected.
+     *
+     * @return the url with the new id, the same url if its id is still valid,
+     * or null if the url doesn't contain an id
+     */
+    @Nullable
+    public String refreshUrl(Downloader downloader, String apiUrl)
+            throws IOException, ReCaptchaException, RegexException {
+        final Matcher matcher = CLIENT_ID_PARAMETER.matcher(apiUrl);
+        if (!matcher.find()) return null;
+
+        final String freshId = refresh(downloader, matcher.group(2));
+        return apiUrl.substring(0, matcher.start(2)) + freshId + apiUrl.substring(matcher.end(2));
+    }
+
+    /**
+     * Whether the response of an api call says the client_id was not accepted.
+     */
+    public static boolean isRejected(DownloadResponse response) {
+        return isRejected(response.getResponseCode());
+    }
+
+    /**
+     * Whether the exception thrown by a downloader for an api call says the client_id was not accepted.
+     * <p>
+     * Downloaders which don't return the responses of failed requests report them with a {@link HttpResponseException}.
+     */
+    public static boolean isRejected(IOException e) {
+        return e instanceof HttpResponseException && isRejected(((HttpResponseException) e).getResponseCode());
+    }
+
+    private static boolean isRejected(int responseCode) {
+        return responseCode == 401 || responseCode == 403;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Loading
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * @param rejectedId     the id to replace, which must not be taken from the store
+     * @param keepWhenValid whether to keep the id to replace if it is the current one and still valid
+     */
+    private ClientId load(String key, final Downloader downloader, @Nullable final String rejectedId,
+                          final boolean keepWhenValid) throws IOException, ReCaptchaException, RegexException {
+        try {
+            return loading.execute(key, new ExpiringCache.Loader<String, ClientId>() {
+                @Nonnull
+                @Override
+                public ClientId load(String key) throws IOException, ReCaptchaException, RegexException {
+                    // May have been loaded by the call this one waited for
+                    final ClientId current = clientId;
+                    if (current != null && !current.getId().equals(rejectedId)) return current;
+
+                    if (current == null && rejectedId == null) {
+                        final ClientId stored = loadFromStore();
+                        if (stored != null && isValid(downloader, stored.getId())) {
+                            clientId = stored;
+                            return stored;
+                        }
+                    }
+                    if (current != null && keepWhenValid && isValid(downloader, current.getId())) return current;
+                    return discover(downloader);
+                }
+            });
+        } catch (IOException | ReCaptchaException | RegexException e) {
+            throw e;
+        } catch (ExtractionException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Search for a new id to replace the old one, sharing the search with the refreshes after a rejection.
+     * Only one refresh runs at a time, callers coming meanwhile keep using the old id.
+     */
+    private void refreshStale(final Downloader downloader, final String staleId) {
+        if (!refreshing.compareAndSet(false, true)) return;
+
+        final Runnable refresh = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load("refresh", downloader, staleId, false);
+                } catch (Exception ignored) {
+                    // The current id keeps being used, the next call tries again
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+        };
+        if (executor == null) {
+            refresh.run();
+            return;
+        }
+        try {
+            executor.execute(refresh);
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Search for a new id and keep it.
+     */
+    private ClientId discover(Downloader downloader) throws IOException, ReCaptchaException, RegexException {
+        final ClientId found = new ClientId(findClientId(downloader), System.currentTimeMillis());
+        clientId = found;
+        try {
+            store.save(found);
+        } catch (IOException ignored) {
+            // Only the next run has to search again
+        }
+        return found;
+    }
+
+    @Nullable
+    private ClientId loadFromStore() {
+        try {
+            return store.load();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check the id with a request which is answered with a tiny error body, but with 401 if the id is invalid.
+     * <p>
+     * Only a rejection makes the id invalid: if the request fails for another reason,
+     * searching for a new id would most likely fail as well.
+     */
+    private static boolean isValid(Downloader downloader, String id) throws ReCaptchaException {
+        try {
+            final DownloadResponse response = DownloadResponse.open(downloader, VALIDATION_URL + id);
+            response.close();
+            return !isRejected(response);
+        } catch (IOException e) {
+            return !isRejected(e);
+        }
+    }
+
+    /**
+     * Find the id in the app script linked by the home page.
+     * <p>
+     * Both are only read until what is looked for shows up, the rest of the transfer is aborted.
+     */
+    @Nonnull
+    static String findClientId(Downloader downloader) throws IOException, ReCaptchaException, RegexException {
+        final String scriptUrl = scan(downloader, HOME_URL, APP_SCRIPT);
+        if (scriptUrl == null) throw new RegexException("Could not find the app script");
+
+        final String id = scan(downloader, scriptUrl, CLIENT_ID);
+        if (id == null || id.isEmpty()) throw new RegexException("Could not find the client_id in " + scriptUrl);
+        return id;
+    }
+
+    @Nullable
+    private static String scan(Downloader downloader, String url, Pattern pattern)
+            throws IOException, ReCaptchaException {
+        final DownloadResponse response = DownloadResponse.open(downloader, url);
+        try {
+            return findFirst(response.getReader(), pattern);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Read until the pattern is found, keeping only the end of what was read in memory.
+     *
+     * @param pattern a pattern matching at most {@link #MAX_MATCH_LENGTH} characters
+     * @return the first group of the first match, or null if the end was reached without one
+     */
+    @Nullable
+    static String findFirst(Reader reader, Pattern pattern) throws IOException {
+        final char[] buffer = new char[8192];
+        final StringBuilder window = new StringBuilder();
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            window.append(buffer, 0, read);
+            final Matcher matcher = pattern.matcher(window);
+            if (matcher.find()) return matcher.group(1);
+
+            // A match may begin in the last characters and end in the next chunk
+            if (window.length() > MAX_MATCH_LENGTH) window.delete(0, window.length() - MAX_MATCH_LENGTH);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,458 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import com.grack.nanojson.JsonArray;
+import com.grack.nanojson.JsonObject;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a collection answered by the api while it is being downloaded, keeping of each item
+ * only the {@link Fields fields} the info item extractors use.
+ * <p>
+ * A page of tracks is mostly made of what isn't shown in a list: the full uploader, the media
+ * and the publisher metadata. These are skipped character by character instead of being parsed
+ * into objects which would be thrown away right after. Skipped values are only checked to be
+ * well nested, the kept ones are parsed like {@link com.grack.nanojson.JsonParser} would.
+ */
+final class SoundcloudCollectionReader {
+    /**
+     * The fields kept of an object, each with the fields kept of its value if it is an object or
+     * an array of objects, or null to keep all of it.
+     */
+    static final class Fields {
+        private final Map<String, Fields> fields;
+
+        private Fields(Map<String, Fields> fields) {
+            this.fields = fields;
+        }
+
+        static Fields of(String... names) {
+            final Map<String, Fields> fields = new HashMap<>();
+            for (String name : names) {
+                fields.put(name, null);
+            }
+            return new Fields(fields);
+        }
+
+        Fields with(String name, Fields nested) {
+            final Map<String, Fields> copy = new HashMap<>(fields);
+            copy.put(name, nested);
+            return new Fields(copy);
+        }
+
+        /**
+         * The fields kept by either this or the other.
+         */
+        Fields and(Fields other) {
+            final Map<String, Fields> union = new HashMap<>(fields);
+            for (Map.Entry<String, Fields> entry : other.fields.entrySet()) {
+                final String name = entry.getKey();
+                if (!union.containsKey(name)) {
+                    union.put(name, entry.getValue());
+                } else if (union.get(name) != null) {
+                    union.put(name, entry.getValue() == null ? null : union.get(name).and(entry.getValue()));
+                }
+            }
+            return new Fields(union);
+        }
+    }
+
+    /**
+     * What {@link SoundcloudChannelInfoItemExtractor} reads
+     */
+    static final Fields USER = Fields.of("kind", "username", "permalink_url", "avatar_url",
+            "followers_count", "track_count", "description");
+    /**
+     * What {@link SoundcloudStreamInfoItemExtractor} reads
+     */
+    static final Fields TRACK = Fields.of("kind", "permalink_url", "title", "duration", "created_at",
+            "playback_count", "artwork_url")
+            .with("user", Fields.of("username", "permalink_url"));
+    /**
+     * What {@link SoundcloudPlaylistInfoItemExtractor} reads
+     */
+    static final Fields PLAYLIST = Fields.of("kind", "title", "permalink_url", "artwork_url", "track_count")
+            .with("tracks", Fields.of("artwork_url").with("user", Fields.of("avatar_url")))
+            .with("user", Fields.of("username", "avatar_url"));
+    /**
+     * The entries of the charts, which wrap a track
+     */
+    static final Fields CHART_ENTRY = Fields.of().with("track", TRACK);
+    /**
+     * The results of a search, which can be of any kind
+     */
+    static final Fields ANY = USER.and(TRACK).and(PLAYLIST);
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    /**
+     * The number of characters read before the ones in the buffer, for the error messages
+     */
+    private long offset;
+    private final StringBuilder builder = new StringBuilder();
+    private final StringBuilder nesting = new StringBuilder();
+
+    private SoundcloudCollectionReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read a response made of a "collection" array and a "next_href" url. A response which is only
+     * the array, as answered when the linked partitioning is not asked for, is read as well.
+     *
+     * @param itemFields the fields kept of the items of the collection
+     * @return an object with the collection of the compact items and the next_href, if any
+     */
+    static JsonObject read(Reader reader, Fields itemFields) throws IOException, ParsingException {
+        return new SoundcloudCollectionReader(reader).readResponse(itemFields);
+    }
+
+    private JsonObject readResponse(Fields itemFields) throws IOException, ParsingException {
+        final JsonObject response = new JsonObject();
+        final int first = peek();
+        if (first == '[') {
+            response.put("collection", readValue(itemFields));
+            return response;
+        }
+
+        expect('{');
+        if (peek() == '}') {
+            position++;
+        } else {
+            do {
+                final String key = readKey();
+                if (key.equals("collection")) {
+                    response.put(key, readValue(itemFields));
+                } else if (key.equals("next_href")) {
+                    response.put(key, readValue(null));
+                } else {
+                    skipValue();
+                }
+            } while (nextSeparator('}'));
+        }
+
+        if (!(response.get("collection") instanceof JsonArray)) {
+            throw error("No collection in the response");
+        }
+        return response;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Kept values
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * @param fields the fields kept of the value if it's an object or an array of objects, null to keep all
+     */
+    @Nullable
+    private Object readValue(@Nullable Fields fields) throws IOException, ParsingException {
+        final int c = peek();
+        switch (c) {
+            case '{':
+                position++;
+                return readObject(fields);
+            case '[':
+                position++;
+                return readArray(fields);
+            case '"':
+                position++;
+                return readString();
+            case 't':
+                readLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                readLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                readLiteral("null");
+                return null;
+            default:
+                return readNumber();
+        }
+    }
+
+    private JsonObject readObject(@Nullable Fields fields) throws IOException, ParsingException {
+        final JsonObject object = new JsonObject();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+
+        do {
+            final String key = readKey();
+            if (fields == null) {
+                object.put(key, readValue(null));
+            } else if (fields.fields.containsKey(key)) {
+                object.put(key, readValue(fields.fields.get(key)));
+            } else {
+                skipValue();
+            }
+        } while (nextSeparator('}'));
+        return object;
+    }
+
+    private JsonArray readArray(@Nullable Fields fields) throws IOException, ParsingException {
+        final JsonArray array = new JsonArray();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+
+        do {
+            array.add(readValue(fields));
+        } while (nextSeparator(']'));
+        return array;
+    }
+
+    private String readKey() throws IOException, ParsingException {
+        expect('"');
+        final String key = readString();
+        expect(':');
+        return key;
+    }
+
+    /**
+     * Read the rest of a string whose opening quote was read.
+     */
+    private String readString() throws IOException, ParsingException {
+        builder.setLength(0);
+        while (true) {
+            // Copy the plain characters at once
+            final int start = position;
+            int end = start;
+            while (end < limit) {
+                final char c = buffer[end];
+                if (c == '"' || c == '\\' || c < 0x20) break;
+                end++;
+            }
+            if (end == limit && start == end) {
+                if (!fill()) throw error("Unexpected end of response");
+                continue;
+            }
+            builder.append(buffer, start, end - start);
+            position = end;
+            if (end == limit) continue;
+
+            final int c = read();
+            if (c == '"') return builder.toString();
+            if (c != '\\') throw error("Unexpected control character in string");
+
+            final int escaped = read();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append((char) escaped);
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    int codeUnit = 0;
+                    for (int i = 0; i < 4; i++) {
+                        final int digit = Character.digit(read(), 16);
+                        if (digit < 0) throw error("Invalid unicode escape");
+                        codeUnit = codeUnit * 16 + digit;
+                    }
+                    builder.append((char) codeUnit);
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    private Number readNumber() throws IOException, ParsingException {
+        builder.setLength(0);
+        boolean decimal = false;
+        while (true) {
+            final int c = peekChar();
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+') {
+                builder.append((char) c);
+            } else if (c == '.' || c == 'e' || c == 'E') {
+                builder.append((char) c);
+                decimal = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+
+        final String number = builder.toString();
+        try {
+            if (decimal) return Double.parseDouble(number);
+            final long value = Long.parseLong(number);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int) value;
+            return value;
+        } catch (NumberFormatException e) {
+            if (number.isEmpty()) throw error("Unexpected character");
+            try {
+                // Too large for a long
+                return Double.parseDouble(number);
+            } catch (NumberFormatException ignored) {
+                throw error("Invalid number " + number);
+            }
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException, ParsingException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) throw error("Invalid literal");
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Skipped values
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Skip the next value, whatever its size, without building anything out of it.
+     */
+    private void skipValue() throws IOException, ParsingException {
+        // The closing brackets expected, innermost last
+        nesting.setLength(0);
+        peek();
+        do {
+            final int c = read();
+            switch (c) {
+                case '{':
+                    nesting.append('}');
+                    break;
+                case '[':
+                    nesting.append(']');
+                    break;
+                case '}':
+                case ']':
+                    final int depth = nesting.length();
+                    if (depth == 0 || nesting.charAt(depth - 1) != c) throw error("Unexpected '" + (char) c + "'");
+                    nesting.setLength(depth - 1);
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                default:
+                    if (nesting.length() == 0) {
+                        // A number or a literal, which ends where the next token starts
+                        while (isScalarPart(peekChar())) position++;
+                    }
+                    break;
+            }
+        } while (nesting.length() > 0);
+    }
+
+    /**
+     * Skip the rest of a string whose opening quote was read.
+     */
+    private void skipString() throws IOException, ParsingException {
+        boolean escaped = false;
+        while (true) {
+            final char[] buffer = this.buffer;
+            final int limit = this.limit;
+            int i = position;
+            if (escaped && i < limit) {
+                i++;
+                escaped = false;
+            }
+            while (i < limit) {
+                final char c = buffer[i++];
+                if (c == '"') {
+                    position = i;
+                    return;
+                }
+                if (c == '\\') {
+                    if (i == limit) {
+                        escaped = true;
+                    } else {
+                        i++;
+                    }
+                }
+            }
+            position = i;
+            if (!fill()) throw error("Unexpected end of response");
+        }
+    }
+
+    private static boolean isScalarPart(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E';
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Characters
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Read the separator following a member or an element.
+     *
+     * @return true if another one follows, false if the given end was reached
+     */
+    private boolean nextSeparator(char end) throws IOException, ParsingException {
+        final int c = peek();
+        position++;
+        if (c == ',') return true;
+        if (c == end) return false;
+        throw error("Expected ',' or '" + end + "'");
+    }
+
+    private void expect(char expected) throws IOException, ParsingException {
+        if (peek() != expected) throw error("Expected '" + expected + "'");
+        position++;
+    }
+
+    /**
+     * The next character which is not whitespace, without consuming it.
+     */
+    private int peek() throws IOException, ParsingException {
+        while (true) {
+            final int c = peekChar();
+            if (c < 0) throw error("Unexpected end of response");
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            position++;
+        }
+    }
+
+    /**
+     * @return the next character without consuming it, -1 at the end
+     */
+    private int peekChar() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    private int read() throws IOException, ParsingException {
+        if (position == limit && !fill()) throw error("Unexpected end of response");
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        final int read = reader.read(buffer);
+        if (read <= 0) return false;
+        limit = read;
+        return true;
+    }
+
+    private ParsingException error(String message) {
+        return new ParsingException(message + " at character " + (offset + position));
+    }
+}
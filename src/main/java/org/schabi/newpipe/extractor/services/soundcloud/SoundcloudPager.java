@@ -0,0 +1,266 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import com.grack.nanojson.JsonArray;
+import com.grack.nanojson.JsonObject;
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.ExtractionContext;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches the pages of a SoundCloud collection until enough items were collected.
+ * <p>
+ * The page size asked for is raised to what is needed, up to the {@link #MAX_PAGE_SIZE maximum} the
+ * api allows. With an executor, the next page is always being downloaded while the previous one is
+ * handed to the {@link PageConsumer consumer}, and when the api pages by offset, the pages following
+ * it are downloaded at the same time too, up to the configured number of concurrent pages. Without
+ * one, the pages are downloaded one after the other on the calling thread.
+ */
+public class SoundcloudPager {
+    /**
+     * The largest "limit" the api accepts
+     */
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int DEFAULT_MAX_CONCURRENT_PAGES = 4;
+
+    private static final Pattern LIMIT = Pattern.compile("([?&]limit=)(\\d+)");
+    private static final Pattern OFFSET = Pattern.compile("([?&]offset=)(\\d+)");
+
+    /**
+     * Takes the items of each page, in order
+     */
+    interface PageConsumer {
+        /**
+         * @return the number of items collected so far
+         */
+        int consume(JsonArray collection) throws ParsingException;
+    }
+
+    private final int maxConcurrentPages;
+    @Nullable
+    private final Executor executor;
+
+    public SoundcloudPager() {
+        this(DEFAULT_MAX_CONCURRENT_PAGES, null);
+    }
+
+    /**
+     * @param maxConcurrentPages the maximum number of pages downloaded at the same time
+     * @param executor           where to download the pages, or null to download them in turn on the calling thread
+     */
+    public SoundcloudPager(int maxConcurrentPages, @Nullable Executor executor) {
+        if (maxConcurrentPages <= 0) throw new IllegalArgumentException("maxConcurrentPages must be positive");
+        this.maxConcurrentPages = maxConcurrentPages;
+        this.executor = executor;
+    }
+
+    public int getMaxConcurrentPages() {
+        return maxConcurrentPages;
+    }
+
+    /**
+     * Fetch the pages from the given api url until the consumer collected {@code minItems} items
+     * or there are no more pages.
+     *
+     * @param itemFields the fields kept of the items
+     * @param executor   where to download the pages, or null to use the one of this pager
+     * @return the url of the page following the consumed ones, empty if there is none
+     */
+    String fetch(Downloader downloader, String apiUrl, int minItems, SoundcloudCollectionReader.Fields itemFields,
+                 @Nullable Executor executor, PageConsumer consumer) throws IOException, ReCaptchaException, ParsingException {
+        if (executor == null) executor = this.executor;
+        final ArrayDeque<Page> pending = new ArrayDeque<>();
+        try {
+            String url = withPageSize(apiUrl, minItems);
+            pending.add(Page.start(downloader, url, itemFields, executor));
+            int collected = 0;
+            while (true) {
+                final Page page = pending.poll();
+                final JsonObject response = page.get();
+                final JsonArray collection = response.getArray("collection");
+                final String nextUrl = SoundcloudParsingHelper.getNextPageUrl(downloader, response);
+
+                // Drop the pages started ahead of time if the api went elsewhere
+                if (!pending.isEmpty() && !pending.peek().isAt(nextUrl)) cancelAll(pending);
+
+                // Get the next pages going before handing this one out
+                final int pageSize = Math.max(getLimit(nextUrl, getLimit(url, collection.size())), 1);
+                final int missing = minItems - collected - collection.size();
+                if (!nextUrl.isEmpty() && missing > 0) {
+                    final int neededPages = (missing + pageSize - 1) / pageSize;
+                    final int ahead = executor != null && getOffset(nextUrl) >= 0
+                            ? Math.min(neededPages, maxConcurrentPages) : 1;
+                    if (pending.isEmpty()) pending.add(Page.start(downloader, nextUrl, itemFields, executor));
+                    while (pending.size() < ahead) {
+                        final Page last = pending.peekLast();
+                        final long offset = getOffset(last.url) + pageSize;
+                        pending.add(Page.start(downloader, withOffset(last.url, offset), itemFields, executor));
+                    }
+                }
+
+                collected = consumer.consume(collection);
+                url = nextUrl;
+                if (nextUrl.isEmpty() || collected >= minItems || collection.size() == 0) return nextUrl;
+                Deadline.checkCurrent();
+            }
+        } finally {
+            cancelAll(pending);
+        }
+    }
+
+    private static void cancelAll(ArrayDeque<Page> pages) {
+        for (Page page : pages) {
+            page.cancel();
+        }
+        pages.clear();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Page
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static final class Page {
+        final String url;
+        private FutureTask<JsonObject> task;
+
+        /**
+         * The response being read, closed on cancellation since interrupting the task doesn't abort it
+         */
+        @Nullable
+        private DownloadResponse response;
+        private boolean cancelled = false;
+
+        private Page(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Start downloading the page on the executor. Without one, it is downloaded once it is asked for.
+         */
+        static Page start(final Downloader downloader, final String url,
+                          final SoundcloudCollectionReader.Fields itemFields, @Nullable Executor executor) {
+            final Page page = new Page(url);
+            page.task = new FutureTask<>(ExtractionContext.wrap(new Callable<JsonObject>() {
+                @Override
+                public JsonObject call() throws Exception {
+                    final DownloadResponse response = SoundcloudParsingHelper.openApi(downloader, url);
+                    try {
+                        if (!page.setResponse(response)) {
+                            throw new InterruptedIOException("Fetching " + url + " was cancelled");
+                        }
+                        return SoundcloudParsingHelper.readCollection(response, itemFields);
+                    } finally {
+                        response.close();
+                    }
+                }
+            }));
+            if (executor != null) {
+                try {
+                    executor.execute(page.task);
+                } catch (RejectedExecutionException e) {
+                    page.task.run();
+                }
+            }
+            return page;
+        }
+
+        /**
+         * @return false if the page was cancelled already
+         */
+        private synchronized boolean setResponse(DownloadResponse response) {
+            if (cancelled) return false;
+            this.response = response;
+            return true;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            task.cancel(true);
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        /**
+         * Whether this is the page the given url points to, as far as can be told.
+         * The api may order the parameters differently or use another client_id.
+         */
+        boolean isAt(String nextUrl) {
+            if (nextUrl.isEmpty()) return false;
+            final long offset = getOffset(url);
+            return offset >= 0 ? offset == getOffset(nextUrl) : url.equals(nextUrl);
+        }
+
+        JsonObject get() throws IOException, ReCaptchaException, ParsingException {
+            // Does nothing if it runs or ran on the executor already
+            task.run();
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while fetching " + url);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof ReCaptchaException) throw (ReCaptchaException) cause;
+                if (cause instanceof ParsingException) throw (ParsingException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IOException("Could not fetch " + url, cause);
+            }
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * The url asking for as many items as needed in one page, within what the api allows.
+     * A smaller limit than asked for already is never set, nor one when the url has none.
+     */
+    static String withPageSize(String url, int minItems) {
+        final Matcher matcher = LIMIT.matcher(url);
+        if (!matcher.find()) return url;
+        final int limit = Integer.parseInt(matcher.group(2));
+        final int wanted = Math.min(minItems, MAX_PAGE_SIZE);
+        if (limit >= wanted) return url;
+        return url.substring(0, matcher.start(2)) + wanted + url.substring(matcher.end(2));
+    }
+
+    static int getLimit(String url, int fallback) {
+        final Matcher matcher = LIMIT.matcher(url);
+        return matcher.find() ? Integer.parseInt(matcher.group(2)) : fallback;
+    }
+
+    /**
+     * @return the offset the url asks for, or -1 if it asks by cursor
+     */
+    static long getOffset(String url) {
+        final Matcher matcher = OFFSET.matcher(url);
+        return matcher.find() ? Long.parseLong(matcher.group(2)) : -1;
+    }
+
+    static String withOffset(String url, long offset) {
+        final Matcher matcher = OFFSET.matcher(url);
+        if (!matcher.find()) throw new IllegalArgumentException("url has no offset: " + url);
+        return url.substring(0, matcher.start(2)) + offset + url.substring(matcher.end(2));
+    }
+}
@@ -5,11 +5,12 @@ import com.grack.nanojson.JsonObject;
 import com.grack.nanojson.JsonParser;
 import com.grack.nanojson.JsonParserException;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.schabi.newpipe.extractor.DownloadResponse;
 import org.schabi.newpipe.extractor.Downloader;
-import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.ExtractionContext;
 import org.schabi.newpipe.extractor.channel.ChannelInfoItemsCollector;
+import org.schabi.newpipe.extractor.exceptions.HttpResponseException;
 import org.schabi.newpipe.extractor.exceptions.ParsingException;
 import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
 import org.schabi.newpipe.extractor.stream.StreamInfoItemsCollector;
@@ -17,14 +18,20 @@ import org.schabi.newpipe.extractor.utils.Parser;
 import org.schabi.newpipe.extractor.utils.Parser.RegexException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.URLEncoder;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.Executor;
 
 public class SoundcloudParsingHelper {
-    private static String clientId;
+    private static volatile SoundcloudClientIdManager clientIdManager = new SoundcloudClientIdManager();
+    private static volatile SoundcloudResolveCache resolveCache = new SoundcloudResolveCache();
+    private static volatile SoundcloudPager pager = new SoundcloudPager();
 
     private static final String HTTP = "http://";
     private static final String HTTPS = "https://";
@@ -32,22 +39,55 @@ public class SoundcloudParsingHelper {
     private SoundcloudParsingHelper() {
     }
 
+    /**
+     * The client_id, found with the downloader of the {@link ExtractionContext#current() current context} if not known yet.
+     */
     public static String clientId() throws ReCaptchaException, IOException, RegexException {
-        if (clientId != null && !clientId.isEmpty()) return clientId;
+        return clientId(ExtractionContext.current().getDownloader());
+    }
+
+    public static String clientId(Downloader downloader) throws ReCaptchaException, IOException, RegexException {
+        return clientIdManager.get(downloader);
+    }
+
+    /**
+     * Replace the manager of the client_id, e.g. with one which keeps it in a
+     * {@link SoundcloudClientIdManager.FileStore file} between runs.
+     */
+    public static void setClientIdManager(@Nonnull SoundcloudClientIdManager manager) {
+        if (manager == null) throw new NullPointerException("manager is null");
+        clientIdManager = manager;
+    }
+
+    @Nonnull
+    public static SoundcloudClientIdManager getClientIdManager() {
+        return clientIdManager;
+    }
 
-        Downloader dl = NewPipe.getDownloader();
+    /**
+     * Replace the cache of the resolved urls, e.g. with one filled from a previous run.
+     */
+    public static void setResolveCache(@Nonnull SoundcloudResolveCache cache) {
+        if (cache == null) throw new NullPointerException("cache is null");
+        resolveCache = cache;
+    }
 
-        String response = dl.download("https://soundcloud.com");
-        Document doc = Jsoup.parse(response);
+    @Nonnull
+    public static SoundcloudResolveCache getResolveCache() {
+        return resolveCache;
+    }
 
-        // TODO: Find a less heavy way to get the client_id
-        // Currently we are downloading a 1MB file (!) just to get the client_id,
-        // youtube-dl don't have a way too, they are just hardcoding and updating it when it becomes invalid.
-        // The embed mode has a way to get it, but we still have to download a heavy file (~800KB).
-        Element jsElement = doc.select("script[src^=https://a-v2.sndcdn.com/assets/app]").first();
-        String js = dl.download(jsElement.attr("src"));
+    /**
+     * Replace the pager of the collections, e.g. with one allowing more concurrent pages.
+     */
+    public static void setPager(@Nonnull SoundcloudPager pager) {
+        if (pager == null) throw new NullPointerException("pager is null");
+        SoundcloudParsingHelper.pager = pager;
+    }
 
-        return clientId = Parser.matchGroup1(",client_id:\"(.*?)\"", js);
+    @Nonnull
+    public static SoundcloudPager getPager() {
+        return pager;
     }
 
     public static String toDateString(String time) throws ParsingException {
@@ -71,17 +111,98 @@ public class SoundcloudParsingHelper {
      * Call the endpoint "/resolve" of the api.<p>
      * 
      * See https://developers.soundcloud.com/docs/api/reference#resolve
+     * <p>
+     * If the resource of the url is {@link SoundcloudResolveCache known} already,
+     * it is downloaded directly instead, skipping the redirection of the endpoint. What is known is
+     * only forgotten if the resource is gone or the url points to something else now.
      */
     public static JsonObject resolveFor(Downloader downloader, String url) throws IOException, ReCaptchaException, ParsingException {
+        final SoundcloudResolveCache.Entry known = resolveCache.get(url);
+        if (known != null && known.getApiUrl() != null) {
+            try {
+                final JsonObject resource = downloadJson(downloader, known.getApiUrl() + "?client_id=" + clientId(downloader));
+                if (known.getKind().equals(resource.getString("kind"))) return resource;
+                // The error of a streaming downloader, or the permalink points to something else now
+                resolveCache.invalidate(url);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (HttpResponseException e) {
+                // Deleted since
+                if (e.getResponseCode() == 404 || e.getResponseCode() == 410) resolveCache.invalidate(url);
+            } catch (IOException | ParsingException e) {
+                // Asking the endpoint may still work, nothing says what is known is wrong
+            }
+        }
+
         String apiUrl = "https://api.soundcloud.com/resolve"
                 + "?url=" + URLEncoder.encode(url, "UTF-8")
-                + "&client_id=" + clientId();
+                + "&client_id=" + clientId(downloader);
+
+        final JsonObject resource = downloadJson(downloader, apiUrl);
+        resolveCache.put(url, resource);
+        return resource;
+    }
 
+    /**
+     * Download the given api url and parse the response while it is being read.
+     * <p>
+     * If the api rejects the client_id of the url, the request is made once more with a fresh one.
+     */
+    static JsonObject downloadJson(Downloader downloader, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        final DownloadResponse response = openApi(downloader, apiUrl);
         try {
-            return JsonParser.object().from(downloader.download(apiUrl));
+            return JsonParser.object().from(response.getInputStream());
         } catch (JsonParserException e) {
             throw new ParsingException("Could not parse json response", e);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Download a page of a collection like {@link #downloadJson(Downloader, String)} does, keeping only
+     * the given fields of its items.
+     *
+     * @return the "collection" of the compact items and the "next_href" of the page
+     * @see SoundcloudCollectionReader
+     */
+    static JsonObject downloadCollection(Downloader downloader, String apiUrl, SoundcloudCollectionReader.Fields itemFields)
+            throws IOException, ReCaptchaException, ParsingException {
+        final DownloadResponse response = openApi(downloader, apiUrl);
+        try {
+            return readCollection(response, itemFields);
+        } finally {
+            response.close();
+        }
+    }
+
+    static JsonObject readCollection(DownloadResponse response, SoundcloudCollectionReader.Fields itemFields)
+            throws IOException, ParsingException {
+        return SoundcloudCollectionReader.read(new InputStreamReader(response.getInputStream(), "UTF-8"), itemFields);
+    }
+
+    /**
+     * Open the given api url, once more with a fresh client_id if the api rejects the one of the url.
+     * <p>
+     * If the client_id is still valid, the api rejected the request itself (e.g. for a private track)
+     * and its error is thrown.
+     */
+    static DownloadResponse openApi(Downloader downloader, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        HttpResponseException rejection;
+        try {
+            final DownloadResponse response = DownloadResponse.open(downloader, apiUrl);
+            if (!SoundcloudClientIdManager.isRejected(response)) return response;
+            response.close();
+            rejection = new HttpResponseException(response.getResponseCode(),
+                    "Request rejected with " + response.getResponseCode() + ": " + apiUrl);
+        } catch (IOException e) {
+            if (!SoundcloudClientIdManager.isRejected(e)) throw e;
+            rejection = (HttpResponseException) e;
         }
+
+        final String retryUrl = clientIdManager.refreshUrl(downloader, apiUrl);
+        if (retryUrl == null || retryUrl.equals(apiUrl)) throw rejection;
+        return DownloadResponse.open(downloader, retryUrl);
     }
 
     /**
@@ -90,11 +211,19 @@ public class SoundcloudParsingHelper {
      * @return the url resolved
      */
     public static String resolveUrlWithEmbedPlayer(String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        return resolveUrlWithEmbedPlayer(ExtractionContext.current().getDownloader(), apiUrl);
+    }
+
+    public static String resolveUrlWithEmbedPlayer(Downloader downloader, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        final SoundcloudResolveCache.Entry known = resolveCache.get(apiUrl);
+        if (known != null && known.getCanonicalUrl() != null) return known.getCanonicalUrl();
 
-        String response = NewPipe.getDownloader().download("https://w.soundcloud.com/player/?url="
+        String response = downloader.download("https://w.soundcloud.com/player/?url="
                 + URLEncoder.encode(apiUrl, "UTF-8"));
 
-        return Jsoup.parse(response).select("link[rel=\"canonical\"]").first().attr("abs:href");
+        final String canonicalUrl = Jsoup.parse(response).select("link[rel=\"canonical\"]").first().attr("abs:href");
+        resolveCache.put(apiUrl, null, null, canonicalUrl);
+        return canonicalUrl;
     }
 
     /**
@@ -103,28 +232,74 @@ public class SoundcloudParsingHelper {
      * @return the resolved id
      */
     public static String resolveIdWithEmbedPlayer(String url) throws IOException, ReCaptchaException, ParsingException {
+        return resolveIdWithEmbedPlayer(ExtractionContext.current().getDownloader(), url);
+    }
+
+    public static String resolveIdWithEmbedPlayer(Downloader downloader, String url) throws IOException, ReCaptchaException, ParsingException {
+        final SoundcloudResolveCache.Entry known = resolveCache.get(url);
+        if (known != null && known.getId() != null) return known.getId();
 
-        String response = NewPipe.getDownloader().download("https://w.soundcloud.com/player/?url="
+        String response = downloader.download("https://w.soundcloud.com/player/?url="
                 + URLEncoder.encode(url, "UTF-8"));
-        return Parser.matchGroup1(",\"id\":(.*?),", response);
+        final String id = Parser.matchGroup1(",\"id\":(.*?),", response);
+        resolveCache.put(url, null, id, null);
+        return id;
+    }
+
+    /**
+     * Get the canonical url of a page, from its "og:url" meta tag.
+     *
+     * @return the url resolved
+     */
+    public static String resolveCanonicalUrl(String url) throws IOException, ReCaptchaException, ParsingException {
+        return resolveCanonicalUrl(ExtractionContext.current().getDownloader(), url);
+    }
+
+    public static String resolveCanonicalUrl(Downloader downloader, String url) throws IOException, ReCaptchaException, ParsingException {
+        final SoundcloudResolveCache.Entry known = resolveCache.get(url);
+        if (known != null && known.getCanonicalUrl() != null) return known.getCanonicalUrl();
+
+        final Element ogElement = Jsoup.parse(downloader.download(url))
+                .select("meta[property=og:url]").first();
+        if (ogElement == null) throw new ParsingException("Could not find the canonical url of " + url);
+
+        final String canonicalUrl = ogElement.attr("content");
+        resolveCache.put(url, null, null, canonicalUrl);
+        return canonicalUrl;
     }
 
     /**
      * Fetch the users from the given api and commit each of them to the collector.
      * <p>
-     * This differ from {@link #getUsersFromApi(ChannelInfoItemsCollector, String)} in the sense that they will always
-     * get MIN_ITEMS or more.
+     * This differ from {@link #getUsersFromApi(Downloader, ChannelInfoItemsCollector, String)} in the sense that they will always
+     * get MIN_ITEMS or more, fetching the pages with the {@link #getPager() pager}.
      *
      * @param minItems the method will return only when it have extracted that many items (equal or more)
      */
-    public static String getUsersFromApiMinItems(int minItems, ChannelInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
-        String nextPageUrl = SoundcloudParsingHelper.getUsersFromApi(collector, apiUrl);
+    public static String getUsersFromApiMinItems(Downloader downloader, int minItems, ChannelInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        return getUsersFromApiMinItems(downloader, minItems, collector, apiUrl, null);
+    }
 
-        while (!nextPageUrl.isEmpty() && collector.getItemList().size() < minItems) {
-            nextPageUrl = SoundcloudParsingHelper.getUsersFromApi(collector, nextPageUrl);
-        }
+    /**
+     * Like {@link #getUsersFromApiMinItems(Downloader, int, ChannelInfoItemsCollector, String)}, with the downloader
+     * of the {@link ExtractionContext#current() current context}.
+     */
+    public static String getUsersFromApiMinItems(int minItems, ChannelInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        return getUsersFromApiMinItems(ExtractionContext.current().getDownloader(), minItems, collector, apiUrl);
+    }
 
-        return nextPageUrl;
+    /**
+     * @param executor where to download the pages, or null for the one of the pager
+     */
+    public static String getUsersFromApiMinItems(Downloader downloader, int minItems, final ChannelInfoItemsCollector collector, String apiUrl,
+                                                 @Nullable Executor executor) throws IOException, ReCaptchaException, ParsingException {
+        return pager.fetch(downloader, apiUrl, minItems, SoundcloudCollectionReader.USER, executor, new SoundcloudPager.PageConsumer() {
+            @Override
+            public int consume(JsonArray collection) {
+                commitUsers(collector, collection);
+                return collector.getItemList().size();
+            }
+        });
     }
 
     /**
@@ -132,50 +307,48 @@ public class SoundcloudParsingHelper {
      *
      * @return the next streams url, empty if don't have
      */
-    public static String getUsersFromApi(ChannelInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
-        String response = NewPipe.getDownloader().download(apiUrl);
-        JsonObject responseObject;
-        try {
-            responseObject = JsonParser.object().from(response);
-        } catch (JsonParserException e) {
-            throw new ParsingException("Could not parse json response", e);
-        }
-
-        JsonArray responseCollection = responseObject.getArray("collection");
-        for (Object o : responseCollection) {
-            if (o instanceof JsonObject) {
-                JsonObject object = (JsonObject) o;
-                collector.commit(new SoundcloudChannelInfoItemExtractor(object));
-            }
-        }
-
-        String nextPageUrl;
-        try {
-            nextPageUrl = responseObject.getString("next_href");
-            if (!nextPageUrl.contains("client_id=")) nextPageUrl += "&client_id=" + SoundcloudParsingHelper.clientId();
-        } catch (Exception ignored) {
-            nextPageUrl = "";
-        }
+    public static String getUsersFromApi(Downloader downloader, ChannelInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        JsonObject responseObject = downloadCollection(downloader, apiUrl, SoundcloudCollectionReader.USER);
+        commitUsers(collector, responseObject.getArray("collection"));
+        return getNextPageUrl(downloader, responseObject);
+    }
 
-        return nextPageUrl;
+    public static String getUsersFromApi(ChannelInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        return getUsersFromApi(ExtractionContext.current().getDownloader(), collector, apiUrl);
     }
 
     /**
      * Fetch the streams from the given api and commit each of them to the collector.
      * <p>
-     * This differ from {@link #getStreamsFromApi(StreamInfoItemsCollector, String)} in the sense that they will always
-     * get MIN_ITEMS or more items.
+     * This differ from {@link #getStreamsFromApi(Downloader, StreamInfoItemsCollector, String)} in the sense that they will always
+     * get MIN_ITEMS or more items, fetching the pages with the {@link #getPager() pager}.
      *
      * @param minItems the method will return only when it have extracted that many items (equal or more)
      */
-    public static String getStreamsFromApiMinItems(int minItems, StreamInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
-        String nextPageUrl = SoundcloudParsingHelper.getStreamsFromApi(collector, apiUrl);
+    public static String getStreamsFromApiMinItems(Downloader downloader, int minItems, StreamInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        return getStreamsFromApiMinItems(downloader, minItems, collector, apiUrl, null);
+    }
 
-        while (!nextPageUrl.isEmpty() && collector.getItemList().size() < minItems) {
-            nextPageUrl = SoundcloudParsingHelper.getStreamsFromApi(collector, nextPageUrl);
-        }
+    /**
+     * Like {@link #getStreamsFromApiMinItems(Downloader, int, StreamInfoItemsCollector, String)}, with the downloader
+     * of the {@link ExtractionContext#current() current context}.
+     */
+    public static String getStreamsFromApiMinItems(int minItems, StreamInfoItemsCollector collector, String apiUrl) throws IOException, ReCaptchaException, ParsingException {
+        return getStreamsFromApiMinItems(ExtractionContext.current().getDownloader(), minItems, collector, apiUrl);
+    }
 
-        return nextPageUrl;
+    /**
+     * @param executor where to download the pages, or null for the one of the pager
+     */
+    public static String getStreamsFromApiMinItems(Downloader downloader, int minItems, final StreamInfoItemsCollector collector, String apiUrl,
+                                                   @Nullable Executor executor) throws IOException, ReCaptchaException, ParsingException {
+        return pager.fetch(downloader, apiUrl, minItems, SoundcloudCollectionReader.TRACK, executor, new SoundcloudPager.PageConsumer() {
+            @Override
+            public int consume(JsonArray collection) {
+                commitStreams(collector, collection, false);
+                return collector.getItemList().size();
+            }
+        });
     }
 
     /**
@@ -183,27 +356,51 @@ public class SoundcloudParsingHelper {
      *
      * @return the next streams url, empty if don't have
      */
+    public static String getStreamsFromApi(Downloader downloader, StreamInfoItemsCollector collector, String apiUrl, boolean charts) throws IOException, ReCaptchaException, ParsingException {
+        JsonObject responseObject = downloadCollection(downloader, apiUrl,
+                charts ? SoundcloudCollectionReader.CHART_ENTRY : SoundcloudCollectionReader.TRACK);
+        commitStreams(collector, responseObject.getArray("collection"), charts);
+        return getNextPageUrl(downloader, responseObject);
+    }
+
+    public static String getStreamsFromApi(Downloader downloader, StreamInfoItemsCollector collector, String apiUrl) throws ReCaptchaException, ParsingException, IOException {
+        return getStreamsFromApi(downloader, collector, apiUrl, false);
+    }
+
     public static String getStreamsFromApi(StreamInfoItemsCollector collector, String apiUrl, boolean charts) throws IOException, ReCaptchaException, ParsingException {
-        String response = NewPipe.getDownloader().download(apiUrl);
-        JsonObject responseObject;
-        try {
-            responseObject = JsonParser.object().from(response);
-        } catch (JsonParserException e) {
-            throw new ParsingException("Could not parse json response", e);
+        return getStreamsFromApi(ExtractionContext.current().getDownloader(), collector, apiUrl, charts);
+    }
+
+    public static String getStreamsFromApi(StreamInfoItemsCollector collector, String apiUrl) throws ReCaptchaException, ParsingException, IOException {
+        return getStreamsFromApi(ExtractionContext.current().getDownloader(), collector, apiUrl);
+    }
+
+    private static void commitUsers(ChannelInfoItemsCollector collector, JsonArray collection) {
+        for (Object o : collection) {
+            if (o instanceof JsonObject) {
+                JsonObject object = (JsonObject) o;
+                collector.commit(new SoundcloudChannelInfoItemExtractor(object));
+            }
         }
+    }
 
-        JsonArray responseCollection = responseObject.getArray("collection");
-        for (Object o : responseCollection) {
+    private static void commitStreams(StreamInfoItemsCollector collector, JsonArray collection, boolean charts) {
+        for (Object o : collection) {
             if (o instanceof JsonObject) {
                 JsonObject object = (JsonObject) o;
                 collector.commit(new SoundcloudStreamInfoItemExtractor(charts ? object.getObject("track") : object));
             }
         }
+    }
 
+    /**
+     * @return the url of the page following the response, with a client_id, empty if there is none
+     */
+    static String getNextPageUrl(Downloader downloader, JsonObject response) {
         String nextPageUrl;
         try {
-            nextPageUrl = responseObject.getString("next_href");
-            if (!nextPageUrl.contains("client_id=")) nextPageUrl += "&client_id=" + SoundcloudParsingHelper.clientId();
+            nextPageUrl = response.getString("next_href");
+            if (!nextPageUrl.contains("client_id=")) nextPageUrl += "&client_id=" + clientId(downloader);
         } catch (Exception ignored) {
             nextPageUrl = "";
         }
@@ -211,10 +408,6 @@ public class SoundcloudParsingHelper {
         return nextPageUrl;
     }
 
-    public static String getStreamsFromApi(StreamInfoItemsCollector collector, String apiUrl) throws ReCaptchaException, ParsingException, IOException {
-        return getStreamsFromApi(collector, apiUrl, false);
-    }
-
     private static String replaceHttpWithHttps(final String url) {
         if(!url.isEmpty() && url.startsWith(HTTP)) {
             return HTTPS + url.substring(HTTP.length());
@@ -1,12 +1,9 @@
 package org.schabi.newpipe.extractor.services.soundcloud;
 
 import com.grack.nanojson.JsonObject;
-import com.grack.nanojson.JsonParser;
-import com.grack.nanojson.JsonParserException;
 import org.schabi.newpipe.extractor.Downloader;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
-import org.schabi.newpipe.extractor.exceptions.ParsingException;
 import org.schabi.newpipe.extractor.playlist.PlaylistExtractor;
 import org.schabi.newpipe.extractor.stream.StreamInfoItemsCollector;
 
@@ -27,15 +24,11 @@ public class SoundcloudPlaylistExtractor extends PlaylistExtractor {
 
         playlistId = getUrlIdHandler().getId(getOriginalUrl());
         String apiUrl = "https://api.soundcloud.com/playlists/" + playlistId +
-                "?client_id=" + SoundcloudParsingHelper.clientId() +
+                "?client_id=" + SoundcloudParsingHelper.clientId(downloader) +
                 "&representation=compact";
 
-        String response = downloader.download(apiUrl);
-        try {
-            playlist = JsonParser.object().from(response);
-        } catch (JsonParserException e) {
-            throw new ParsingException("Could not parse json response", e);
-        }
+        playlist = SoundcloudParsingHelper.downloadJson(downloader, apiUrl);
+        SoundcloudParsingHelper.getResolveCache().put(getOriginalUrl(), playlist);
     }
 
     @Nonnull
@@ -93,11 +86,11 @@ public class SoundcloudPlaylistExtractor extends PlaylistExtractor {
 
         // Note the "api", NOT "api-v2"
         String apiUrl = "https://api.soundcloud.com/playlists/" + getId() + "/tracks"
-                + "?client_id=" + SoundcloudParsingHelper.clientId()
+                + "?client_id=" + SoundcloudParsingHelper.clientId(getDownloader())
                 + "&limit=20"
                 + "&linked_partitioning=1";
 
-        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(15, collector, apiUrl);
+        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(getDownloader(), 15, collector, apiUrl, getExecutor());
         return collector;
     }
 
@@ -108,7 +101,7 @@ public class SoundcloudPlaylistExtractor extends PlaylistExtractor {
         }
 
         StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
-        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(15, collector, nextPageUrl);
+        nextPageUrl = SoundcloudParsingHelper.getStreamsFromApiMinItems(getDownloader(), 15, collector, nextPageUrl, getExecutor());
 
         return new InfoItemPage(collector, nextPageUrl);
     }
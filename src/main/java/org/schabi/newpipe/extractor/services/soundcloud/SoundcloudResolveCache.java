@@ -0,0 +1,264 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import com.grack.nanojson.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers what SoundCloud urls resolve to: the kind and numeric id of the resource and its canonical url.
+ * <p>
+ * The id of a permalink never changes, so once known it saves the "/resolve" call, the embed player
+ * or the page download needed to find it again. The entries are kept in memory, the least recently
+ * used ones being dropped first, and can be {@link #writeTo(Writer) written} and
+ * {@link #readFrom(Reader) read back} to keep them between runs.
+ */
+public class SoundcloudResolveCache {
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private static final Pattern API_URL = Pattern.compile("^https?://api\\.soundcloud\\.com/(track|user|playlist)s/(\\d+)");
+
+    /**
+     * What a url resolves to, as far as known
+     */
+    public static final class Entry {
+        @Nullable
+        private final String kind;
+        @Nullable
+        private final String id;
+        @Nullable
+        private final String canonicalUrl;
+
+        Entry(@Nullable String kind, @Nullable String id, @Nullable String canonicalUrl) {
+            this.kind = kind;
+            this.id = id;
+            this.canonicalUrl = canonicalUrl;
+        }
+
+        /**
+         * @return "track", "user" or "playlist", or null if not known
+         */
+        @Nullable
+        public String getKind() {
+            return kind;
+        }
+
+        @Nullable
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the permalink url of the resource, or null if not known
+         */
+        @Nullable
+        public String getCanonicalUrl() {
+            return canonicalUrl;
+        }
+
+        /**
+         * @return the api url of the resource, without client_id, or null if its kind or id is not known
+         */
+        @Nullable
+        public String getApiUrl() {
+            if (kind == null || id == null) return null;
+            return "https://api.soundcloud.com/" + kind + "s/" + id;
+        }
+
+        Entry merge(Entry other) {
+            return new Entry(other.kind != null ? other.kind : kind,
+                    other.id != null ? other.id : id,
+                    other.canonicalUrl != null ? other.canonicalUrl : canonicalUrl);
+        }
+    }
+
+    private final int maxSize;
+    /**
+     * The entries by url ("url:" + normalized url) and by id ("id:" + kind + "/" + id),
+     * several keys lead to the same entry
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    public SoundcloudResolveCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of urls and ids kept
+     */
+    public SoundcloudResolveCache(final int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SoundcloudResolveCache.Entry> eldest) {
+                return size() > SoundcloudResolveCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get what the url resolves to. Api urls like "https://api.soundcloud.com/tracks/123" are looked up by id.
+     */
+    @Nullable
+    public synchronized Entry get(String url) {
+        final Matcher apiUrl = API_URL.matcher(url);
+        if (apiUrl.find()) return entries.get(idKey(apiUrl.group(1), apiUrl.group(2)));
+
+        final Entry entry = entries.get(urlKey(url));
+        if (entry == null || entry.canonicalUrl == null) return entry;
+        // More may have been learned about the canonical url than about this one
+        final Entry canonical = entries.get(urlKey(entry.canonicalUrl));
+        return canonical == null || canonical == entry ? entry : entry.merge(canonical);
+    }
+
+    /**
+     * Store what a url was found to resolve to, merged with what is already known about it.
+     *
+     * @param url          the url which was resolved
+     * @param kind         the kind of the resource, or null if not known
+     * @param id           its id, or null if not known
+     * @param canonicalUrl its permalink url, or null if not known
+     */
+    public synchronized void put(String url, @Nullable String kind, @Nullable String id,
+                                 @Nullable String canonicalUrl) {
+        final Matcher apiUrl = API_URL.matcher(url);
+        final boolean isApiUrl = apiUrl.find();
+        if (isApiUrl) {
+            if (kind == null) kind = apiUrl.group(1);
+            if (id == null) id = apiUrl.group(2);
+        }
+
+        Entry entry = new Entry(kind, id, canonicalUrl);
+        final List<String> keys = new ArrayList<>(3);
+        if (!isApiUrl) keys.add(urlKey(url));
+        if (canonicalUrl != null) keys.add(urlKey(canonicalUrl));
+        if (kind != null && id != null) keys.add(idKey(kind, id));
+
+        for (String key : keys) {
+            final Entry known = entries.get(key);
+            if (known != null) entry = known.merge(entry);
+        }
+        for (String key : keys) {
+            entries.put(key, entry);
+        }
+        if (entry.kind != null && entry.id != null) entries.put(idKey(entry.kind, entry.id), entry);
+    }
+
+    /**
+     * Store what the api answered about a resource, which contains its kind, id and permalink url.
+     *
+     * @param url the url the resource was asked for
+     */
+    public void put(String url, JsonObject resource) {
+        final Object id = resource.get("id");
+        final String idString = id instanceof Number ? Long.toString(((Number) id).longValue())
+                : id != null ? id.toString() : null;
+        put(url, resource.getString("kind"), idString, resource.getString("permalink_url"));
+    }
+
+    public synchronized void invalidate(String url) {
+        final Entry entry = get(url);
+        entries.remove(urlKey(url));
+        if (entry == null) return;
+        if (entry.canonicalUrl != null) entries.remove(urlKey(entry.canonicalUrl));
+        if (entry.kind != null && entry.id != null) entries.remove(idKey(entry.kind, entry.id));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Persistence
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Write the entries as lines of tab separated url, kind, id and canonical url, the oldest first.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (!entry.getKey().startsWith("url:")) continue;
+                final Entry value = entry.getValue();
+                lines.add(entry.getKey().substring(4) + '\t' + nullToEmpty(value.kind) + '\t'
+                        + nullToEmpty(value.id) + '\t' + nullToEmpty(value.canonicalUrl));
+            }
+        }
+        for (String line : lines) {
+            writer.write(line);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Add the entries written by {@link #writeTo(Writer)}, ignoring malformed lines.
+     */
+    public void readFrom(Reader reader) throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            final String[] fields = line.split("\t", -1);
+            if (fields.length != 4 || fields[0].isEmpty()) continue;
+            put("https://" + fields[0], emptyToNull(fields[1]), emptyToNull(fields[2]), emptyToNull(fields[3]));
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * The url without scheme, mobile or www subdomain, query, fragment and trailing slash.
+     */
+    @Nonnull
+    static String normalize(String url) {
+        String normalized = url.trim().toLowerCase();
+        final int end = indexOfAny(normalized, '?', '#');
+        if (end >= 0) normalized = normalized.substring(0, end);
+        normalized = normalized.replaceFirst("^https?://", "").replaceFirst("^(www\\.|m\\.)", "");
+        while (normalized.endsWith("/")) normalized = normalized.substring(0, normalized.length() - 1);
+        return normalized;
+    }
+
+    private static String urlKey(String url) {
+        return "url:" + normalize(url);
+    }
+
+    private static String idKey(String kind, String id) {
+        return "id:" + kind + "/" + id;
+    }
+
+    private static int indexOfAny(String string, char first, char second) {
+        final int firstIndex = string.indexOf(first);
+        final int secondIndex = string.indexOf(second);
+        if (firstIndex < 0) return secondIndex;
+        if (secondIndex < 0) return firstIndex;
+        return Math.min(firstIndex, secondIndex);
+    }
+
+    private static String nullToEmpty(@Nullable String string) {
+        return string == null ? "" : string;
+    }
+
+    @Nullable
+    private static String emptyToNull(String string) {
+        return string.isEmpty() ? null : string;
+    }
+}
@@ -2,12 +2,9 @@ package org.schabi.newpipe.extractor.services.soundcloud;
 
 import com.grack.nanojson.JsonArray;
 import com.grack.nanojson.JsonObject;
-import com.grack.nanojson.JsonParser;
-import com.grack.nanojson.JsonParserException;
 import org.schabi.newpipe.extractor.Downloader;
-import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.ExtractionContext;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
-import org.schabi.newpipe.extractor.exceptions.ParsingException;
 import org.schabi.newpipe.extractor.search.InfoItemsSearchCollector;
 import org.schabi.newpipe.extractor.search.SearchEngine;
 
@@ -25,7 +22,7 @@ public class SoundcloudSearchEngine extends SearchEngine {
     public InfoItemsSearchCollector search(String query, int page, String languageCode, Filter filter) throws IOException, ExtractionException {
         InfoItemsSearchCollector collector = getInfoItemSearchCollector();
 
-        Downloader dl = NewPipe.getDownloader();
+        Downloader dl = ExtractionContext.current().getDownloader();
 
         String url = "https://api-v2.soundcloud.com/search";
 
@@ -46,16 +43,12 @@ public class SoundcloudSearchEngine extends SearchEngine {
         }
 
         url += "?q=" + URLEncoder.encode(query, CHARSET_UTF_8)
-                + "&client_id=" + SoundcloudParsingHelper.clientId()
+                + "&client_id=" + SoundcloudParsingHelper.clientId(dl)
                 + "&limit=10"
                 + "&offset=" + Integer.toString(page * 10);
 
-        JsonArray searchCollection;
-        try {
-            searchCollection = JsonParser.object().from(dl.download(url)).getArray("collection");
-        } catch (JsonParserException e) {
-            throw new ParsingException("Could not parse json response", e);
-        }
+        JsonArray searchCollection = SoundcloudParsingHelper.downloadCollection(dl, url, SoundcloudCollectionReader.ANY)
+                .getArray("collection");
 
         if (searchCollection.size() == 0) {
             throw new NothingFoundException("Nothing found");
@@ -1,8 +1,6 @@
 package org.schabi.newpipe.extractor.services.soundcloud;
 
 import com.grack.nanojson.JsonObject;
-import com.grack.nanojson.JsonParser;
-import com.grack.nanojson.JsonParserException;
 import org.schabi.newpipe.extractor.*;
 import org.schabi.newpipe.extractor.exceptions.ContentNotAvailableException;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
@@ -124,18 +122,12 @@ public class SoundcloudStreamExtractor extends StreamExtractor {
     @Override
     public List<AudioStream> getAudioStreams() throws IOException, ExtractionException {
         List<AudioStream> audioStreams = new ArrayList<>();
-        Downloader dl = NewPipe.getDownloader();
+        Downloader dl = getDownloader();
 
         String apiUrl = "https://api.soundcloud.com/i1/tracks/" + urlEncode(getId()) + "/streams"
-                + "?client_id=" + urlEncode(SoundcloudParsingHelper.clientId());
+                + "?client_id=" + urlEncode(SoundcloudParsingHelper.clientId(getDownloader()));
 
-        String response = dl.download(apiUrl);
-        JsonObject responseObject;
-        try {
-            responseObject = JsonParser.object().from(response);
-        } catch (JsonParserException e) {
-            throw new ParsingException("Could not parse json response", e);
-        }
+        JsonObject responseObject = SoundcloudParsingHelper.downloadJson(dl, apiUrl);
 
         String mp3Url = responseObject.getString("http_mp3_128_url");
         if (mp3Url != null && !mp3Url.isEmpty()) {
@@ -192,13 +184,22 @@ public class SoundcloudStreamExtractor extends StreamExtractor {
         StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
 
         String apiUrl = "https://api-v2.soundcloud.com/tracks/" + urlEncode(getId()) + "/related"
-                + "?client_id=" + urlEncode(SoundcloudParsingHelper.clientId());
+                + "?client_id=" + urlEncode(SoundcloudParsingHelper.clientId(getDownloader()));
 
-        SoundcloudParsingHelper.getStreamsFromApi(collector, apiUrl);
+        SoundcloudParsingHelper.getStreamsFromApi(getDownloader(), collector, apiUrl);
         return collector;
     }
 
 
+    /**
+     * Everything but the streams and the related tracks comes from the resolved track.
+     */
+    @Nonnull
+    @Override
+    public Set<StreamInfoField> getCheapFields() {
+        return EnumSet.complementOf(EnumSet.of(StreamInfoField.STREAMS, StreamInfoField.RELATED_STREAMS));
+    }
+
     @Override
     public String getErrorMessage() {
         return null;
@@ -1,8 +1,5 @@
 package org.schabi.newpipe.extractor.services.soundcloud;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Element;
-import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.UrlIdHandler;
 import org.schabi.newpipe.extractor.exceptions.ParsingException;
 import org.schabi.newpipe.extractor.utils.Parser;
@@ -45,10 +42,7 @@ public class SoundcloudStreamUrlIdHandler implements UrlIdHandler {
         Utils.checkUrl(URL_PATTERN, complexUrl);
 
         try {
-            Element ogElement = Jsoup.parse(NewPipe.getDownloader().download(complexUrl))
-                    .select("meta[property=og:url]").first();
-
-            return ogElement.attr("content");
+            return SoundcloudParsingHelper.resolveCanonicalUrl(complexUrl);
         } catch (Exception e) {
             throw new ParsingException(e.getMessage(), e);
         }
@@ -1,5 +1,7 @@
 package org.schabi.newpipe.extractor.services.soundcloud;
 
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.ExtractionContext;
 import org.schabi.newpipe.extractor.channel.ChannelInfoItem;
 import org.schabi.newpipe.extractor.channel.ChannelInfoItemsCollector;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
@@ -36,12 +38,13 @@ public class SoundcloudSubscriptionExtractor extends SubscriptionExtractor {
             throw new InvalidSourceException(e);
         }
 
+        final Downloader downloader = ExtractionContext.current().getDownloader();
         String apiUrl = "https://api.soundcloud.com/users/" + id + "/followings"
-                + "?client_id=" + SoundcloudParsingHelper.clientId()
+                + "?client_id=" + SoundcloudParsingHelper.clientId(downloader)
                 + "&limit=200";
         ChannelInfoItemsCollector collector = new ChannelInfoItemsCollector(service.getServiceId());
         // ± 2000 is the limit of followings on SoundCloud, so this minimum should be enough
-        SoundcloudParsingHelper.getUsersFromApiMinItems(2500, collector, apiUrl);
+        SoundcloudParsingHelper.getUsersFromApiMinItems(downloader, 2500, collector, apiUrl);
 
         return toSubscriptionItems(collector.getItemList());
     }
@@ -2,13 +2,10 @@ package org.schabi.newpipe.extractor.services.soundcloud;
 
 import com.grack.nanojson.JsonArray;
 import com.grack.nanojson.JsonObject;
-import com.grack.nanojson.JsonParser;
-import com.grack.nanojson.JsonParserException;
 import org.schabi.newpipe.extractor.Downloader;
-import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.ExtractionContext;
 import org.schabi.newpipe.extractor.SuggestionExtractor;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
-import org.schabi.newpipe.extractor.exceptions.ParsingException;
 
 import java.io.IOException;
 import java.net.URLEncoder;
@@ -27,23 +24,18 @@ public class SoundcloudSuggestionExtractor extends SuggestionExtractor {
     public List<String> suggestionList(String query, String contentCountry) throws IOException, ExtractionException {
         List<String> suggestions = new ArrayList<>();
 
-        Downloader dl = NewPipe.getDownloader();
+        Downloader dl = ExtractionContext.current().getDownloader();
 
         String url = "https://api-v2.soundcloud.com/search/queries"
                 + "?q=" + URLEncoder.encode(query, CHARSET_UTF_8)
-                + "&client_id=" + SoundcloudParsingHelper.clientId()
+                + "&client_id=" + SoundcloudParsingHelper.clientId(dl)
                 + "&limit=10";
 
-        String response = dl.download(url);
-        try {
-            JsonArray collection = JsonParser.object().from(response).getArray("collection");
-            for (Object suggestion : collection) {
-                if (suggestion instanceof JsonObject) suggestions.add(((JsonObject) suggestion).getString("query"));
-            }
-
-            return suggestions;
-        } catch (JsonParserException e) {
-            throw new ParsingException("Could not parse json response", e);
+        JsonArray collection = SoundcloudParsingHelper.downloadJson(dl, url).getArray("collection");
+        for (Object suggestion : collection) {
+            if (suggestion instanceof JsonObject) suggestions.add(((JsonObject) suggestion).getString("query"));
         }
+
+        return suggestions;
     }
 }
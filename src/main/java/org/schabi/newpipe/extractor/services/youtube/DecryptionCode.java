@@ -0,0 +1,99 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.utils.Parser;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The parts of the YouTube player code which are needed to decrypt the signatures of the stream urls:
+ * the decryption function and the helper object holding the operations it calls.
+ */
+public class DecryptionCode {
+    private static final String CALLER_FUNC_NAME = "decrypt";
+
+    private final String functionName;
+    private final String function;
+    private final String helperObjectName;
+    private final String helperObject;
+
+    DecryptionCode(String functionName, String function, String helperObjectName, String helperObject) {
+        this.functionName = functionName;
+        this.function = function;
+        this.helperObjectName = helperObjectName;
+        this.helperObject = helperObject;
+    }
+
+    /**
+     * Search the decryption function and its helper object in the code of the player.
+     *
+     * @param playerCode the whole javascript code of the player
+     * @throws ParsingException if the code does not contain the expected structures
+     */
+    @Nonnull
+    public static DecryptionCode extractFrom(String playerCode) throws ParsingException {
+        final String functionName =
+                Parser.matchGroup("([\"\\'])signature\\1\\s*,\\s*([a-zA-Z0-9$]+)\\(", playerCode, 2);
+
+        final String functionPattern = "("
+                + functionName.replace("$", "\\$")
+                + "=function\\([a-zA-Z0-9_]+\\)\\{.+?\\})";
+        final String function = "var " + Parser.matchGroup1(functionPattern, playerCode) + ";";
+
+        final String helperObjectName = Parser
+                .matchGroup1(";([A-Za-z0-9_\\$]{2})\\...\\(", function);
+
+        final String helperPattern = "(var "
+                + helperObjectName.replace("$", "\\$") + "=\\{.+?\\}\\};)";
+        final String helperObject = Parser.matchGroup1(helperPattern, playerCode.replace("\n", ""));
+
+        return new DecryptionCode(functionName, function, helperObjectName, helperObject);
+    }
+
+    /**
+     * Build the fastest available decrypter for this code: a {@link JavaSignatureDecrypter} if the
+     * operations are recognized, a {@link RhinoSignatureDecrypter} as a fallback otherwise.
+     */
+    @Nonnull
+    public SignatureDecrypter createDecrypter() throws ParsingException {
+        final SignatureDecrypter decrypter = JavaSignatureDecrypter.analyze(this);
+        if (decrypter != null) return decrypter;
+
+        // Only referenced here, so the Rhino classes are not loaded as long as the analysis succeeds
+        return createScriptDecrypter();
+    }
+
+    /**
+     * Build a decrypter which runs the code of the player as is.
+     */
+    @Nonnull
+    public SignatureDecrypter createScriptDecrypter() throws ParsingException {
+        return new RhinoSignatureDecrypter(toScript(), CALLER_FUNC_NAME);
+    }
+
+    /**
+     * @return a script declaring the helper object, the decryption function and
+     * a function named {@value CALLER_FUNC_NAME} calling it
+     */
+    @Nonnull
+    public String toScript() {
+        final String callerFunc = "function " + CALLER_FUNC_NAME + "(a){return " + functionName + "(a);}";
+        return helperObject + function + callerFunc;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public String getHelperObjectName() {
+        return helperObjectName;
+    }
+
+    public String getHelperObject() {
+        return helperObject;
+    }
+}
@@ -0,0 +1,169 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link SignatureDecrypter} applying the operations of the decryption code directly in Java.
+ * <p>
+ * The decryption function of the player always splits the signature into an array, calls a short
+ * sequence of operations defined in a helper object on it and joins it again. The operations are
+ * reversing the array, removing its first elements and swapping the first element with another one.
+ * {@link #analyze(DecryptionCode)} translates the code into a list of these operations,
+ * which are then applied to a single char array.
+ */
+public class JavaSignatureDecrypter implements SignatureDecrypter {
+    static final int REVERSE = 0;
+    static final int SPLICE = 1;
+    static final int SWAP = 2;
+    /**
+     * Swap written as {@code a[b]=c} instead of {@code a[b%a.length]=c}
+     */
+    static final int SWAP_NO_MODULO = 3;
+
+    private static final String NAME = "[A-Za-z0-9_$]+";
+    private static final Pattern HELPER_METHOD_PATTERN = Pattern.compile("(" + NAME + "|\"[^\"]*\"|'[^']*')\\s*:\\s*"
+            + "function\\s*\\(\\s*(" + NAME + ")\\s*(?:,\\s*(" + NAME + ")\\s*)?\\)\\s*\\{([^{}]*)\\}");
+    private static final Pattern FUNCTION_PATTERN =
+            Pattern.compile("function\\s*\\(\\s*(" + NAME + ")\\s*\\)\\s*\\{(.*)\\}");
+
+    private final int[] operations;
+    private final int[] arguments;
+
+    JavaSignatureDecrypter(int[] operations, int[] arguments) {
+        this.operations = operations;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Translate the decryption code into operations.
+     *
+     * @return the decrypter or null if the code contains something that is not recognized
+     */
+    @Nullable
+    public static JavaSignatureDecrypter analyze(DecryptionCode code) {
+        final Map<String, Integer> helperMethods = analyzeHelperObject(code.getHelperObject());
+
+        final Matcher function = FUNCTION_PATTERN.matcher(code.getFunction());
+        if (!function.find()) return null;
+        final String param = Pattern.quote(function.group(1));
+        final String helper = Pattern.quote(code.getHelperObjectName());
+
+        final Pattern split = Pattern.compile(param + "=" + param + "\\.split\\((\"\"|'')\\)");
+        final Pattern join = Pattern.compile("return " + param + "\\.join\\((\"\"|'')\\)");
+        final Pattern call = Pattern.compile(helper + "(?:\\.(" + NAME + ")|\\[[\"'](" + NAME + ")[\"']\\])"
+                + "\\(" + param + ",(\\d+)\\)");
+
+        final List<String> statements = new ArrayList<>();
+        for (String statement : function.group(2).split(";")) {
+            statement = statement.trim();
+            if (!statement.isEmpty()) statements.add(statement);
+        }
+        if (statements.size() < 2
+                || !split.matcher(statements.get(0)).matches()
+                || !join.matcher(statements.get(statements.size() - 1)).matches()) {
+            return null;
+        }
+
+        final int count = statements.size() - 2;
+        final int[] operations = new int[count];
+        final int[] arguments = new int[count];
+        for (int i = 0; i < count; i++) {
+            final Matcher matcher = call.matcher(statements.get(i + 1));
+            if (!matcher.matches()) return null;
+
+            final String method = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            final Integer operation = helperMethods.get(method);
+            if (operation == null) return null;
+            try {
+                arguments[i] = Integer.parseInt(matcher.group(3));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            operations[i] = operation;
+        }
+
+        return new JavaSignatureDecrypter(operations, arguments);
+    }
+
+    /**
+     * @return the recognized methods of the helper object, mapped to their operation
+     */
+    private static Map<String, Integer> analyzeHelperObject(String helperObject) {
+        final Map<String, Integer> methods = new HashMap<>();
+        final Matcher matcher = HELPER_METHOD_PATTERN.matcher(helperObject);
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            if (name.startsWith("\"") || name.startsWith("'")) name = name.substring(1, name.length() - 1);
+
+            final Integer operation = analyzeHelperMethod(matcher.group(2), matcher.group(3),
+                    matcher.group(4).replaceAll("\\s+", ""));
+            if (operation != null) methods.put(name, operation);
+        }
+        return methods;
+    }
+
+    @Nullable
+    private static Integer analyzeHelperMethod(String array, @Nullable String argument, String body) {
+        final String a = Pattern.quote(array);
+        if (body.matches(a + "\\.reverse\\(\\);?")) return REVERSE;
+        if (argument == null) return null;
+
+        final String b = Pattern.quote(argument);
+        if (body.matches(a + "\\.splice\\(0," + b + "\\);?")) return SPLICE;
+
+        final String modulo = b + "%" + a + "\\.length";
+        final String swap = "var(" + NAME + ")=" + a + "\\[0\\];" + a + "\\[0\\]=" + a + "\\[" + modulo + "\\];" + a;
+        if (body.matches(swap + "\\[" + modulo + "\\]=\\1;?")) return SWAP;
+        if (body.matches(swap + "\\[" + b + "\\]=\\1;?")) return SWAP_NO_MODULO;
+
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public String decrypt(String encryptedSig) throws ParsingException {
+        final char[] chars = encryptedSig.toCharArray();
+        // The spliced chars are not removed, the signature starts at "start" instead
+        int start = 0;
+        final int end = chars.length;
+
+        for (int i = 0; i < operations.length; i++) {
+            final int length = end - start;
+            switch (operations[i]) {
+                case REVERSE:
+                    for (int left = start, right = end - 1; left < right; left++, right--) {
+                        final char c = chars[left];
+                        chars[left] = chars[right];
+                        chars[right] = c;
+                    }
+                    break;
+                case SPLICE:
+                    start += Math.min(arguments[i], length);
+                    break;
+                case SWAP:
+                case SWAP_NO_MODULO:
+                    if (length == 0 || (operations[i] == SWAP_NO_MODULO && arguments[i] >= length)) {
+                        throw new ParsingException("Could not decrypt signature: swap index out of range");
+                    }
+                    final int other = start + arguments[i] % length;
+                    final char c = chars[start];
+                    chars[start] = chars[other];
+                    chars[other] = c;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operations[i]);
+            }
+        }
+
+        return new String(chars, start, end - start);
+    }
+}
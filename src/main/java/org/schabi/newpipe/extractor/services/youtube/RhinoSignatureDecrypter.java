@@ -0,0 +1,69 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.ScriptableObject;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link SignatureDecrypter} running the decryption code of the player with Rhino.
+ * <p>
+ * The code is evaluated only once, into a sealed scope. Afterwards decrypting a signature
+ * is a plain function call, which can be done concurrently from several threads
+ * (each of them entering its own {@link Context}).
+ */
+public class RhinoSignatureDecrypter implements SignatureDecrypter {
+    private final ScriptableObject scope;
+    private final Function decryptionFunction;
+
+    /**
+     * @param decryptionCode the javascript code declaring the decryption function
+     * @param functionName   the name of the function, which takes the signature as only argument
+     * @throws ParsingException if the code can not be evaluated or does not declare the function
+     */
+    public RhinoSignatureDecrypter(String decryptionCode, String functionName) throws ParsingException {
+        final Context context = enterContext();
+        try {
+            // The standard objects are sealed too, the code can't modify them later on
+            scope = context.initStandardObjects(null, true);
+            context.evaluateString(scope, decryptionCode, "decryptionCode", 1, null);
+
+            final Object function = scope.get(functionName, scope);
+            if (!(function instanceof Function)) {
+                throw new ParsingException("Decryption code does not declare the function \"" + functionName + "\"");
+            }
+            decryptionFunction = (Function) function;
+            scope.sealObject();
+        } catch (ParsingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ParsingException("Could not evaluate decryption code", e);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String decrypt(String encryptedSig) throws ParsingException {
+        final Context context = enterContext();
+        final Object result;
+        try {
+            result = decryptionFunction.call(context, scope, scope, new Object[]{encryptedSig});
+        } catch (Exception e) {
+            throw new ParsingException("Could not decrypt signature", e);
+        } finally {
+            Context.exit();
+        }
+        return result == null ? "" : Context.toString(result);
+    }
+
+    private static Context enterContext() {
+        final Context context = Context.enter();
+        // Interpreted mode, no bytecode generation (not supported on Android)
+        context.setOptimizationLevel(-1);
+        return context;
+    }
+}
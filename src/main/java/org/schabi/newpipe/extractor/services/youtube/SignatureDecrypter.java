@@ -0,0 +1,22 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Decrypts the cryptic signatures of YouTube stream urls, using the algorithm of a specific player version.
+ * <p>
+ * Implementations are shared between all the extractors that use the same player,
+ * so they have to be thread safe.
+ */
+public interface SignatureDecrypter {
+
+    /**
+     * @param encryptedSig the signature as found in the stream map or the dash manifest url
+     * @return the decrypted signature
+     * @throws ParsingException if the signature could not be decrypted
+     */
+    @Nonnull
+    String decrypt(String encryptedSig) throws ParsingException;
+}
@@ -0,0 +1,197 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a YouTube watch page while locating the {@code ytplayer.config = {...};} object in it.
+ * <p>
+ * The object is found with a single forward scan over the characters as they are read
+ * (matching braces outside of strings), so neither a regex over the whole page nor a DOM is needed
+ * to get the data required for the streams. Whether the video is age restricted is found while reading as well.
+ */
+class WatchPageReader {
+    private static final String CONFIG_MARKER = "ytplayer.config";
+    private static final String AGE_RESTRICTION_META = "<meta property=\"og:restrictions:age";
+
+    private final StringBuilder page = new StringBuilder();
+
+    /**
+     * Position from which the marker has to be searched
+     */
+    private int searchPosition = 0;
+    /**
+     * Position of the next character to look at, once the start of the config was found
+     */
+    private int scanPosition = -1;
+    private int configStart = -1;
+    private int configEnd = -1;
+
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    /**
+     * Position from which the age restriction meta tag has to be searched
+     */
+    private int metaSearchPosition = 0;
+    private boolean ageRestricted = false;
+
+    private boolean complete = false;
+
+    /**
+     * Read the whole page.
+     */
+    void read(Reader reader) throws IOException {
+        final char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            page.append(buffer, 0, read);
+            scanAgeRestriction();
+            scan();
+        }
+        complete = true;
+    }
+
+    /**
+     * Read the page until the end of the player config, or until the end if it doesn't contain one.
+     * <p>
+     * Everything before the config, like the meta tags of the head, is kept.
+     * Use {@link #isComplete()} to know whether the rest of the page is missing.
+     */
+    void readUntilPlayerConfig(Reader reader) throws IOException {
+        final char[] buffer = new char[8192];
+        int read;
+        while (!hasPlayerConfig()) {
+            if ((read = reader.read(buffer)) == -1) {
+                complete = true;
+                return;
+            }
+            page.append(buffer, 0, read);
+            scanAgeRestriction();
+            scan();
+        }
+    }
+
+    /**
+     * Whether the page was read up to its end.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Whether the part of the page read contains the age restriction meta tag.
+     */
+    boolean isAgeRestricted() {
+        return ageRestricted;
+    }
+
+    /**
+     * Build the page read so far. The reader keeps its own copy, it should be dropped once this is done.
+     */
+    @Nonnull
+    String getPage() {
+        return page.toString();
+    }
+
+    /**
+     * @return the raw json of the player config, or null if the page does not contain it
+     */
+    @Nullable
+    String getPlayerConfig() {
+        if (configEnd < 0) return null;
+        return page.substring(configStart, configEnd);
+    }
+
+    boolean hasPlayerConfig() {
+        return configEnd >= 0;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Scanning
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private void scanAgeRestriction() {
+        if (ageRestricted) return;
+        if (page.indexOf(AGE_RESTRICTION_META, metaSearchPosition) >= 0) {
+            ageRestricted = true;
+        } else {
+            // The tag may be cut at the end of what was read so far
+            metaSearchPosition = Math.max(metaSearchPosition, page.length() - AGE_RESTRICTION_META.length() + 1);
+        }
+    }
+
+    private void scan() {
+        if (configEnd >= 0) return;
+        if (configStart < 0 && !findConfigStart()) return;
+
+        final int length = page.length();
+        for (; scanPosition < length; scanPosition++) {
+            final char c = page.charAt(scanPosition);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    configEnd = scanPosition + 1;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Search for "ytplayer.config = {" in the characters read so far.
+     *
+     * @return whether the start of the object was found
+     */
+    private boolean findConfigStart() {
+        while (true) {
+            final int marker = page.indexOf(CONFIG_MARKER, searchPosition);
+            if (marker < 0) {
+                // The marker may be cut at the end of what was read so far
+                searchPosition = Math.max(searchPosition, page.length() - CONFIG_MARKER.length());
+                return false;
+            }
+
+            int position = marker + CONFIG_MARKER.length();
+            boolean assignment = false;
+            for (; position < page.length(); position++) {
+                final char c = page.charAt(position);
+                if (c == '=' && !assignment) {
+                    assignment = true;
+                } else if (!Character.isWhitespace(c)) {
+                    break;
+                }
+            }
+
+            if (position >= page.length()) {
+                // Wait for more characters to know what follows the marker
+                searchPosition = marker;
+                return false;
+            }
+
+            if (assignment && page.charAt(position) == '{') {
+                configStart = position;
+                scanPosition = position;
+                return true;
+            }
+
+            // Not the assignment (e.g. "ytplayer.config.args"), look for the next one
+            searchPosition = marker + CONFIG_MARKER.length();
+        }
+    }
+}
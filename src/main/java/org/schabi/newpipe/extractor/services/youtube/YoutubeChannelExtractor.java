@@ -8,7 +8,6 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.schabi.newpipe.extractor.Downloader;
-import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.channel.ChannelExtractor;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
@@ -180,7 +179,7 @@ public class YoutubeChannelExtractor extends ChannelExtractor {
 
         StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
 
-        setupNextPageAjax(NewPipe.getDownloader());
+        setupNextPageAjax(getDownloader());
         collectStreamsFrom(collector, nextStreamsAjax.select("body").first());
 
         return new InfoItemPage(collector, nextPageUrl);
@@ -7,11 +7,9 @@ import com.grack.nanojson.JsonParserException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.mozilla.javascript.Context;
-import org.mozilla.javascript.Function;
-import org.mozilla.javascript.ScriptableObject;
+import org.schabi.newpipe.extractor.DownloadResponse;
 import org.schabi.newpipe.extractor.Downloader;
-import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.ExtractionContext;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.Subtitles;
 import org.schabi.newpipe.extractor.exceptions.ContentNotAvailableException;
@@ -19,6 +17,7 @@ import org.schabi.newpipe.extractor.exceptions.ExtractionException;
 import org.schabi.newpipe.extractor.exceptions.ParsingException;
 import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
 import org.schabi.newpipe.extractor.stream.*;
+import org.schabi.newpipe.extractor.utils.ExpiringCache;
 import org.schabi.newpipe.extractor.utils.Parser;
 import org.schabi.newpipe.extractor.utils.Utils;
 
@@ -26,6 +25,10 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /*
  * Created by Christian Schabesberger on 06.08.15.
@@ -80,14 +83,23 @@ public class YoutubeStreamExtractor extends StreamExtractor {
 
     /*//////////////////////////////////////////////////////////////////////////*/
 
+    @Nullable
     private Document doc;
     @Nullable
     private JsonObject playerArgs;
     @Nonnull
     private final Map<String, String> videoInfoPage = new HashMap<>();
+    /**
+     * The decoded stream maps, see {@link #getItags(ItagItem.ItagType)}
+     */
+    @Nullable
+    private Map<ItagItem.ItagType, Map<String, ItagItem>> streamTable;
 
-    @Nonnull
-    private List<SubtitlesInfo> subtitlesInfos = new ArrayList<>();
+    /**
+     * The available subtitles, parsed from the player response on first use
+     */
+    @Nullable
+    private List<SubtitlesInfo> subtitlesInfos;
 
     private boolean isAgeRestricted;
 
@@ -117,7 +129,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         if(name == null) {
             // Fallback to HTML method
             try {
-                name = doc.select("meta[name=title]").attr(CONTENT);
+                name = getDocument().select("meta[name=title]").attr(CONTENT);
             } catch (Exception e) {
                 throw new ParsingException("Could not get the title", e);
             }
@@ -133,7 +145,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
     public String getUploadDate() throws ParsingException {
         assertPageFetched();
         try {
-            return doc.select("meta[itemprop=datePublished]").attr(CONTENT);
+            return getDocument().select("meta[itemprop=datePublished]").attr(CONTENT);
         } catch (Exception e) {//todo: add fallback method
             throw new ParsingException("Could not get upload date", e);
         }
@@ -145,7 +157,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         // Try to get high resolution thumbnail first, if it fails, use low res from the player instead
         try {
-            return doc.select("link[itemprop=\"thumbnailUrl\"]").first().attr("abs:href");
+            return getDocument().select("link[itemprop=\"thumbnailUrl\"]").first().attr("abs:href");
         } catch (Exception ignored) {
             // Try other method...
         }
@@ -168,7 +180,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
     public String getDescription() throws ParsingException {
         assertPageFetched();
         try {
-            return doc.select("p[id=\"eow-description\"]").first().html();
+            return getDocument().select("p[id=\"eow-description\"]").first().html();
         } catch (Exception e) {//todo: add fallback method <-- there is no ... as long as i know
             throw new ParsingException("Could not get the description", e);
         }
@@ -181,7 +193,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
             return NO_AGE_LIMIT;
         }
         try {
-            return Integer.valueOf(doc.select("meta[property=\"og:restrictions:age\"]")
+            return Integer.valueOf(getDocument().select("meta[property=\"og:restrictions:age\"]")
                     .attr(CONTENT).replace("+", ""));
         } catch (Exception e) {
             throw new ParsingException("Could not get age restriction");
@@ -210,7 +222,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         // TODO: 25.11.17 Implement a way to get the length for age restricted videos #44
         try {
             // Fallback to HTML method
-            return Long.parseLong(doc.select("div[class~=\"ytp-progress-bar\"][role=\"slider\"]").first()
+            return Long.parseLong(getDocument().select("div[class~=\"ytp-progress-bar\"][role=\"slider\"]").first()
                     .attr("aria-valuemax"));
         } catch (Exception e) {
             throw new ParsingException("Could not get video length", e);
@@ -231,7 +243,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
     public long getViewCount() throws ParsingException {
         assertPageFetched();
         try {
-            return Long.parseLong(doc.select("meta[itemprop=interactionCount]").attr(CONTENT));
+            return Long.parseLong(getDocument().select("meta[itemprop=interactionCount]").attr(CONTENT));
         } catch (Exception e) {//todo: find fallback method
             throw new ParsingException("Could not get number of views", e);
         }
@@ -242,7 +254,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         String likesString = "";
         try {
-            Element button = doc.select("button.like-button-renderer-like-button").first();
+            Element button = getDocument().select("button.like-button-renderer-like-button").first();
             try {
                 likesString = button.select("span.yt-uix-button-content").first().text();
             } catch (NullPointerException e) {
@@ -262,7 +274,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         String dislikesString = "";
         try {
-            Element button = doc.select("button.like-button-renderer-dislike-button").first();
+            Element button = getDocument().select("button.like-button-renderer-dislike-button").first();
             try {
                 dislikesString = button.select("span.yt-uix-button-content").first().text();
             } catch (NullPointerException e) {
@@ -282,7 +294,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
     public String getUploaderUrl() throws ParsingException {
         assertPageFetched();
         try {
-            return doc.select("div[class=\"yt-user-info\"]").first().children()
+            return getDocument().select("div[class=\"yt-user-info\"]").first().children()
                     .select("a").first().attr("abs:href");
         } catch (Exception e) {
             throw new ParsingException("Could not get channel link", e);
@@ -314,7 +326,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         if(name == null) {
             try {
                 // Fallback to HTML method
-                name = doc.select("div.yt-user-info").first().text();
+                name = getDocument().select("div.yt-user-info").first().text();
             } catch (Exception e) {
                 throw new ParsingException("Could not get uploader name", e);
             }
@@ -330,7 +342,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
     public String getUploaderAvatarUrl() throws ParsingException {
         assertPageFetched();
         try {
-            return doc.select("a[class*=\"yt-user-photo\"]").first()
+            return getDocument().select("a[class*=\"yt-user-photo\"]").first()
                     .select("img").first()
                     .attr("abs:data-thumb");
         } catch (Exception e) {//todo: add fallback method
@@ -355,7 +367,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
                 String encryptedSig = Parser.matchGroup1("/s/([a-fA-F0-9\\.]+)", dashManifestUrl);
                 String decryptedSig;
 
-                decryptedSig = decryptSignature(encryptedSig, decryptionCode);
+                decryptedSig = decryptSignature(encryptedSig);
                 dashManifestUrl = dashManifestUrl.replace("/s/" + encryptedSig, "/signature/" + decryptedSig);
             }
 
@@ -370,13 +382,9 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         List<AudioStream> audioStreams = new ArrayList<>();
         try {
-            for (Map.Entry<String, ItagItem> entry : getItags(ADAPTIVE_FMTS, ItagItem.ItagType.AUDIO).entrySet()) {
+            for (Map.Entry<String, ItagItem> entry : getItags(ItagItem.ItagType.AUDIO).entrySet()) {
                 ItagItem itag = entry.getValue();
-
-                AudioStream audioStream = new AudioStream(entry.getKey(), itag.getMediaFormat(), itag.avgBitrate);
-                if (!Stream.containSimilarStream(audioStream, audioStreams)) {
-                    audioStreams.add(audioStream);
-                }
+                audioStreams.add(new AudioStream(entry.getKey(), itag.getMediaFormat(), itag.avgBitrate));
             }
         } catch (Exception e) {
             throw new ParsingException("Could not get audio streams", e);
@@ -390,13 +398,9 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         List<VideoStream> videoStreams = new ArrayList<>();
         try {
-            for (Map.Entry<String, ItagItem> entry : getItags(URL_ENCODED_FMT_STREAM_MAP, ItagItem.ItagType.VIDEO).entrySet()) {
+            for (Map.Entry<String, ItagItem> entry : getItags(ItagItem.ItagType.VIDEO).entrySet()) {
                 ItagItem itag = entry.getValue();
-
-                VideoStream videoStream = new VideoStream(entry.getKey(), itag.getMediaFormat(), itag.resolutionString);
-                if (!Stream.containSimilarStream(videoStream, videoStreams)) {
-                    videoStreams.add(videoStream);
-                }
+                videoStreams.add(new VideoStream(entry.getKey(), itag.getMediaFormat(), itag.resolutionString));
             }
         } catch (Exception e) {
             throw new ParsingException("Could not get video streams", e);
@@ -410,13 +414,9 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         List<VideoStream> videoOnlyStreams = new ArrayList<>();
         try {
-            for (Map.Entry<String, ItagItem> entry : getItags(ADAPTIVE_FMTS, ItagItem.ItagType.VIDEO_ONLY).entrySet()) {
+            for (Map.Entry<String, ItagItem> entry : getItags(ItagItem.ItagType.VIDEO_ONLY).entrySet()) {
                 ItagItem itag = entry.getValue();
-
-                VideoStream videoStream = new VideoStream(entry.getKey(), itag.getMediaFormat(), itag.resolutionString, true);
-                if (!Stream.containSimilarStream(videoStream, videoOnlyStreams)) {
-                    videoOnlyStreams.add(videoStream);
-                }
+                videoOnlyStreams.add(new VideoStream(entry.getKey(), itag.getMediaFormat(), itag.resolutionString, true));
             }
         } catch (Exception e) {
             throw new ParsingException("Could not get video only streams", e);
@@ -435,6 +435,9 @@ public class YoutubeStreamExtractor extends StreamExtractor {
     @Nonnull
     public List<Subtitles> getSubtitles(final SubtitlesFormat format) throws IOException, ExtractionException {
         assertPageFetched();
+        if (subtitlesInfos == null) {
+            subtitlesInfos = getAvailableSubtitlesInfo();
+        }
         List<Subtitles> subtitles = new ArrayList<>();
         for (final SubtitlesInfo subtitlesInfo : subtitlesInfos) {
             subtitles.add(subtitlesInfo.getSubtitle(format));
@@ -453,7 +456,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         try {
             StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
-            collector.commit(extractVideoPreviewInfo(doc.select("div[class=\"watch-sidebar-section\"]")
+            collector.commit(extractVideoPreviewInfo(getDocument().select("div[class=\"watch-sidebar-section\"]")
                     .first().select("li").first()));
 
             return collector.getItemList().get(0);
@@ -467,7 +470,7 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         assertPageFetched();
         try {
             StreamInfoItemsCollector collector = new StreamInfoItemsCollector(getServiceId());
-            Element ul = doc.select("ul[id=\"watch-related\"]").first();
+            Element ul = getDocument().select("ul[id=\"watch-related\"]").first();
             if (ul != null) {
                 for (Element li : ul.children()) {
                     // first check if we have a playlist. If so leave them out
@@ -482,12 +485,33 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         }
     }
 
+    /**
+     * The streams, duration, uploader name and subtitles come from the player config,
+     * everything else needs the DOM of the watch page or another request.
+     */
+    @Nonnull
+    @Override
+    public Set<StreamInfoField> getCheapFields() {
+        return EnumSet.of(StreamInfoField.STREAMS, StreamInfoField.DURATION, StreamInfoField.UPLOADER_NAME,
+                StreamInfoField.START_POSITION, StreamInfoField.SUBTITLES);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public String getErrorMessage() {
-        String errorMessage = doc.select("h1[id=\"unavailable-message\"]").first().text();
+        final Document document;
+        try {
+            document = getDocument();
+        } catch (ParsingException e) {
+            // The rest of the page could not be downloaded, so there is no message to show
+            return null;
+        }
+        // Missing on the pages which are not the usual watch page, like the consent one
+        final Element messageElement = document.select("h1[id=\"unavailable-message\"]").first();
+        if (messageElement == null) return null;
+        String errorMessage = messageElement.text();
         StringBuilder errorReason;
 
         if (errorMessage == null || errorMessage.isEmpty()) {
@@ -500,8 +524,11 @@ public class YoutubeStreamExtractor extends StreamExtractor {
             errorReason = new StringBuilder("GEMA");
         } else {
             errorReason = new StringBuilder(errorMessage);
-            errorReason.append("  ");
-            errorReason.append(doc.select("[id=\"unavailable-submessage\"]").first().text());
+            final Element submessageElement = document.select("[id=\"unavailable-submessage\"]").first();
+            if (submessageElement != null) {
+                errorReason.append("  ");
+                errorReason.append(submessageElement.text());
+            }
         }
 
         return errorReason != null ? errorReason.toString() : null;
@@ -515,64 +542,159 @@ public class YoutubeStreamExtractor extends StreamExtractor {
     private static final String ADAPTIVE_FMTS = "adaptive_fmts";
     private static final String HTTPS = "https:";
     private static final String CONTENT = "content";
-    private static final String DECRYPTION_FUNC_NAME = "decrypt";
 
-    private volatile String decryptionCode = "";
+    /**
+     * Signature decrypters built from the players, keyed by the player url.
+     * <p>
+     * Shared between all the extractors since nearly every video uses the same player for hours,
+     * a new player only has to be downloaded, scanned and compiled when YouTube rolls out a new version.
+     */
+    private static final ExpiringCache<String, SignatureDecrypter> DECRYPTER_CACHE =
+            new ExpiringCache<>(8, TimeUnit.HOURS.toMillis(6));
 
-    private String pageHtml = null;
+    /**
+     * The url of the player the signatures have to be decrypted with
+     */
+    @Nullable
+    private String playerUrl;
+    /**
+     * The decrypter for the player, only loaded once a signature has to be decrypted
+     */
+    @Nullable
+    private SignatureDecrypter decrypter;
 
-    private String getPageHtml(Downloader downloader) throws IOException, ExtractionException{
-        if (pageHtml == null) {
-            pageHtml = downloader.download(getCleanUrl());
-        }
-        return pageHtml;
-    }
+    private static final Pattern ENCRYPTED_SIGNATURE = Pattern.compile("(^|[&,])s=");
+
+    /**
+     * The reader holding the watch page as read, only kept until the {@link #doc} is built from it.
+     * The page may be only its beginning up to the player config, see {@link WatchPageReader#isComplete()}.
+     */
+    @Nullable
+    private WatchPageReader pageReader;
+    @Nullable
+    private JsonObject playerConfig;
 
     @Override
     public void onFetchPage(@Nonnull Downloader downloader) throws IOException, ExtractionException {
-        final String pageContent = getPageHtml(downloader);
-        doc = Jsoup.parse(pageContent, getCleanUrl());
+        // The player config is located while reading the page, the DOM is only built if a getter needs it.
+        // If nothing but the cheap fields is wanted, the connection is closed right after the config,
+        // the rest of the page is downloaded again should a getter need the DOM after all.
+        final WatchPageReader pageReader = new WatchPageReader();
+        final DownloadResponse response = DownloadResponse.open(downloader, getCleanUrl(), getPageHeaders());
+        try {
+            if (getCheapFields().containsAll(getRequestedFields())) {
+                pageReader.readUntilPlayerConfig(response.getReader());
+            } else {
+                pageReader.read(response.getReader());
+            }
+        } finally {
+            response.close();
+        }
+        this.pageReader = pageReader;
+        doc = null;
 
-        final String playerUrl;
         // TODO: use embedded videos to fetch DASH manifest for all videos
         // Check if the video is age restricted
-        if (pageContent.contains("<meta property=\"og:restrictions:age")) {
+        if (pageReader.isAgeRestricted()) {
             final EmbeddedInfo info = getEmbeddedInfo();
+            playerUrl = info.url;
+            // The streams of restricted videos are nearly always signed,
+            // so the player is downloaded at the same time as the video info
+            preloadDecrypter();
+
             final String videoInfoUrl = getVideoInfoUrl(getId(), info.sts);
             final String infoPageResponse = downloader.download(videoInfoUrl);
             videoInfoPage.putAll(Parser.compatParseMap(infoPageResponse));
-            playerUrl = info.url;
             isAgeRestricted = true;
         } else {
-            final JsonObject ytPlayerConfig = getPlayerConfig(pageContent);
-            playerArgs = getPlayerArgs(ytPlayerConfig);
-            playerUrl = getPlayerUrl(ytPlayerConfig);
+            playerConfig = getPlayerConfig(pageReader.getPlayerConfig());
+            playerArgs = getPlayerArgs(playerConfig);
+            playerUrl = getPlayerUrl(playerConfig);
             isAgeRestricted = false;
+            if (hasEncryptedSignatures()) {
+                preloadDecrypter();
+            }
         }
+    }
+
+    /**
+     * Start loading the decrypter of the player on the executor, if there is one.
+     * <p>
+     * The result is not kept here: the first signature to decrypt gets it from {@link #DECRYPTER_CACHE},
+     * waiting for this load if it is still running. If it fails, the load is retried and the error reported then.
+     */
+    private void preloadDecrypter() {
+        final Executor executor = getExecutor();
+        final String url = playerUrl;
+        if (executor == null || url == null) return;
 
-        if (decryptionCode.isEmpty()) {
-            decryptionCode = loadDecryptionCode(playerUrl);
+        try {
+            executor.execute(ExtractionContext.wrap(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        getDecrypter(url);
+                    } catch (Exception ignored) {
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException ignored) {
+            // Loaded on the calling thread when needed
         }
+    }
 
-        if (subtitlesInfos.isEmpty()) {
-            subtitlesInfos.addAll(getAvailableSubtitlesInfo());
+    private boolean hasEncryptedSignatures() {
+        if (playerArgs == null) return false;
+        for (String key : new String[]{URL_ENCODED_FMT_STREAM_MAP, ADAPTIVE_FMTS}) {
+            if (ENCRYPTED_SIGNATURE.matcher(playerArgs.getString(key, "")).find()) return true;
         }
+        return playerArgs.getString("dashmpd", "").contains("/s/");
     }
 
-    private JsonObject getPlayerConfig(String pageContent) throws ParsingException {
-        try {
-            String ytPlayerConfigRaw = Parser.matchGroup1("ytplayer.config\\s*=\\s*(\\{.*?\\});", pageContent);
-            return JsonParser.object().from(ytPlayerConfigRaw);
-        } catch (Parser.RegexException e) {
+    /**
+     * Get the DOM of the watch page, parsing it on the first call.
+     * If only the beginning of the page was read, the whole page is downloaded first.
+     */
+    @Nonnull
+    private Document getDocument() throws ParsingException {
+        if (doc == null) {
+            final String pageHtml;
+            //noinspection ConstantConditions
+            if (pageReader.isComplete()) {
+                pageHtml = pageReader.getPage();
+            } else {
+                try {
+                    pageHtml = getDownloader().download(getCleanUrl(), getPageHeaders());
+                } catch (IOException | ReCaptchaException e) {
+                    throw new ParsingException("Could not download the whole watch page", e);
+                }
+            }
+            pageReader = null;
+            doc = Jsoup.parse(pageHtml, getCleanUrl());
+        }
+        return doc;
+    }
+
+    private JsonObject getPlayerConfig(@Nullable String ytPlayerConfigRaw) throws ParsingException {
+        if (ytPlayerConfigRaw == null) {
+            // Fails if the rest of the page, which holds the message, could not be downloaded
+            getDocument();
             String errorReason = getErrorMessage();
+            if (errorReason == null) {
+                throw new ContentNotAvailableException("Content not available: player config empty");
+            }
             switch (errorReason) {
                 case "GEMA":
                     throw new GemaException(errorReason);
                 case "":
-                    throw new ContentNotAvailableException("Content not available: player config empty", e);
+                    throw new ContentNotAvailableException("Content not available: player config empty");
                 default:
-                    throw new ContentNotAvailableException("Content not available", e);
+                    throw new ContentNotAvailableException("Content not available");
             }
+        }
+
+        try {
+            return JsonParser.object().from(ytPlayerConfigRaw);
         } catch (Exception e) {
             throw new ParsingException("Could not parse yt player config", e);
         }
@@ -620,10 +742,19 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         }
     }
 
+    /**
+     * Ask for the watch page in the language of the extractor's context, if it has one.
+     */
+    private Map<String, String> getPageHeaders() {
+        final String language = getContext().getLanguage();
+        if (language == null) return Collections.emptyMap();
+        return Collections.singletonMap("Accept-Language", language);
+    }
+
     @Nonnull
     private EmbeddedInfo getEmbeddedInfo() throws ParsingException, ReCaptchaException {
         try {
-            final Downloader downloader = NewPipe.getDownloader();
+            final Downloader downloader = getDownloader();
             final String embedUrl = "https://www.youtube.com/embed/" + getId();
             final String embedPageContent = downloader.download(embedUrl);
 
@@ -648,16 +779,24 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         }
     }
 
-    private String loadDecryptionCode(String playerUrl) throws DecryptException {
-        String decryptionFuncName;
-        String decryptionFunc;
-        String helperObjectName;
-        String helperObject;
-        String callerFunc = "function " + DECRYPTION_FUNC_NAME + "(a){return %%(a);}";
-        String decryptionCode;
+    private SignatureDecrypter getDecrypter(String playerUrl) throws IOException, ExtractionException {
+        return DECRYPTER_CACHE.get(playerUrl, new ExpiringCache.Loader<String, SignatureDecrypter>() {
+            @Nonnull
+            @Override
+            public SignatureDecrypter load(String playerUrl) throws DecryptException {
+                final DecryptionCode decryptionCode = loadDecryptionCode(playerUrl);
+                try {
+                    return decryptionCode.createDecrypter();
+                } catch (ParsingException e) {
+                    throw new DecryptException("Could not compile decrypt function", e);
+                }
+            }
+        });
+    }
 
+    private DecryptionCode loadDecryptionCode(String playerUrl) throws DecryptException {
         try {
-            Downloader downloader = NewPipe.getDownloader();
+            Downloader downloader = getDownloader();
             if (!playerUrl.contains("https://youtube.com")) {
                 //sometimes the https://youtube.com part does not get send with
                 //than we have to add it by hand
@@ -665,48 +804,32 @@ public class YoutubeStreamExtractor extends StreamExtractor {
             }
             String playerCode = downloader.download(playerUrl);
 
-            decryptionFuncName =
-                    Parser.matchGroup("([\"\\'])signature\\1\\s*,\\s*([a-zA-Z0-9$]+)\\(", playerCode, 2);
-
-            String functionPattern = "("
-                    + decryptionFuncName.replace("$", "\\$")
-                    + "=function\\([a-zA-Z0-9_]+\\)\\{.+?\\})";
-            decryptionFunc = "var " + Parser.matchGroup1(functionPattern, playerCode) + ";";
-
-            helperObjectName = Parser
-                    .matchGroup1(";([A-Za-z0-9_\\$]{2})\\...\\(", decryptionFunc);
-
-            String helperPattern = "(var "
-                    + helperObjectName.replace("$", "\\$") + "=\\{.+?\\}\\};)";
-            helperObject = Parser.matchGroup1(helperPattern, playerCode.replace("\n", ""));
-
-
-            callerFunc = callerFunc.replace("%%", decryptionFuncName);
-            decryptionCode = helperObject + decryptionFunc + callerFunc;
+            return DecryptionCode.extractFrom(playerCode);
         } catch (IOException ioe) {
             throw new DecryptException("Could not load decrypt function", ioe);
         } catch (Exception e) {
             throw new DecryptException("Could not parse decrypt function ", e);
         }
-
-        return decryptionCode;
     }
 
-    private String decryptSignature(String encryptedSig, String decryptionCode) throws DecryptException {
-        Context context = Context.enter();
-        context.setOptimizationLevel(-1);
-        Object result;
+    private String decryptSignature(String encryptedSig) throws DecryptException {
+        if (decrypter == null) {
+            if (playerUrl == null) {
+                throw new DecryptException("could not get decrypt signature", new IllegalStateException("no player url"));
+            }
+            try {
+                decrypter = getDecrypter(playerUrl);
+            } catch (DecryptException e) {
+                throw e;
+            } catch (IOException | ExtractionException e) {
+                throw new DecryptException("Could not load decrypt function", e);
+            }
+        }
         try {
-            ScriptableObject scope = context.initStandardObjects();
-            context.evaluateString(scope, decryptionCode, "decryptionCode", 1, null);
-            Function decryptionFunc = (Function) scope.get("decrypt", scope);
-            result = decryptionFunc.call(context, scope, scope, new Object[]{encryptedSig});
-        } catch (Exception e) {
+            return decrypter.decrypt(encryptedSig);
+        } catch (ParsingException e) {
             throw new DecryptException("could not get decrypt signature", e);
-        } finally {
-            Context.exit();
         }
-        return result == null ? "" : result.toString();
     }
 
     @Nonnull
@@ -714,12 +837,8 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         // If the video is age restricted getPlayerConfig will fail
         if(isAgeRestricted) return Collections.emptyList();
 
-        final JsonObject playerConfig;
-        try {
-            playerConfig = getPlayerConfig(getPageHtml(NewPipe.getDownloader()));
-        } catch (IOException | ExtractionException e) {
-            throw new SubtitlesException("Unable to download player configs", e);
-        }
+        if (playerConfig == null) return Collections.emptyList();
+
         final String playerResponse = playerConfig.getObject("args", new JsonObject())
                 .getString("player_response");
 
@@ -814,9 +933,28 @@ public class YoutubeStreamExtractor extends StreamExtractor {
         return baseUrl.replaceAll("&fmt=[^&]*", "") + "&fmt=" + format.getExtension();
     }
 
-    private Map<String, ItagItem> getItags(String encodedUrlMapKey, ItagItem.ItagType itagTypeWanted) throws ParsingException {
-        Map<String, ItagItem> urlAndItags = new LinkedHashMap<>();
+    /**
+     * Get the streams of the given type, mapped from their url to their itag.
+     * <p>
+     * The stream maps are decoded the first time this is called, in a single pass for all the types.
+     * Streams which have the same stats (format and resolution or bitrate) as a previous one are skipped.
+     */
+    private Map<String, ItagItem> getItags(ItagItem.ItagType itagTypeWanted) throws ParsingException {
+        if (streamTable == null) {
+            final Map<ItagItem.ItagType, Map<String, ItagItem>> table = new EnumMap<>(ItagItem.ItagType.class);
+            for (ItagItem.ItagType itagType : ItagItem.ItagType.values()) {
+                table.put(itagType, new LinkedHashMap<String, ItagItem>());
+            }
+            // Muxed streams come from the fmt stream map, audio and video only streams from the adaptive one
+            decodeStreamMap(URL_ENCODED_FMT_STREAM_MAP, EnumSet.of(ItagItem.ItagType.VIDEO), table);
+            decodeStreamMap(ADAPTIVE_FMTS, EnumSet.of(ItagItem.ItagType.AUDIO, ItagItem.ItagType.VIDEO_ONLY), table);
+            streamTable = table;
+        }
+        return streamTable.get(itagTypeWanted);
+    }
 
+    private void decodeStreamMap(String encodedUrlMapKey, Set<ItagItem.ItagType> itagTypesWanted,
+                                 Map<ItagItem.ItagType, Map<String, ItagItem>> table) throws ParsingException {
         String encodedUrlMap = "";
         if (playerArgs != null && playerArgs.isString(encodedUrlMapKey)) {
             encodedUrlMap = playerArgs.getString(encodedUrlMapKey, "");
@@ -824,6 +962,25 @@ public class YoutubeStreamExtractor extends StreamExtractor {
             encodedUrlMap = videoInfoPage.get(encodedUrlMapKey);
         }
 
+        decodeStreamMap(encodedUrlMap, itagTypesWanted, table, new SignatureDecrypter() {
+            @Nonnull
+            @Override
+            public String decrypt(String encryptedSig) throws DecryptException {
+                return decryptSignature(encryptedSig);
+            }
+        });
+    }
+
+    /**
+     * Add the streams of the wanted types in the encoded stream map to the table, skipping the ones which are
+     * similar to a stream already added and the entries which can't be read.
+     *
+     * @throws DecryptException if the signature of a stream could not be decrypted
+     */
+    static void decodeStreamMap(String encodedUrlMap, Set<ItagItem.ItagType> itagTypesWanted,
+                                Map<ItagItem.ItagType, Map<String, ItagItem>> table,
+                                SignatureDecrypter decrypter) throws ParsingException {
+        final Set<String> knownStats = new HashSet<>();
         for (String url_data_str : encodedUrlMap.split(",")) {
             try {
                 // This loop iterates through multiple streams, therefore tags
@@ -835,13 +992,17 @@ public class YoutubeStreamExtractor extends StreamExtractor {
 
                 if (ItagItem.isSupported(itag)) {
                     ItagItem itagItem = ItagItem.getItag(itag);
-                    if (itagItem.itagType == itagTypeWanted) {
+                    final String statsKey = getStatsKey(itagItem);
+                    if (itagTypesWanted.contains(itagItem.itagType) && !knownStats.contains(statsKey)) {
                         String streamUrl = tags.get("url");
+                        if (streamUrl == null) throw new ParsingException("Stream without url, itag " + itag);
                         // if video has a signature: decrypt it and add it to the url
                         if (tags.get("s") != null) {
-                            streamUrl = streamUrl + "&signature=" + decryptSignature(tags.get("s"), decryptionCode);
+                            streamUrl = streamUrl + "&signature=" + decrypter.decrypt(tags.get("s"));
                         }
-                        urlAndItags.put(streamUrl, itagItem);
+                        table.get(itagItem.itagType).put(streamUrl, itagItem);
+                        // Counted once added only, so that a similar stream stands in for one which could not be read
+                        knownStats.add(statsKey);
                     }
                 }
             } catch (DecryptException e) {
@@ -849,8 +1010,16 @@ public class YoutubeStreamExtractor extends StreamExtractor {
             } catch (Exception ignored) {
             }
         }
+    }
 
-        return urlAndItags;
+    /**
+     * Key identifying the stats of the stream an itag describes, two itags with the same key result in
+     * streams which are similar according to {@link Stream#equalStats(Stream)}.
+     */
+    private static String getStatsKey(ItagItem itagItem) {
+        final String quality = itagItem.itagType == ItagItem.ItagType.AUDIO
+                ? Integer.toString(itagItem.avgBitrate) : itagItem.resolutionString;
+        return itagItem.itagType + ":" + itagItem.getMediaFormat().id + ":" + quality;
     }
 
     /**
@@ -1,6 +1,7 @@
 package org.schabi.newpipe.extractor.stream;
 
 import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.utils.Utils;
 
 import java.io.Serializable;
 import java.util.List;
@@ -15,10 +16,16 @@ public abstract class Stream implements Serializable {
     @Deprecated
     public final int format;
 
+    /**
+     * Time after which the url stops working, see {@link #getExpiryTime()}
+     */
+    private final long expiryTime;
+
     public Stream(String url, MediaFormat format) {
         this.url = url;
         this.format = format.id;
         this.mediaFormat = format;
+        this.expiryTime = Utils.getExpiryTime(url);
     }
 
     /**
@@ -57,4 +64,13 @@ public abstract class Stream implements Serializable {
     public int getFormatId() {
         return mediaFormat.id;
     }
+
+    /**
+     * Get the time after which the url of this stream stops working, as given by the url itself.
+     *
+     * @return the time in milliseconds since the epoch, or -1 if it is unknown
+     */
+    public long getExpiryTime() {
+        return expiryTime;
+    }
 }
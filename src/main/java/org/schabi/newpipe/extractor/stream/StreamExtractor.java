@@ -30,7 +30,9 @@ import org.schabi.newpipe.extractor.utils.Parser;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Scrapes information from a video streaming service (eg, YouTube).
@@ -39,10 +41,29 @@ public abstract class StreamExtractor extends Extractor {
 
     public static final int NO_AGE_LIMIT = 0;
 
+    @Nonnull
+    private Set<StreamInfoField> requestedFields = StreamInfoField.ALL;
+
     public StreamExtractor(StreamingService service, String url) throws IOException, ExtractionException {
         super(service, url);
     }
 
+    /**
+     * Tell the extractor which fields are going to be asked for, so {@link #fetchPage()} can skip
+     * loading what is only needed for the others. Getters of the other fields still work, but may
+     * have to download more.
+     * <p>
+     * Has to be set before calling {@link #fetchPage()}.
+     */
+    public void setRequestedFields(@Nonnull Set<StreamInfoField> requestedFields) {
+        this.requestedFields = requestedFields;
+    }
+
+    @Nonnull
+    public Set<StreamInfoField> getRequestedFields() {
+        return requestedFields;
+    }
+
     @Nonnull
     @Override
     protected UrlIdHandler getUrlIdHandler() throws ParsingException {
@@ -146,4 +167,18 @@ public abstract class StreamExtractor extends Extractor {
      * @return Error message; null if there is no error message.
      */
     public abstract String getErrorMessage();
+
+    /**
+     * Get the fields this extractor can serve from what {@link #fetchPage()} already loaded,
+     * i.e. without downloading or parsing anything else.
+     * <p>
+     * Callers which only need a few fields can use this to decide whether
+     * {@link StreamInfo#getInfo(String, Set)} with a reduced set of fields is worth it.
+     *
+     * @return the cheap fields, empty if the extractor doesn't know
+     */
+    @Nonnull
+    public Set<StreamInfoField> getCheapFields() {
+        return EnumSet.noneOf(StreamInfoField.class);
+    }
 }
@@ -3,12 +3,29 @@ package org.schabi.newpipe.extractor.stream;
 import org.schabi.newpipe.extractor.*;
 import org.schabi.newpipe.extractor.exceptions.ContentNotAvailableException;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.utils.CallbackTask;
 import org.schabi.newpipe.extractor.utils.DashMpdParser;
+import org.schabi.newpipe.extractor.utils.ExpiringCache;
 import org.schabi.newpipe.extractor.utils.ExtractorHelper;
+import org.schabi.newpipe.extractor.utils.Utils;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.Collections;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.schabi.newpipe.extractor.stream.StreamInfoField.*;
 
 /*
  * Created by Christian Schabesberger on 26.08.15.
@@ -142,6 +159,25 @@ public class StreamInfo extends Info {
         return subtitles;
     }
 
+    /**
+     * Get the time after which the first of the stream urls (or the dash manifest url) stops working.
+     *
+     * @return the time in milliseconds since the epoch, or -1 if none of the urls has a known expiry time
+     */
+    public long getExpiryTime() {
+        long expiryTime = Utils.getExpiryTime(dashMpdUrl);
+        for (List<? extends Stream> streams : Arrays.asList(video_streams, audio_streams, video_only_streams)) {
+            if (streams == null) continue;
+            for (Stream stream : streams) {
+                final long streamExpiryTime = stream.getExpiryTime();
+                if (streamExpiryTime != -1 && (expiryTime == -1 || streamExpiryTime < expiryTime)) {
+                    expiryTime = streamExpiryTime;
+                }
+            }
+        }
+        return expiryTime;
+    }
+
     public void setStreamType(StreamType stream_type) {
         this.stream_type = stream_type;
     }
@@ -222,6 +258,29 @@ public class StreamInfo extends Info {
         this.subtitles = subtitles;
     }
 
+    /**
+     * How long before the expiry time of its urls a cached info or manifest is not used anymore,
+     * so there is still time to play the streams.
+     * <p>
+     * The infos {@link #getCachedInfo(StreamingService, String, Set, Executor, ExtractionContext) asked to be cached}
+     * whose urls have an expiry time are kept until then, so getting the info of the same url again doesn't cause
+     * any request. Each {@link ExtractionContext} has its own cache, as the urls may only work for the address
+     * they were requested from.
+     */
+    public static final long EXPIRY_MARGIN = TimeUnit.MINUTES.toMillis(10);
+
+    private static final String CACHE_NAME = "stream-info";
+
+    private static class CachedStreamInfo {
+        final StreamInfo info;
+        final Set<StreamInfoField> fields;
+
+        CachedStreamInfo(StreamInfo info, Set<StreamInfoField> fields) {
+            this.info = info;
+            this.fields = fields;
+        }
+    }
+
     public static class StreamExtractException extends ExtractionException {
         StreamExtractException(String message) {
             super(message);
@@ -233,20 +292,205 @@ public class StreamInfo extends Info {
     }
 
     public static StreamInfo getInfo(StreamingService service, String url) throws IOException, ExtractionException {
-        return getInfo(service.getStreamExtractor(url));
+        return getInfo(service, url, StreamInfoField.ALL);
+    }
+
+    /**
+     * Get the info of a stream, only extracting the given fields besides the important data.
+     * <p>
+     * Skipped fields are left to their default values, nothing is downloaded or parsed for them.
+     *
+     * @param fields the fields to extract, see {@link StreamInfoField}
+     */
+    public static StreamInfo getInfo(String url, Set<StreamInfoField> fields) throws IOException, ExtractionException {
+        return getInfo(NewPipe.getServiceByUrl(url), url, fields);
+    }
+
+    public static StreamInfo getInfo(StreamingService service, String url, Set<StreamInfoField> fields)
+            throws IOException, ExtractionException {
+        return getInfo(service, url, fields, null);
+    }
+
+    /**
+     * Get the info of a stream, issuing the requests which don't depend on each other concurrently.
+     * <p>
+     * The extractor gets the executor through {@link StreamExtractor#setExecutor(Executor)} for the
+     * requests of {@link StreamExtractor#fetchPage()}, and the DASH manifest is downloaded and parsed on it
+     * while the other fields are extracted.
+     *
+     * @param executor the executor to run the independent requests on,
+     *                 or null to do everything on the calling thread
+     */
+    public static StreamInfo getInfo(String url, Set<StreamInfoField> fields, @Nullable Executor executor)
+            throws IOException, ExtractionException {
+        return getInfo(NewPipe.getServiceByUrl(url), url, fields, executor);
+    }
+
+    public static StreamInfo getInfo(StreamingService service, String url, Set<StreamInfoField> fields,
+                                     @Nullable Executor executor) throws IOException, ExtractionException {
+        return getInfo(service, url, fields, executor, ExtractionContext.current());
+    }
+
+    /**
+     * Get the info of a stream within the given context: all the requests are made with its downloader.
+     */
+    public static StreamInfo getInfo(StreamingService service, String url, Set<StreamInfoField> fields,
+                                     @Nullable Executor executor, ExtractionContext context)
+            throws IOException, ExtractionException {
+        final StreamExtractor extractor = service.getStreamExtractor(url, context);
+        extractor.setExecutor(executor);
+        return getInfo(extractor, fields, executor);
+    }
+
+    /**
+     * Like {@link #getInfo(StreamingService, String, Set)}, but reusing the info extracted for the same url
+     * within the {@link ExtractionContext#current() current context} while its urls are valid.
+     */
+    public static StreamInfo getCachedInfo(StreamingService service, String url, Set<StreamInfoField> fields)
+            throws IOException, ExtractionException {
+        return getCachedInfo(service, url, fields, null, ExtractionContext.current());
+    }
+
+    /**
+     * Get the info of a stream, reusing the info extracted for the same url, with at least the given fields,
+     * as long as its urls are valid for more than the {@link #EXPIRY_MARGIN}.
+     * <p>
+     * The info is kept in the caches of the context. Each call gets its own copy, which can be changed
+     * without affecting what the other callers get.
+     */
+    public static StreamInfo getCachedInfo(StreamingService service, String url, Set<StreamInfoField> fields,
+                                           @Nullable Executor executor, ExtractionContext context)
+            throws IOException, ExtractionException {
+        final ExpiringCache<String, CachedStreamInfo> cache = getCache(context);
+        final String cacheKey = service.getServiceId() + ":" + url;
+        final CachedStreamInfo cached = cache.getIfPresent(cacheKey);
+        if (cached != null && cached.fields.containsAll(fields)) {
+            return cached.info.copy();
+        }
+
+        final StreamInfo streamInfo = getInfo(service, url, fields, executor, context);
+
+        final long expiryTime = streamInfo.getExpiryTime();
+        if (expiryTime != -1 && expiryTime - EXPIRY_MARGIN > System.currentTimeMillis()) {
+            final Set<StreamInfoField> cachedFields = EnumSet.noneOf(StreamInfoField.class);
+            cachedFields.addAll(fields);
+            cache.put(cacheKey, new CachedStreamInfo(streamInfo.copy(), cachedFields), expiryTime - EXPIRY_MARGIN);
+        }
+        return streamInfo;
+    }
+
+    /**
+     * A copy whose lists can be changed without affecting this info. The streams and items in them,
+     * which can't be changed, are shared.
+     */
+    private StreamInfo copy() {
+        final StreamInfo copy = new StreamInfo(service_id, url, stream_type, id, name, age_limit);
+        copy.addAllErrors(errors);
+        copy.thumbnail_url = thumbnail_url;
+        copy.upload_date = upload_date;
+        copy.duration = duration;
+        copy.description = description;
+        copy.view_count = view_count;
+        copy.like_count = like_count;
+        copy.dislike_count = dislike_count;
+        copy.uploader_name = uploader_name;
+        copy.uploader_url = uploader_url;
+        copy.uploader_avatar_url = uploader_avatar_url;
+        copy.video_streams = copyOf(video_streams);
+        copy.audio_streams = copyOf(audio_streams);
+        copy.video_only_streams = copyOf(video_only_streams);
+        copy.dashMpdUrl = dashMpdUrl;
+        copy.next_video = next_video;
+        copy.related_streams = copyOf(related_streams);
+        copy.start_position = start_position;
+        copy.subtitles = copyOf(subtitles);
+        return copy;
+    }
+
+    @Nullable
+    private static <T> List<T> copyOf(@Nullable List<T> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+
+    /**
+     * Get the info of a stream on the given executor, without blocking the calling thread.
+     *
+     * @param callback called with the info or the error once the extraction is over, may be null
+     * @return a future which can be used to wait for the info or to cancel the extraction
+     */
+    public static Future<StreamInfo> getInfoAsync(final String url, Executor executor,
+                                                  @Nullable AsyncCallback<StreamInfo> callback) {
+        return CallbackTask.submit(executor, new Callable<StreamInfo>() {
+            @Override
+            public StreamInfo call() throws Exception {
+                return getInfo(url);
+            }
+        }, callback);
+    }
+
+    public static Future<StreamInfo> getInfoAsync(final StreamingService service, final String url,
+                                                  final Set<StreamInfoField> fields, Executor executor,
+                                                  @Nullable AsyncCallback<StreamInfo> callback) {
+        return CallbackTask.submit(executor, new Callable<StreamInfo>() {
+            @Override
+            public StreamInfo call() throws Exception {
+                // Not passing the executor on: waiting for subtasks queued behind other extractions
+                // could exhaust a small pool
+                return getInfo(service, url, fields);
+            }
+        }, callback);
+    }
+
+    /**
+     * Forget the infos which were kept for their remaining validity in the
+     * {@link ExtractionContext#current() current context}, see {@link #EXPIRY_MARGIN}.
+     */
+    public static void clearCache() {
+        getCache(ExtractionContext.current()).clear();
+    }
+
+    private static ExpiringCache<String, CachedStreamInfo> getCache(ExtractionContext context) {
+        return context.getCaches().get(CACHE_NAME, 64, 0);
     }
 
     /**
      * Fills out the video info fields which are common to all services.
      * Probably needs to be overridden by subclasses
      */
-    private static StreamInfo getInfo(StreamExtractor extractor) throws ExtractionException, IOException {
+    private static StreamInfo getInfo(StreamExtractor extractor, Set<StreamInfoField> fields,
+                                      @Nullable Executor executor) throws ExtractionException, IOException {
+        // The getters may load more, they do it within the context of the extractor as well
+        final ExtractionContext previousContext = ExtractionContext.setCurrent(extractor.getContext());
+        // As part of the flow of the page, e.g. the DASH manifest only works for the address the page was fetched from
+        final boolean newFlow = RequestFlow.current() == null;
+        if (newFlow) RequestFlow.setCurrent(new RequestFlow());
+        try {
+            return extractInfo(extractor, fields, executor);
+        } finally {
+            if (newFlow) RequestFlow.setCurrent(null);
+            ExtractionContext.setCurrent(previousContext);
+        }
+    }
+
+    private static StreamInfo extractInfo(StreamExtractor extractor, Set<StreamInfoField> fields,
+                                          @Nullable Executor executor) throws ExtractionException, IOException {
+        extractor.setRequestedFields(fields);
         extractor.fetchPage();
         StreamInfo streamInfo;
         try {
             streamInfo = extractImportantData(extractor);
-            streamInfo = extractStreams(streamInfo, extractor);
-            streamInfo = extractOptionalData(streamInfo, extractor);
+            streamInfo = extractStreams(streamInfo, extractor, fields);
+            final boolean hasStreams = !streamInfo.video_streams.isEmpty() || !streamInfo.audio_streams.isEmpty();
+            final FutureTask<Void> dashMpdTask = parseDashMpd(streamInfo, extractor.getContext(), executor);
+            if (executor == null || !hasStreams) {
+                // Don't extract the rest if there is no stream, which may only be known once the manifest is parsed
+                streamInfo = checkStreams(streamInfo, fields, dashMpdTask);
+                streamInfo = extractOptionalData(streamInfo, extractor, fields);
+            } else {
+                // The check can't fail anymore, the manifest only adds streams while the rest is extracted
+                streamInfo = extractOptionalData(streamInfo, extractor, fields);
+                streamInfo = checkStreams(streamInfo, fields, dashMpdTask);
+            }
         } catch (ExtractionException e) {
             // Currently YouTube does not distinguish between age restricted videos and videos blocked
             // by country.  This means that during the initialisation of the extractor, the extractor
@@ -287,54 +531,102 @@ public class StreamInfo extends Info {
         return new StreamInfo(serviceId, url, streamType, id, name, ageLimit);
     }
 
-    private static StreamInfo extractStreams(StreamInfo streamInfo, StreamExtractor extractor) throws ExtractionException {
+    private static StreamInfo extractStreams(StreamInfo streamInfo, StreamExtractor extractor,
+                                             Set<StreamInfoField> fields) throws ExtractionException {
         /* ---- stream extraction goes here ---- */
         // At least one type of stream has to be available,
         // otherwise an exception will be thrown directly into the frontend.
 
-        try {
-            streamInfo.setDashMpdUrl(extractor.getDashMpdUrl());
-        } catch (Exception e) {
-            streamInfo.addError(new ExtractionException("Couldn't get Dash manifest", e));
+        if (fields.contains(DASH_MANIFEST)) {
+            try {
+                streamInfo.setDashMpdUrl(extractor.getDashMpdUrl());
+            } catch (Exception e) {
+                streamInfo.addError(new ExtractionException("Couldn't get Dash manifest", e));
+            }
         }
 
-        /*  Load and extract audio */
-        try {
-            streamInfo.setAudioStreams(extractor.getAudioStreams());
-        } catch (Exception e) {
-            streamInfo.addError(new ExtractionException("Couldn't get audio streams", e));
-        }
-        /* Extract video stream url*/
-        try {
-            streamInfo.setVideoStreams(extractor.getVideoStreams());
-        } catch (Exception e) {
-            streamInfo.addError(new ExtractionException("Couldn't get video streams", e));
-        }
-        /* Extract video only stream url*/
-        try {
-            streamInfo.setVideoOnlyStreams(extractor.getVideoOnlyStreams());
-        } catch (Exception e) {
-            streamInfo.addError(new ExtractionException("Couldn't get video only streams", e));
+        if (fields.contains(STREAMS)) {
+            /*  Load and extract audio */
+            try {
+                streamInfo.setAudioStreams(extractor.getAudioStreams());
+            } catch (Exception e) {
+                streamInfo.addError(new ExtractionException("Couldn't get audio streams", e));
+            }
+            /* Extract video stream url*/
+            try {
+                streamInfo.setVideoStreams(extractor.getVideoStreams());
+            } catch (Exception e) {
+                streamInfo.addError(new ExtractionException("Couldn't get video streams", e));
+            }
+            /* Extract video only stream url*/
+            try {
+                streamInfo.setVideoOnlyStreams(extractor.getVideoOnlyStreams());
+            } catch (Exception e) {
+                streamInfo.addError(new ExtractionException("Couldn't get video only streams", e));
+            }
         }
 
-        // Lists can be null if a exception was thrown during extraction
-        if (streamInfo.getVideoStreams() == null) streamInfo.setVideoStreams(Collections.<VideoStream>emptyList());
-        if (streamInfo.getVideoOnlyStreams()== null) streamInfo.setVideoOnlyStreams(Collections.<VideoStream>emptyList());
-        if (streamInfo.getAudioStreams() == null) streamInfo.setAudioStreams(Collections.<AudioStream>emptyList());
+        // Lists can be null if a exception was thrown during extraction,
+        // they have to be mutable since the streams of the dash manifest are added to them
+        if (streamInfo.getVideoStreams() == null) streamInfo.setVideoStreams(new ArrayList<VideoStream>());
+        if (streamInfo.getVideoOnlyStreams()== null) streamInfo.setVideoOnlyStreams(new ArrayList<VideoStream>());
+        if (streamInfo.getAudioStreams() == null) streamInfo.setAudioStreams(new ArrayList<AudioStream>());
 
-        Exception dashMpdError = null;
-        if (streamInfo.getDashMpdUrl() != null && !streamInfo.getDashMpdUrl().isEmpty()) {
+        return streamInfo;
+    }
+
+    /**
+     * Download and parse the DASH manifest, if there is one, on the executor or on the calling thread
+     * if there is no executor.
+     *
+     * @return the task doing it, null if there is no manifest
+     */
+    @Nullable
+    private static FutureTask<Void> parseDashMpd(final StreamInfo streamInfo, final ExtractionContext context,
+                                                 @Nullable Executor executor) {
+        if (streamInfo.getDashMpdUrl() == null || streamInfo.getDashMpdUrl().isEmpty()) return null;
+
+        final FutureTask<Void> task = new FutureTask<>(ExtractionContext.wrap(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                DashMpdParser.getStreams(streamInfo, context);
+                return null;
+            }
+        }));
+        if (executor == null) {
+            task.run();
+        } else {
             try {
-                DashMpdParser.getStreams(streamInfo);
-            } catch (Exception e) {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        return task;
+    }
+
+    private static StreamInfo checkStreams(StreamInfo streamInfo, Set<StreamInfoField> fields,
+                                           @Nullable FutureTask<Void> dashMpdTask)
+            throws ExtractionException, IOException {
+        Throwable dashMpdError = null;
+        if (dashMpdTask != null) {
+            try {
+                dashMpdTask.get();
+            } catch (ExecutionException e) {
                 // Sometimes we receive 403 (forbidden) error when trying to download the manifest (similar to what happens with youtube-dl),
                 // just skip the exception (but store it somewhere), as we later check if we have streams anyway.
-                dashMpdError = e;
+                dashMpdError = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dashMpdTask.cancel(true);
+                throw new InterruptedIOException("Interrupted while parsing the DASH manifest");
             }
         }
 
         // Either audio or video has to be available, otherwise we didn't get a stream (since videoOnly are optional, they don't count).
-        if ((streamInfo.video_streams.isEmpty())
+        // Only checked if the streams were requested at all.
+        if ((fields.contains(STREAMS) || fields.contains(DASH_MANIFEST))
+                && (streamInfo.video_streams.isEmpty())
                 && (streamInfo.audio_streams.isEmpty())) {
 
             if (dashMpdError != null) {
@@ -349,78 +641,107 @@ public class StreamInfo extends Info {
         return streamInfo;
     }
 
-    private static StreamInfo extractOptionalData(StreamInfo streamInfo, StreamExtractor extractor) {
+    private static StreamInfo extractOptionalData(StreamInfo streamInfo, StreamExtractor extractor,
+                                                  Set<StreamInfoField> fields) {
         /*  ---- optional data goes here: ---- */
         // If one of these fails, the frontend needs to handle that they are not available.
         // Exceptions are therefore not thrown into the frontend, but stored into the error List,
         // so the frontend can afterwards check where errors happened.
 
-        try {
-            streamInfo.setThumbnailUrl(extractor.getThumbnailUrl());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(THUMBNAIL)) {
+            try {
+                streamInfo.setThumbnailUrl(extractor.getThumbnailUrl());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setDuration(extractor.getLength());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(DURATION)) {
+            try {
+                streamInfo.setDuration(extractor.getLength());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setUploaderName(extractor.getUploaderName());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(UPLOADER_NAME)) {
+            try {
+                streamInfo.setUploaderName(extractor.getUploaderName());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setUploaderUrl(extractor.getUploaderUrl());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(UPLOADER_URL)) {
+            try {
+                streamInfo.setUploaderUrl(extractor.getUploaderUrl());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setDescription(extractor.getDescription());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(DESCRIPTION)) {
+            try {
+                streamInfo.setDescription(extractor.getDescription());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setViewCount(extractor.getViewCount());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(VIEW_COUNT)) {
+            try {
+                streamInfo.setViewCount(extractor.getViewCount());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setUploadDate(extractor.getUploadDate());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(UPLOAD_DATE)) {
+            try {
+                streamInfo.setUploadDate(extractor.getUploadDate());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setUploaderAvatarUrl(extractor.getUploaderAvatarUrl());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(UPLOADER_AVATAR)) {
+            try {
+                streamInfo.setUploaderAvatarUrl(extractor.getUploaderAvatarUrl());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setStartPosition(extractor.getTimeStamp());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(START_POSITION)) {
+            try {
+                streamInfo.setStartPosition(extractor.getTimeStamp());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setLikeCount(extractor.getLikeCount());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(LIKE_COUNT)) {
+            try {
+                streamInfo.setLikeCount(extractor.getLikeCount());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setDislikeCount(extractor.getDislikeCount());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(DISLIKE_COUNT)) {
+            try {
+                streamInfo.setDislikeCount(extractor.getDislikeCount());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setNextVideo(extractor.getNextVideo());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(NEXT_VIDEO)) {
+            try {
+                streamInfo.setNextVideo(extractor.getNextVideo());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
         }
-        try {
-            streamInfo.setSubtitles(extractor.getSubtitlesDefault());
-        } catch (Exception e) {
-            streamInfo.addError(e);
+        if (fields.contains(SUBTITLES)) {
+            try {
+                streamInfo.setSubtitles(extractor.getSubtitlesDefault());
+            } catch (Exception e) {
+                streamInfo.addError(e);
+            }
+        }
+        if (fields.contains(RELATED_STREAMS)) {
+            streamInfo.setRelatedStreams(ExtractorHelper.getRelatedVideosOrLogError(streamInfo, extractor));
         }
-        streamInfo.setRelatedStreams(ExtractorHelper.getRelatedVideosOrLogError(streamInfo, extractor));
         return streamInfo;
     }
 
@@ -0,0 +1,43 @@
+package org.schabi.newpipe.extractor.stream;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The optional parts of a {@link StreamInfo} which can be requested through
+ * {@link StreamInfo#getInfo(String, Set)}.
+ * <p>
+ * The important data (service, url, id, name, stream type and age limit) is always extracted,
+ * every other field is only extracted when it is part of the requested set. Fields which are not requested
+ * cause no requests and no parsing and keep their default value in the resulting {@link StreamInfo}.
+ */
+public enum StreamInfoField {
+    /**
+     * The audio, video and video only streams
+     */
+    STREAMS,
+    /**
+     * The url of the DASH manifest, and the streams which are only listed in it
+     */
+    DASH_MANIFEST,
+    THUMBNAIL,
+    DURATION,
+    UPLOADER_NAME,
+    UPLOADER_URL,
+    UPLOADER_AVATAR,
+    DESCRIPTION,
+    VIEW_COUNT,
+    UPLOAD_DATE,
+    START_POSITION,
+    LIKE_COUNT,
+    DISLIKE_COUNT,
+    NEXT_VIDEO,
+    RELATED_STREAMS,
+    SUBTITLES;
+
+    /**
+     * All the fields, what {@link StreamInfo#getInfo(String)} extracts
+     */
+    public static final Set<StreamInfoField> ALL = Collections.unmodifiableSet(EnumSet.allOf(StreamInfoField.class));
+}
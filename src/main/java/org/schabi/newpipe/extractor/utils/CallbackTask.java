@@ -0,0 +1,77 @@
+package org.schabi.newpipe.extractor.utils;
+
+import org.schabi.newpipe.extractor.AsyncCallback;
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.ExtractionContext;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A {@link FutureTask} which reports its outcome to an {@link AsyncCallback} when it completes.
+ */
+public class CallbackTask<V> extends FutureTask<V> {
+    @Nullable
+    private final AsyncCallback<V> callback;
+
+    /**
+     * The callable keeps the {@link ExtractionContext#current() current context} and
+     * {@link Deadline#current() deadline} of the thread creating the task.
+     */
+    public CallbackTask(Callable<V> callable, @Nullable AsyncCallback<V> callback) {
+        super(ExtractionContext.wrap(callable));
+        this.callback = callback;
+    }
+
+    /**
+     * Run the callable on the executor.
+     * If the executor rejects it, the task fails with the {@link RejectedExecutionException}.
+     */
+    @Nonnull
+    public static <V> CallbackTask<V> submit(Executor executor, Callable<V> callable,
+                                             @Nullable AsyncCallback<V> callback) {
+        final CallbackTask<V> task = new CallbackTask<>(callable, callback);
+        task.submit(executor);
+        return task;
+    }
+
+    /**
+     * Run this task on the executor.
+     * If the executor rejects it, the task fails with the {@link RejectedExecutionException}.
+     */
+    public void submit(Executor executor) {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            setException(e);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (callback == null || isCancelled()) return;
+
+        final V result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                callback.onFailure((Exception) cause);
+            } else {
+                callback.onFailure(e);
+            }
+            return;
+        } catch (InterruptedException e) {
+            // Can't happen, the task is done
+            Thread.currentThread().interrupt();
+            return;
+        }
+        callback.onSuccess(result);
+    }
+}
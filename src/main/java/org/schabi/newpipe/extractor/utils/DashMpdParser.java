@@ -1,8 +1,9 @@
 package org.schabi.newpipe.extractor.utils;
 
+import org.schabi.newpipe.extractor.DownloadResponse;
 import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.ExtractionContext;
 import org.schabi.newpipe.extractor.MediaFormat;
-import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.exceptions.ParsingException;
 import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
 import org.schabi.newpipe.extractor.services.youtube.ItagItem;
@@ -10,15 +11,19 @@ import org.schabi.newpipe.extractor.stream.AudioStream;
 import org.schabi.newpipe.extractor.stream.Stream;
 import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.extractor.stream.VideoStream;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
+import javax.annotation.Nullable;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /*
  * Created by Christian Schabesberger on 02.02.16.
@@ -51,68 +56,223 @@ public class DashMpdParser {
         }
     }
 
+    /**
+     * Name of the cache of the {@link ExtractionContext} in which the streams of the parsed manifests
+     * are kept until the first of their urls expires (minus {@link StreamInfo#EXPIRY_MARGIN})
+     */
+    private static final String CACHE_NAME = "dash-mpd-streams";
+
+    private static final SAXParserFactory PARSER_FACTORY = SAXParserFactory.newInstance();
+
+    /**
+     * Parsers are not thread safe, but can be reused after a reset, so every thread keeps its own
+     */
+    private static final ThreadLocal<SAXParser> PARSER = new ThreadLocal<SAXParser>() {
+        @Override
+        protected SAXParser initialValue() {
+            try {
+                synchronized (PARSER_FACTORY) {
+                    return PARSER_FACTORY.newSAXParser();
+                }
+            } catch (ParserConfigurationException | SAXException e) {
+                throw new IllegalStateException("Could not create xml parser", e);
+            }
+        }
+    };
+
     /**
      * Will try to download (using {@link StreamInfo#dashMpdUrl}) and parse the dash manifest,
      * then it will search for any stream that the ItagItem has (by the id).
      * <p>
      * It has video, video only and audio streams and will only add to the list if it don't
      * find a similar stream in the respective lists (calling {@link Stream#equalStats}).
+     * <p>
+     * The streams of a manifest are cached until the first of their urls expires, so asking again for the
+     * same manifest in the meantime doesn't download it again.
      *
      * @param streamInfo where the parsed streams will be added
      */
     public static void getStreams(StreamInfo streamInfo) throws DashMpdParsingException, ReCaptchaException {
-        String dashDoc;
-        Downloader downloader = NewPipe.getDownloader();
+        getStreams(streamInfo, ExtractionContext.current());
+    }
+
+    /**
+     * Like {@link #getStreams(StreamInfo)}, downloading the manifest with the downloader of the given context
+     * and caching its streams there.
+     */
+    public static void getStreams(StreamInfo streamInfo, ExtractionContext context)
+            throws DashMpdParsingException, ReCaptchaException {
+        final ExpiringCache<String, List<Stream>> cache = context.getCaches().get(CACHE_NAME, 32, 0);
+        final String dashMpdUrl = streamInfo.dashMpdUrl;
+        List<Stream> streams = cache.getIfPresent(dashMpdUrl);
+        if (streams == null) {
+            streams = downloadStreams(context.getDownloader(), dashMpdUrl);
+
+            long expiryTime = Utils.getExpiryTime(dashMpdUrl);
+            for (Stream stream : streams) {
+                if (stream.getExpiryTime() != -1 && (expiryTime == -1 || stream.getExpiryTime() < expiryTime)) {
+                    expiryTime = stream.getExpiryTime();
+                }
+            }
+            if (expiryTime != -1 && expiryTime - StreamInfo.EXPIRY_MARGIN > System.currentTimeMillis()) {
+                cache.put(dashMpdUrl, streams, expiryTime - StreamInfo.EXPIRY_MARGIN);
+            }
+        }
+        addStreams(streamInfo, streams);
+    }
+
+    private static List<Stream> downloadStreams(Downloader downloader, String dashMpdUrl)
+            throws DashMpdParsingException, ReCaptchaException {
+        DownloadResponse response;
         try {
-            dashDoc = downloader.download(streamInfo.dashMpdUrl);
+            response = DownloadResponse.open(downloader, dashMpdUrl);
         } catch (IOException ioe) {
-            throw new DashMpdParsingException("Could not get dash mpd: " + streamInfo.dashMpdUrl, ioe);
+            throw new DashMpdParsingException("Could not get dash mpd: " + dashMpdUrl, ioe);
         } catch (ReCaptchaException e) {
             throw new ReCaptchaException("reCaptcha Challenge needed");
         }
 
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            InputStream stream = new ByteArrayInputStream(dashDoc.getBytes());
-
-            Document doc = builder.parse(stream);
-            NodeList representationList = doc.getElementsByTagName("Representation");
-
-            for (int i = 0; i < representationList.getLength(); i++) {
-                Element representation = ((Element) representationList.item(i));
-                try {
-                    String mimeType = ((Element) representation.getParentNode()).getAttribute("mimeType");
-                    String id = representation.getAttribute("id");
-                    String url = representation.getElementsByTagName("BaseURL").item(0).getTextContent();
-                    ItagItem itag = ItagItem.getItag(Integer.parseInt(id));
-                    if (itag != null) {
-                        MediaFormat mediaFormat = MediaFormat.getFromMimeType(mimeType);
-
-                        if (itag.itagType.equals(ItagItem.ItagType.AUDIO)) {
-                            AudioStream audioStream = new AudioStream(url, mediaFormat, itag.avgBitrate);
-
-                            if (!Stream.containSimilarStream(audioStream, streamInfo.audio_streams)) {
-                                streamInfo.audio_streams.add(audioStream);
-                            }
-                        } else {
-                            boolean isVideoOnly = itag.itagType.equals(ItagItem.ItagType.VIDEO_ONLY);
-                            VideoStream videoStream = new VideoStream(url, mediaFormat, itag.resolutionString, isVideoOnly);
-
-                            if (isVideoOnly) {
-                                if (!Stream.containSimilarStream(videoStream, streamInfo.video_only_streams)) {
-                                    streamInfo.video_only_streams.add(videoStream);
-                                }
-                            } else if (!Stream.containSimilarStream(videoStream, streamInfo.video_streams)) {
-                                streamInfo.video_streams.add(videoStream);
-                            }
-                        }
-                    }
-                } catch (Exception ignored) {
-                }
+            return parse(response.getInputStream());
+        } catch (IOException e) {
+            throw new DashMpdParsingException("Could not get dash mpd: " + dashMpdUrl, e);
+        } finally {
+            try {
+                response.close();
+            } catch (IOException ignored) {
             }
+        }
+    }
+
+    /**
+     * Parse the given dash manifest, adding its streams to the stream info as they are read.
+     * <p>
+     * The manifest is not loaded into a DOM, only the {@code AdaptationSet}, {@code Representation}
+     * and {@code BaseURL} elements are looked at while parsing.
+     *
+     * @param manifest the manifest, the parser takes care of the encoding declared in it
+     */
+    public static void getStreams(StreamInfo streamInfo, InputStream manifest) throws DashMpdParsingException {
+        addStreams(streamInfo, parse(manifest));
+    }
+
+    private static List<Stream> parse(InputStream manifest) throws DashMpdParsingException {
+        final List<Stream> streams = new ArrayList<>();
+        final SAXParser parser = PARSER.get();
+        try {
+            parser.parse(manifest, new ManifestHandler(streams));
         } catch (Exception e) {
             throw new DashMpdParsingException("Could not parse Dash mpd", e);
+        } finally {
+            parser.reset();
+        }
+        return Collections.unmodifiableList(streams);
+    }
+
+    @Nullable
+    private static Stream createStream(String mimeType, String id, String url) {
+        try {
+            ItagItem itag = ItagItem.getItag(Integer.parseInt(id));
+            MediaFormat mediaFormat = MediaFormat.getFromMimeType(mimeType);
+
+            if (itag.itagType.equals(ItagItem.ItagType.AUDIO)) {
+                return new AudioStream(url, mediaFormat, itag.avgBitrate);
+            } else {
+                boolean isVideoOnly = itag.itagType.equals(ItagItem.ItagType.VIDEO_ONLY);
+                return new VideoStream(url, mediaFormat, itag.resolutionString, isVideoOnly);
+            }
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private static void addStreams(StreamInfo streamInfo, List<Stream> streams) {
+        for (Stream stream : streams) {
+            if (stream instanceof AudioStream) {
+                if (!Stream.containSimilarStream(stream, streamInfo.audio_streams)) {
+                    streamInfo.audio_streams.add((AudioStream) stream);
+                }
+            } else {
+                VideoStream videoStream = (VideoStream) stream;
+                if (videoStream.isVideoOnly()) {
+                    if (!Stream.containSimilarStream(videoStream, streamInfo.video_only_streams)) {
+                        streamInfo.video_only_streams.add(videoStream);
+                    }
+                } else if (!Stream.containSimilarStream(videoStream, streamInfo.video_streams)) {
+                    streamInfo.video_streams.add(videoStream);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a stream for every {@code Representation}, once its first {@code BaseURL} was read.
+     * The mime type comes from the enclosing {@code AdaptationSet}.
+     */
+    private static class ManifestHandler extends DefaultHandler {
+        private final List<Stream> streams;
+        private final StringBuilder text = new StringBuilder();
+
+        private String mimeType = "";
+        private String representationId;
+        private boolean inBaseUrl = false;
+        private boolean baseUrlRead = false;
+
+        ManifestHandler(List<Stream> streams) {
+            this.streams = streams;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (getName(qName)) {
+                case "AdaptationSet":
+                    final String adaptationMimeType = attributes.getValue("mimeType");
+                    mimeType = adaptationMimeType != null ? adaptationMimeType : "";
+                    break;
+                case "Representation":
+                    representationId = attributes.getValue("id");
+                    baseUrlRead = false;
+                    break;
+                case "BaseURL":
+                    if (representationId != null && !baseUrlRead) {
+                        inBaseUrl = true;
+                        text.setLength(0);
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inBaseUrl) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (getName(qName)) {
+                case "BaseURL":
+                    if (inBaseUrl) {
+                        inBaseUrl = false;
+                        baseUrlRead = true;
+                        final Stream stream = createStream(mimeType, representationId, text.toString());
+                        if (stream != null) streams.add(stream);
+                    }
+                    break;
+                case "Representation":
+                    representationId = null;
+                    break;
+                case "AdaptationSet":
+                    mimeType = "";
+                    break;
+            }
+        }
+
+        /**
+         * Name of the element without the namespace prefix
+         */
+        private static String getName(String qName) {
+            final int colon = qName.indexOf(':');
+            return colon < 0 ? qName : qName.substring(colon + 1);
         }
     }
 }
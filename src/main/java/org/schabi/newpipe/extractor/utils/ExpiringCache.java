@@ -0,0 +1,128 @@
+package org.schabi.newpipe.extractor.utils;
+
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread safe cache whose entries expire after a given time and which holds at most
+ * a given number of entries (the least recently used ones are evicted first).
+ * <p>
+ * Loading through {@link #get(Object, Loader)} is single-flight: when several threads ask for
+ * the same missing key at the same time, only one of them runs the loader and the others wait
+ * for its result. Failed loads are not cached.
+ */
+public class ExpiringCache<K, V> {
+
+    public interface Loader<K, V> {
+        @Nonnull
+        V load(K key) throws IOException, ExtractionException;
+    }
+
+    private static class CacheEntry<V> {
+        final V value;
+        final long expiresAt;
+
+        CacheEntry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long timeToLive;
+
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+    private final SingleFlight<K, V> loading = new SingleFlight<>();
+
+    /**
+     * @param maxSize    the maximum number of entries
+     * @param timeToLive how long an entry stays valid after being stored, in milliseconds
+     */
+    public ExpiringCache(final int maxSize, long timeToLive) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the value of the key if it is present and not expired.
+     */
+    @Nullable
+    public synchronized V getIfPresent(K key) {
+        final CacheEntry<V> entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Get the value of the key, loading it with the given loader if it is not present.
+     */
+    @Nonnull
+    public V get(final K key, final Loader<K, V> loader) throws IOException, ExtractionException {
+        final V cached = getIfPresent(key);
+        if (cached != null) return cached;
+
+        return loading.execute(key, new Loader<K, V>() {
+            @Nonnull
+            @Override
+            public V load(K key) throws IOException, ExtractionException {
+                // Another thread may have stored the value between the first check and now
+                final V stored = getIfPresent(key);
+                if (stored != null) return stored;
+
+                final V value = loader.load(key);
+                put(key, value);
+                return value;
+            }
+        });
+    }
+
+    public void put(K key, @Nonnull V value) {
+        put(key, value, System.currentTimeMillis() + timeToLive);
+    }
+
+    /**
+     * Store the value with a specific expiration time.
+     *
+     * @param expiresAt the time, in milliseconds since the epoch, after which the entry becomes invalid
+     */
+    public synchronized void put(K key, @Nonnull V value, long expiresAt) {
+        entries.put(key, new CacheEntry<>(value, expiresAt));
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of stored entries, after removing the expired ones
+     */
+    public synchronized int size() {
+        final long now = System.currentTimeMillis();
+        final Iterator<CacheEntry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt <= now) iterator.remove();
+        }
+        return entries.size();
+    }
+}
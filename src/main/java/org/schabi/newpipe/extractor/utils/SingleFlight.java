@@ -0,0 +1,133 @@
+package org.schabi.newpipe.extractor.utils;
+
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deduplicates concurrent calls for the same key: while a call for a key is running, other callers
+ * asking for the same key wait for it and get its result (or its exception) instead of making their own.
+ * <p>
+ * Waiting callers stay bound to their own {@link Deadline}. The running call has the deadline of the caller
+ * which started it, so when it fails because that caller ran out of time, was cancelled or interrupted
+ * (an {@link InterruptedIOException} in the causes), the waiting callers run the loader again themselves.
+ * <p>
+ * Nothing is kept once a call is done, see {@link ExpiringCache} for that.
+ */
+public class SingleFlight<K, V> {
+    /**
+     * How often, in milliseconds, a caller waiting without time limit checks whether its deadline was cancelled
+     */
+    private static final long CANCEL_CHECK_INTERVAL = 500;
+
+    private final ConcurrentMap<K, FutureTask<V>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Run the loader for the key, or wait for the call already running for it.
+     */
+    @Nonnull
+    public V execute(final K key, final ExpiringCache.Loader<K, V> loader) throws IOException, ExtractionException {
+        while (true) {
+            final FutureTask<V> task = new FutureTask<>(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return loader.load(key);
+                }
+            });
+
+            final FutureTask<V> other = running.putIfAbsent(key, task);
+            if (other == null) {
+                try {
+                    task.run();
+                    return getResult(task);
+                } finally {
+                    running.remove(key, task);
+                }
+            }
+
+            awaitDone(other);
+            try {
+                return getResult(other);
+            } catch (IOException | ExtractionException e) {
+                if (!isOwnedByCaller(e)) throw e;
+                // The failure was the one of the caller which ran the call, not ours
+                Deadline.checkCurrent();
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while waiting for the value");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether a call for the key is running
+     */
+    public boolean isRunning(K key) {
+        return running.containsKey(key);
+    }
+
+    /**
+     * Wait for the call of another caller to be done, for at most the time left to the current deadline.
+     */
+    private static void awaitDone(FutureTask<?> task) throws InterruptedIOException {
+        final Deadline deadline = Deadline.current();
+        try {
+            if (deadline == null) {
+                task.get();
+                return;
+            }
+            while (true) {
+                deadline.check();
+                try {
+                    task.get(Math.min(deadline.getRemainingMillis(), CANCEL_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException ignored) {
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException("Interrupted while waiting for the value");
+            exception.initCause(e);
+            throw exception;
+        } catch (ExecutionException ignored) {
+            // Done, the failure is thrown by getResult()
+        }
+    }
+
+    private static <V> V getResult(FutureTask<V> task) throws IOException, ExtractionException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            // Not possible, the task is done
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the value");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof ExtractionException) throw (ExtractionException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new ExtractionException(cause);
+        }
+    }
+
+    /**
+     * Whether the failure is due to the caller which ran the call, rather than to the call itself
+     */
+    private static boolean isOwnedByCaller(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException) return true;
+        }
+        return false;
+    }
+}
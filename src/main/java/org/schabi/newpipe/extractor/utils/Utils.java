@@ -4,6 +4,9 @@ import org.schabi.newpipe.extractor.Collector;
 import org.schabi.newpipe.extractor.exceptions.ParsingException;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class Utils {
     private Utils() {
@@ -39,6 +42,26 @@ public class Utils {
         }
     }
 
+    private static final Pattern EXPIRE_PARAM = Pattern.compile("[?&/]expire[=/](\\d+)");
+
+    /**
+     * Get the time after which a url stops working, from its "expire" parameter
+     * (either a query parameter, {@code &expire=1524625402}, or a path segment, {@code /expire/1524625402/}).
+     *
+     * @param url the url
+     * @return the expiry time in milliseconds since the epoch, or -1 if the url doesn't say
+     */
+    public static long getExpiryTime(String url) {
+        if (url == null) return -1;
+        final Matcher matcher = EXPIRE_PARAM.matcher(url);
+        if (!matcher.find()) return -1;
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(matcher.group(1)));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     public static void printErrors(Collector c) {
         List<Throwable> errors = c.getErrors();
         for(Throwable e : errors) {
@@ -1,10 +1,15 @@
 package org.schabi.newpipe;
 
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.StreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.HttpResponseException;
 import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
 
 import javax.net.ssl.HttpsURLConnection;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.UnknownHostException;
@@ -32,7 +37,7 @@ import java.util.Map;
  * along with NewPipe.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-public class Downloader implements org.schabi.newpipe.extractor.Downloader {
+public class Downloader implements StreamingDownloader {
 
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:43.0) Gecko/20100101 Firefox/43.0";
     private static String mCookies = "";
@@ -102,22 +107,48 @@ public class Downloader implements org.schabi.newpipe.extractor.Downloader {
         BufferedReader in = null;
 
         try {
-            con.setConnectTimeout(30 * 1000);// 30s
-            con.setReadTimeout(30 * 1000);// 30s
+            in = new BufferedReader(
+                    new InputStreamReader(decode(con.getURL().toString(), con, connect(con)).getInputStream()));
+            String inputLine;
+
+            while ((inputLine = in.readLine()) != null) {
+                response.append(inputLine);
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        return response.toString();
+    }
+
+    /**
+     * Set up the connection and return the stream of its body
+     */
+    private static InputStream connect(HttpsURLConnection con) throws IOException, ReCaptchaException {
+        // The timeouts don't go beyond the deadline of the extraction
+        int timeout = 30 * 1000;// 30s
+        final Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.check();
+            timeout = (int) Math.max(1, Math.min(timeout, deadline.getRemainingMillis()));
+        }
+
+        try {
+            con.setConnectTimeout(timeout);
+            con.setReadTimeout(timeout);
             con.setRequestMethod("GET");
             con.setRequestProperty("User-Agent", USER_AGENT);
+            if (con.getRequestProperty("Accept-Encoding") == null) {
+                con.setRequestProperty("Accept-Encoding", DownloadResponse.ACCEPT_ENCODING);
+            }
 
             if (getCookies().length() > 0) {
                 con.setRequestProperty("Cookie", getCookies());
             }
 
-            in = new BufferedReader(
-                    new InputStreamReader(con.getInputStream()));
-            String inputLine;
-
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
+            return con.getInputStream();
         } catch (UnknownHostException uhe) {//thrown when there's no internet connection
             throw new IOException("unknown host or no network", uhe);
             //Toast.makeText(getActivity(), uhe.getMessage(), Toast.LENGTH_LONG).show();
@@ -131,14 +162,36 @@ public class Downloader implements org.schabi.newpipe.extractor.Downloader {
                 throw new ReCaptchaException("reCaptcha Challenge requested");
             }
 
-            throw new IOException(con.getResponseCode() + " " + con.getResponseMessage(), e);
-        } finally {
-            if (in != null) {
-                in.close();
-            }
+            throw new HttpResponseException(con.getResponseCode(),
+                    con.getResponseCode() + " " + con.getResponseMessage(), e);
         }
+    }
 
-        return response.toString();
+    /**
+     * Wrap the body of the connection, decoding it if it was compressed
+     */
+    private static DownloadResponse decode(String url, HttpsURLConnection con, InputStream body) throws IOException {
+        return DownloadResponse.fromRawBody(url, con.getResponseCode(),
+                con.getHeaderFields(), body);
+    }
+
+    /**
+     * Open the supplied URL and hand out the body without buffering it.
+     *
+     * @param siteUrl        the URL of the resource to download
+     * @param requestHeaders set request header properties
+     * @return the response, which has to be closed by the caller
+     */
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException, ReCaptchaException {
+        URL url = new URL(siteUrl);
+        HttpsURLConnection con = (HttpsURLConnection) url.openConnection();
+        for (Map.Entry<String, String> pair : requestHeaders.entrySet()) {
+            con.setRequestProperty(pair.getKey(), pair.getValue());
+        }
+        // Closing the body releases the connection, so it can be reused by following requests
+        InputStream body = connect(con);
+        return decode(siteUrl, con, body);
     }
 
     /**
@@ -0,0 +1,124 @@
+package org.schabi.newpipe.extractor;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link DownloadResponse#fromRawBody(String, int, Map, java.io.InputStream)}
+ */
+public class DownloadResponseTest {
+    private static final String URL = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+    private static final String BODY;
+
+    static {
+        final StringBuilder body = new StringBuilder("<html><body>");
+        for (int i = 0; i < 1000; i++) {
+            body.append("<li class=\"video-list-item related-list-item\">").append(i).append("</li>");
+        }
+        BODY = body.append("</body></html>").toString();
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final GZIPOutputStream output = new GZIPOutputStream(compressed);
+        output.write(BODY.getBytes("UTF-8"));
+        output.close();
+
+        DownloadResponse response = DownloadResponse.fromRawBody(URL, 200, headers("gzip", compressed.size()),
+                new ByteArrayInputStream(compressed.toByteArray()));
+        assertEquals(BODY, response.readBody());
+        assertEquals("gzip", response.getContentEncoding());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Content-Length"));
+        assertEquals("text/html; charset=UTF-8", response.getHeader("Content-Type"));
+
+        assertEquals(compressed.size(), response.getWireBytes());
+        assertEquals(BODY.length(), response.getDecodedBytes());
+        assertTrue(response.getWireBytes() < response.getDecodedBytes() / 10);
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        for (boolean raw : new boolean[]{false, true}) {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            final DeflaterOutputStream output = new DeflaterOutputStream(compressed, new Deflater(6, raw));
+            output.write(BODY.getBytes("UTF-8"));
+            output.close();
+
+            DownloadResponse response = DownloadResponse.fromRawBody(URL, 200, headers("deflate", compressed.size()),
+                    new ByteArrayInputStream(compressed.toByteArray()));
+            assertEquals("raw " + raw, BODY, response.readBody());
+            assertEquals(compressed.size(), response.getWireBytes());
+        }
+    }
+
+    @Test
+    public void testZlibReadByteByByte() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final DeflaterOutputStream output = new DeflaterOutputStream(compressed);
+        output.write(BODY.getBytes("UTF-8"));
+        output.close();
+
+        final InputStream oneByteAtATime = new FilterInputStream(new ByteArrayInputStream(compressed.toByteArray())) {
+            @Override
+            public int read(@Nonnull byte[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        DownloadResponse response = DownloadResponse.fromRawBody(URL, 200, headers("deflate", compressed.size()),
+                oneByteAtATime);
+        assertEquals(BODY, response.readBody());
+        assertEquals(compressed.size(), response.getWireBytes());
+    }
+
+    @Test
+    public void testIdentity() throws IOException {
+        final byte[] body = BODY.getBytes("UTF-8");
+        DownloadResponse response = DownloadResponse.fromRawBody(URL, 200, headers(null, body.length),
+                new ByteArrayInputStream(body));
+        assertEquals(BODY, response.readBody());
+        assertNull(response.getContentEncoding());
+        assertEquals(String.valueOf(body.length), response.getHeader("Content-Length"));
+        assertEquals(body.length, response.getWireBytes());
+        assertEquals(body.length, response.getDecodedBytes());
+    }
+
+    @Test
+    public void testEmptyEncodedBody() throws IOException {
+        DownloadResponse response = DownloadResponse.fromRawBody(URL, 304, headers("gzip", 0),
+                new ByteArrayInputStream(new byte[0]));
+        assertEquals("", response.readBody());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedEncoding() throws IOException {
+        DownloadResponse.fromRawBody(URL, 200, headers("br", 3), new ByteArrayInputStream(new byte[]{1, 2, 3}));
+    }
+
+    private static Map<String, List<String>> headers(String contentEncoding, int contentLength) {
+        final Map<String, List<String>> headers = new HashMap<>();
+        headers.put("Content-Type", Collections.singletonList("text/html; charset=UTF-8"));
+        headers.put("Content-Length", Collections.singletonList(String.valueOf(contentLength)));
+        if (contentEncoding != null) {
+            headers.put("Content-Encoding", Arrays.asList(contentEncoding));
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,151 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.AsyncCallback;
+import org.schabi.newpipe.extractor.DownloadResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link AsyncDownloaderAdapter}
+ */
+public class AsyncDownloaderAdapterTest {
+    private static final String URL = "https://soundcloud.com";
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCallback() throws Exception {
+        final AsyncDownloaderAdapter downloader = new AsyncDownloaderAdapter(new FakeServer(), executor);
+        final Callback callback = new Callback();
+
+        Future<DownloadResponse> future = downloader.downloadAsync(URL, NO_HEADERS, callback);
+        assertTrue(callback.called.await(5, TimeUnit.SECONDS));
+        assertSame(future.get(), callback.response.get());
+        assertEquals("body of " + URL, future.get().readBody());
+        assertNull(callback.error.get());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        final FakeServer server = new FakeServer();
+        server.fail = true;
+        final AsyncDownloaderAdapter downloader = new AsyncDownloaderAdapter(server, executor);
+        final Callback callback = new Callback();
+
+        Future<DownloadResponse> future = downloader.downloadAsync(URL, NO_HEADERS, callback);
+        assertTrue(callback.called.await(5, TimeUnit.SECONDS));
+        assertTrue(callback.error.get() instanceof IOException);
+        try {
+            future.get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(callback.error.get(), e.getCause());
+        }
+    }
+
+    @Test
+    public void testCancelClosesLateResponse() throws Exception {
+        final FakeServer server = new FakeServer();
+        server.ignoreInterrupts = true;
+        final AsyncDownloaderAdapter downloader = new AsyncDownloaderAdapter(server, executor);
+        final Callback callback = new Callback();
+
+        Future<DownloadResponse> future = downloader.downloadAsync(URL, NO_HEADERS, callback);
+        assertTrue(server.started.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        server.release.countDown();
+
+        assertTrue(server.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, callback.called.getCount());
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        executor.shutdown();
+        final AsyncDownloaderAdapter downloader = new AsyncDownloaderAdapter(new FakeServer(), executor);
+        final Callback callback = new Callback();
+
+        Future<DownloadResponse> future = downloader.downloadAsync(URL, NO_HEADERS, callback);
+        assertTrue(future.isDone());
+        assertNotNull(callback.error.get());
+    }
+
+    private static class Callback implements AsyncCallback<DownloadResponse> {
+        final CountDownLatch called = new CountDownLatch(1);
+        final AtomicReference<DownloadResponse> response = new AtomicReference<>();
+        final AtomicReference<Exception> error = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(DownloadResponse result) {
+            response.set(result);
+            called.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            error.set(e);
+            called.countDown();
+        }
+    }
+
+    private static class FakeServer extends FakeStreamingDownloader {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        volatile boolean fail = false;
+        volatile boolean ignoreInterrupts = false;
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                throws IOException {
+            started.countDown();
+            if (fail) throw new IOException("Connection reset");
+            if (ignoreInterrupts) {
+                while (true) {
+                    try {
+                        release.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        // Like a blocking socket read, which doesn't notice the interrupt
+                    }
+                }
+            }
+
+            final byte[] body = ("body of " + siteUrl).getBytes("UTF-8");
+            return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(),
+                    new ByteArrayInputStream(body) {
+                        @Override
+                        public void close() throws IOException {
+                            closed.countDown();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.DownloadResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link CachingDownloader}
+ */
+public class CachingDownloaderTest {
+    private static final String PLAYER = "https://youtube.com/yts/jsbin/player-vflXYZ/en_US/base.js";
+    private static final String WATCH = "https://www.youtube.com/watch?v=abc";
+
+    @Test
+    public void testHitWithinTimeToLive() throws Exception {
+        FakeServer server = new FakeServer();
+        server.put(PLAYER, "var player;", null);
+        CachingDownloader downloader = new CachingDownloader(server);
+
+        assertEquals("var player;", downloader.download(PLAYER));
+        assertEquals("var player;", downloader.download(PLAYER));
+        assertEquals(1, server.requests.size());
+
+        CachingDownloader.Stats stats = downloader.getStats().get("youtube-player");
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        FakeServer server = new FakeServer();
+        server.put(WATCH, "<html>", "\"v1\"");
+        CachingDownloader downloader = new CachingDownloader(server, CachingDownloader.DEFAULT_MAX_BYTES,
+                Collections.singletonList(new CachingDownloader.Policy("watch", "watch\\?", 0)));
+
+        assertEquals("<html>", downloader.download(WATCH));
+        // Expired right away, but not modified
+        assertEquals("<html>", downloader.download(WATCH));
+        assertEquals("\"v1\"", server.requests.get(1).get("If-None-Match"));
+
+        // Modified
+        server.put(WATCH, "<html><body>", "\"v2\"");
+        assertEquals("<html><body>", downloader.download(WATCH));
+
+        CachingDownloader.Stats stats = downloader.getStats().get("watch");
+        assertEquals(0, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getRevalidations());
+    }
+
+    @Test
+    public void testUncachedUrls() throws Exception {
+        FakeServer server = new FakeServer();
+        server.put("https://example.com/", "example", null);
+        CachingDownloader downloader = new CachingDownloader(server);
+
+        downloader.download("https://example.com/");
+        downloader.download("https://example.com/");
+        assertEquals(2, server.requests.size());
+        assertEquals(0, downloader.getSize());
+    }
+
+    @Test
+    public void testRequestHeadersArePartOfTheKey() throws Exception {
+        FakeServer server = new FakeServer();
+        server.put(PLAYER, "var player;", null);
+        CachingDownloader downloader = new CachingDownloader(server);
+
+        downloader.download(PLAYER, "en");
+        downloader.download(PLAYER, "de");
+        downloader.download(PLAYER, "en");
+        assertEquals(2, server.requests.size());
+    }
+
+    @Test
+    public void testByteBudget() throws Exception {
+        FakeServer server = new FakeServer();
+        char[] kilobyte = new char[1024];
+        Arrays.fill(kilobyte, 'a');
+        for (int i = 0; i < 4; i++) {
+            server.put("https://example.com/" + i, new String(kilobyte), null);
+        }
+        CachingDownloader downloader = new CachingDownloader(server, 3 * 1024,
+                Collections.singletonList(new CachingDownloader.Policy("example", "example\\.com", 60000)));
+
+        downloader.download("https://example.com/0");
+        downloader.download("https://example.com/1");
+        downloader.download("https://example.com/2");
+        // Use 0, so 1 is the least recently used
+        downloader.download("https://example.com/0");
+        downloader.download("https://example.com/3");
+        assertEquals(3 * 1024, downloader.getSize());
+        assertEquals(1, downloader.getStats().get("example").getEvictions());
+
+        server.requests.clear();
+        downloader.download("https://example.com/0");
+        downloader.download("https://example.com/1");
+        assertEquals(1, server.requests.size());
+    }
+
+    /**
+     * Serves the bodies put into it, answering 304 if the "If-None-Match" header matches
+     */
+    private static class FakeServer extends FakeStreamingDownloader {
+        private final Map<String, String[]> resources = new HashMap<>();
+        final List<Map<String, String>> requests = new ArrayList<>();
+
+        void put(String url, String body, String eTag) {
+            resources.put(url, new String[]{body, eTag});
+        }
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException {
+            requests.add(requestHeaders);
+            final String[] resource = resources.get(siteUrl);
+            if (resource == null) throw new IOException("404 Not Found");
+
+            final Map<String, List<String>> headers = new HashMap<>();
+            headers.put("Content-Type", Collections.singletonList("text/html; charset=UTF-8"));
+            if (resource[1] != null) {
+                headers.put("ETag", Collections.singletonList(resource[1]));
+                if (resource[1].equals(requestHeaders.get("If-None-Match"))) {
+                    return new DownloadResponse(siteUrl, 304, headers, new ByteArrayInputStream(new byte[0]));
+                }
+            }
+            return new DownloadResponse(siteUrl, 200, headers, new ByteArrayInputStream(resource[0].getBytes("UTF-8")));
+        }
+    }
+}
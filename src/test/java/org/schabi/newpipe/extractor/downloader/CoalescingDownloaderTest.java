@@ -0,0 +1,186 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link CoalescingDownloader}
+ */
+public class CoalescingDownloaderTest {
+    private static final String URL = "https://soundcloud.com";
+
+    @Test
+    public void testConcurrentRequestsShareOneDownload() throws Exception {
+        final SlowServer server = new SlowServer();
+        final CoalescingDownloader downloader = new CoalescingDownloader(server);
+        final int threads = 8;
+        final CountDownLatch waiting = new CountDownLatch(threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        waiting.countDown();
+                        return downloader.download(URL);
+                    }
+                }));
+            }
+            // Let the download finish once every thread asked for it
+            assertTrue(waiting.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            server.release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("body of " + URL, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, server.downloads.get());
+        assertEquals(threads, downloader.getRequestCount());
+        assertEquals(1, downloader.getDownloadCount());
+    }
+
+    @Test
+    public void testNothingKeptAfterwards() throws Exception {
+        SlowServer server = new SlowServer();
+        server.release.countDown();
+        CoalescingDownloader downloader = new CoalescingDownloader(server);
+
+        downloader.download(URL);
+        downloader.download(URL);
+        assertEquals(2, server.downloads.get());
+    }
+
+    @Test
+    public void testErrorIsShared() throws Exception {
+        SlowServer server = new SlowServer();
+        server.release.countDown();
+        CoalescingDownloader downloader = new CoalescingDownloader(server);
+        try {
+            downloader.download("https://example.com/missing");
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            assertEquals("404", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testCancellationOfFirstCallerNotShared() throws Exception {
+        final SlowServer server = new SlowServer();
+        final CoalescingDownloader downloader = new CoalescingDownloader(server);
+        final Deadline leaderDeadline = Deadline.cancellable();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> leader = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    Deadline.setCurrent(leaderDeadline);
+                    return downloader.download(URL);
+                }
+            });
+            assertTrue(server.started.await(5, TimeUnit.SECONDS));
+            final Future<String> waiter = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return downloader.download(URL);
+                }
+            });
+            // Let the waiter block on the download of the leader
+            Thread.sleep(100);
+            leaderDeadline.cancel();
+            server.release.countDown();
+
+            try {
+                leader.get(5, TimeUnit.SECONDS);
+                fail("Expected the leader to be cancelled");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof DeadlineExceededException);
+            }
+            assertEquals("body of " + URL, waiter.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, server.downloads.get());
+    }
+
+    @Test
+    public void testWaiterBoundByOwnDeadline() throws Exception {
+        final SlowServer server = new SlowServer();
+        final CoalescingDownloader downloader = new CoalescingDownloader(server);
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return downloader.download(URL);
+                }
+            });
+            assertTrue(server.started.await(5, TimeUnit.SECONDS));
+
+            final Deadline previous = Deadline.setCurrent(Deadline.after(200, TimeUnit.MILLISECONDS));
+            final long start = System.nanoTime();
+            try {
+                downloader.download(URL);
+                fail("Expected the deadline to be exceeded");
+            } catch (DeadlineExceededException expected) {
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+            } finally {
+                Deadline.setCurrent(previous);
+                server.release.countDown();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.downloads.get());
+    }
+
+    /**
+     * Answers once {@link #release} is counted down
+     */
+    private static class SlowServer extends FakeStreamingDownloader {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger downloads = new AtomicInteger();
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException {
+            downloads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            Deadline.checkCurrent();
+            if (siteUrl.endsWith("missing")) throw new IOException("404");
+            return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(),
+                    new ByteArrayInputStream(("body of " + siteUrl).getBytes("UTF-8")));
+        }
+    }
+}
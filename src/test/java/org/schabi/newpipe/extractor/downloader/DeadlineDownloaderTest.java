@@ -0,0 +1,188 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.junit.After;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+import org.schabi.newpipe.extractor.utils.CallbackTask;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link DeadlineDownloader} and the propagation of the {@link Deadline}
+ */
+public class DeadlineDownloaderTest {
+    private static final String URL = "https://soundcloud.com";
+
+    @After
+    public void tearDown() {
+        Deadline.setCurrent(null);
+    }
+
+    @Test
+    public void testWithoutDeadline() throws Exception {
+        final SlowServer server = new SlowServer();
+        assertEquals("abc", new DeadlineDownloader(server).download(URL));
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    public void testNoRequestAfterDeadline() throws Exception {
+        final SlowServer server = new SlowServer();
+        Deadline.setCurrent(Deadline.after(0, TimeUnit.MILLISECONDS));
+        try {
+            new DeadlineDownloader(server).download(URL);
+            fail("Expected a DeadlineExceededException");
+        } catch (DeadlineExceededException expected) {
+        }
+        assertEquals(0, server.requests.get());
+    }
+
+    @Test
+    public void testCancelWhileReading() throws Exception {
+        final SlowServer server = new SlowServer();
+        server.delay = 10000;
+        final Deadline deadline = Deadline.cancellable();
+        Deadline.setCurrent(deadline);
+
+        final DownloadResponse response = new DeadlineDownloader(server).downloadStream(URL,
+                Collections.<String, String>emptyMap());
+        final InputStream body = response.getInputStream();
+        assertEquals('a', body.read());
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.reading.await();
+                } catch (InterruptedException ignored) {
+                }
+                deadline.cancel();
+            }
+        }.start();
+
+        final long start = System.currentTimeMillis();
+        try {
+            body.read();
+            fail("Expected a DeadlineExceededException");
+        } catch (DeadlineExceededException expected) {
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testDeadlineKeptOnExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Deadline deadline = Deadline.cancellable();
+            Deadline.setCurrent(deadline);
+            Future<Deadline> seen = CallbackTask.submit(executor, new Callable<Deadline>() {
+                @Override
+                public Deadline call() {
+                    return Deadline.current();
+                }
+            }, null);
+            assertSame(deadline, seen.get());
+
+            deadline.cancel();
+            Future<Deadline> cancelled = CallbackTask.submit(executor, new Callable<Deadline>() {
+                @Override
+                public Deadline call() {
+                    return Deadline.current();
+                }
+            }, null);
+            try {
+                cancelled.get();
+                fail("Expected an ExecutionException");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof DeadlineExceededException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRunnableSkippedAfterDeadline() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final Runnable count = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        final Deadline deadline = Deadline.cancellable();
+        Deadline.setCurrent(deadline);
+        final Runnable wrapped = Deadline.wrap(count);
+        wrapped.run();
+        assertEquals(1, runs.get());
+
+        deadline.cancel();
+        wrapped.run();
+        Deadline.wrap(count).run();
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testRemainingTime() throws Exception {
+        assertEquals(Long.MAX_VALUE, Deadline.cancellable().getRemainingMillis());
+        final Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        assertTrue(deadline.getRemainingMillis() > 50000);
+        assertFalse(deadline.isOver());
+        deadline.cancel();
+        assertEquals(0, deadline.getRemainingMillis());
+        assertTrue(deadline.isOver());
+    }
+
+    /**
+     * Hands out "abc", waiting the given delay before each byte after the first one unless closed
+     */
+    private static class SlowServer extends FakeStreamingDownloader {
+        final AtomicInteger requests = new AtomicInteger();
+        final CountDownLatch reading = new CountDownLatch(1);
+        volatile long delay = 0;
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) {
+            requests.incrementAndGet();
+            return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(), new InputStream() {
+                private final CountDownLatch closed = new CountDownLatch(1);
+                private int position = 0;
+
+                @Override
+                public int read() throws IOException {
+                    if (position >= 3) return -1;
+                    if (position > 0 && delay > 0) {
+                        reading.countDown();
+                        try {
+                            if (closed.await(delay, TimeUnit.MILLISECONDS)) throw new IOException("Socket closed");
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                    return "abc".charAt(position++);
+                }
+
+                @Override
+                public void close() {
+                    closed.countDown();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.RequestFlow;
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+import org.schabi.newpipe.extractor.exceptions.HttpResponseException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link EgressPoolDownloader}
+ */
+public class EgressPoolDownloaderTest {
+    private static final String URL = "https://www.youtube.com/embed/dQw4w9WgXcQ";
+
+    @Test
+    public void testCaptchaQuarantinesRoute() throws Exception {
+        final FakeRoute blocked = new FakeRoute("blocked");
+        blocked.code = 429;
+        final FakeRoute good = new FakeRoute("good");
+        final EgressPoolDownloader downloader = pool(blocked, good);
+
+        int challenges = 0;
+        for (int i = 0; i < 20; i++) {
+            try {
+                assertEquals("good", downloader.download(URL));
+            } catch (ReCaptchaException e) {
+                challenges++;
+            }
+        }
+        assertEquals(1, challenges);
+        assertEquals(1, blocked.requests.get());
+        assertTrue(downloader.getStats().get(0).getQuarantine() > 0);
+        assertEquals(0, downloader.getStats().get(1).getQuarantine());
+    }
+
+    @Test
+    public void testErrorsQuarantineRoute() throws Exception {
+        final FakeRoute broken = new FakeRoute("broken");
+        broken.failure = new IOException("Connection refused");
+        final EgressPoolDownloader downloader = pool(broken);
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                downloader.download(URL);
+                fail("Expected an IOException");
+            } catch (IOException expected) {
+            }
+        }
+        assertTrue(downloader.getStats().get(0).getQuarantine() > 0);
+        // Still used when no other route is left
+        broken.failure = null;
+        assertEquals("broken", downloader.download(URL));
+    }
+
+    @Test
+    public void testFailuresOfCallerNotCounted() throws Exception {
+        final FakeRoute route = new FakeRoute("route");
+        final EgressPoolDownloader downloader = pool(route);
+
+        final IOException[] failures = {new HttpResponseException(404, "Not Found"),
+                new DeadlineExceededException("Extraction cancelled")};
+        for (IOException failure : failures) {
+            route.failure = failure;
+            for (int i = 0; i < 10; i++) {
+                try {
+                    downloader.download(URL);
+                    fail("Expected an IOException");
+                } catch (IOException expected) {
+                    assertSame(failure, expected);
+                }
+            }
+        }
+        assertEquals(0, downloader.getStats().get(0).getQuarantine());
+        assertEquals(0, downloader.getStats().get(0).getErrorRate(), 0);
+    }
+
+    @Test
+    public void testFailedRouteNotPreferred() throws Exception {
+        final FakeRoute broken = new FakeRoute("broken");
+        broken.failure = new IOException("Connection refused");
+        final FakeRoute good = new FakeRoute("good");
+        good.delay = 5;
+        final EgressPoolDownloader downloader = pool(broken, good);
+
+        for (int i = 0; i < 20; i++) {
+            try {
+                downloader.download(URL);
+            } catch (IOException ignored) {
+            }
+        }
+        // Only tried once, then scored like the other routes instead of as the fastest
+        assertEquals(1, broken.requests.get());
+    }
+
+    @Test
+    public void testPrefersFasterRoute() throws Exception {
+        final FakeRoute slow = new FakeRoute("slow");
+        slow.delay = 30;
+        final FakeRoute fast = new FakeRoute("fast");
+        final EgressPoolDownloader downloader = pool(slow, fast);
+
+        for (int i = 0; i < 20; i++) {
+            downloader.download(URL);
+        }
+        assertTrue("slow route used " + slow.requests.get() + " times", slow.requests.get() <= 1);
+        assertTrue(downloader.getStats().get(0).getLatency() >= 30);
+    }
+
+    @Test
+    public void testFlowIsSticky() throws Exception {
+        final FakeRoute[] routes = new FakeRoute[4];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = new FakeRoute("route " + i);
+        }
+        final EgressPoolDownloader downloader = pool(routes);
+
+        final Set<String> usedRoutes = new HashSet<>();
+        for (int flow = 0; flow < 10; flow++) {
+            final RequestFlow previous = RequestFlow.setCurrent(new RequestFlow());
+            try {
+                final String route = downloader.download(URL);
+                for (int i = 0; i < 5; i++) {
+                    assertEquals(route, downloader.download(URL));
+                }
+                usedRoutes.add(route);
+            } finally {
+                RequestFlow.setCurrent(previous);
+            }
+        }
+        assertTrue(usedRoutes.size() > 1);
+    }
+
+    private static EgressPoolDownloader pool(FakeRoute... fakes) {
+        final EgressPoolDownloader.Route[] routes = new EgressPoolDownloader.Route[fakes.length];
+        for (int i = 0; i < fakes.length; i++) {
+            routes[i] = new EgressPoolDownloader.Route(fakes[i].name, fakes[i]);
+        }
+        return new EgressPoolDownloader(Arrays.asList(routes));
+    }
+
+    /**
+     * Answers with its name
+     */
+    private static class FakeRoute extends FakeStreamingDownloader {
+        final String name;
+        final AtomicInteger requests = new AtomicInteger();
+        volatile int code = 200;
+        volatile long delay = 0;
+        volatile IOException failure = null;
+
+        FakeRoute(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                throws IOException {
+            requests.incrementAndGet();
+            if (failure != null) throw failure;
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return new DownloadResponse(siteUrl, code, Collections.<String, List<String>>emptyMap(),
+                    new ByteArrayInputStream(name.getBytes("UTF-8")));
+        }
+    }
+}
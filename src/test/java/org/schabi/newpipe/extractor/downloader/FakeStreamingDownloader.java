@@ -0,0 +1,37 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.StreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Base of the fake downloaders of the tests, which only implement {@link #downloadStream(String, Map)}.
+ * <p>
+ * The string methods read the body of the response, like {@link ForwardingDownloader#downloadThroughStream}.
+ */
+public abstract class FakeStreamingDownloader implements StreamingDownloader {
+
+    @Override
+    public String download(String siteUrl) throws IOException, ReCaptchaException {
+        return download(siteUrl, Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public String download(String siteUrl, String language) throws IOException, ReCaptchaException {
+        return download(siteUrl, Collections.singletonMap("Accept-Language", language));
+    }
+
+    @Override
+    public String download(String siteUrl, Map<String, String> customProperties) throws IOException, ReCaptchaException {
+        final DownloadResponse response = downloadStream(siteUrl, customProperties);
+        try {
+            return response.readBody();
+        } finally {
+            response.close();
+        }
+    }
+}
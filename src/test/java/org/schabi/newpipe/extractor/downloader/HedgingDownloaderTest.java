@@ -0,0 +1,159 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.RequestFlow;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link HedgingDownloader}
+ */
+public class HedgingDownloaderTest {
+    private static final String URL = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+
+    private ExecutorService executor;
+    private FakeServer primary;
+    private FakeServer secondary;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        primary = new FakeServer("primary");
+        secondary = new FakeServer("secondary");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSlowRequestIsHedged() throws Exception {
+        final HedgingDownloader downloader = new HedgingDownloader(primary, secondary, executor,
+                new HedgingDownloader.Settings(0.9, 0.5, 20));
+        warmUp(downloader);
+        assertEquals(20, downloader.getHedgeDelay(URL));
+
+        primary.delay = 5000;
+        final long start = System.currentTimeMillis();
+        assertEquals("secondary", downloader.download(URL));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+
+        final HedgingDownloader.Stats stats = downloader.getStats();
+        assertEquals(1, stats.getHedges());
+        assertEquals(1, stats.getHedgeWins());
+        // The slow request was aborted
+        assertTrue(primary.aborted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        final HedgingDownloader downloader = new HedgingDownloader(primary, secondary, executor,
+                new HedgingDownloader.Settings(0.9, 0, 20));
+        warmUp(downloader);
+
+        primary.delay = 200;
+        assertEquals("primary", downloader.download(URL));
+        assertEquals(0, downloader.getStats().getHedges());
+        assertEquals(1, downloader.getStats().getOverBudget());
+        assertEquals(0, secondary.requests.get());
+    }
+
+    @Test
+    public void testNotHedgedWithoutHistory() throws Exception {
+        final HedgingDownloader downloader = new HedgingDownloader(primary, secondary, executor,
+                new HedgingDownloader.Settings(0.9, 1, 20));
+        assertEquals(-1, downloader.getHedgeDelay(URL));
+
+        primary.delay = 200;
+        assertEquals("primary", downloader.download(URL));
+        assertEquals(0, secondary.requests.get());
+    }
+
+    @Test
+    public void testFailedHedgeFallsBackToOriginal() throws Exception {
+        final HedgingDownloader downloader = new HedgingDownloader(primary, secondary, executor,
+                new HedgingDownloader.Settings(0.9, 0.5, 20));
+        warmUp(downloader);
+
+        primary.delay = 300;
+        secondary.fail = true;
+        assertEquals("primary", downloader.download(URL));
+        assertEquals(1, downloader.getStats().getHedges());
+        assertEquals(0, downloader.getStats().getHedgeWins());
+    }
+
+    @Test
+    public void testAttemptsKeepFlow() throws Exception {
+        final HedgingDownloader downloader = new HedgingDownloader(primary, secondary, executor,
+                new HedgingDownloader.Settings(0.9, 0.5, 20));
+        warmUp(downloader);
+
+        primary.delay = 300;
+        final RequestFlow flow = new RequestFlow();
+        final RequestFlow previous = RequestFlow.setCurrent(flow);
+        try {
+            assertEquals("secondary", downloader.download(URL));
+        } finally {
+            RequestFlow.setCurrent(previous);
+        }
+        assertSame(flow, primary.flow);
+        assertSame(flow, secondary.flow);
+    }
+
+    private void warmUp(HedgingDownloader downloader) throws Exception {
+        for (int i = 0; i < 40; i++) {
+            assertEquals("primary", downloader.download(URL));
+        }
+        assertEquals(0, secondary.requests.get());
+    }
+
+    private static class FakeServer extends FakeStreamingDownloader {
+        private final String name;
+        final AtomicInteger requests = new AtomicInteger();
+        final CountDownLatch aborted = new CountDownLatch(1);
+        volatile long delay = 0;
+        volatile boolean fail = false;
+        /**
+         * The flow of the last request
+         */
+        volatile RequestFlow flow;
+
+        FakeServer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                throws IOException {
+            requests.incrementAndGet();
+            flow = RequestFlow.current();
+            if (fail) throw new IOException("Connection reset");
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    aborted.countDown();
+                    throw new InterruptedIOException();
+                }
+            }
+            return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(),
+                    new ByteArrayInputStream(name.getBytes("UTF-8")));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link RateLimitingDownloader}, against a local server which answers with 429 when told to.
+ */
+public class RateLimitingDownloaderTest {
+    private HttpServer server;
+    private String url;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger tooManyRequests = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private volatile long responseDelay = 0;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                final int nowRunning = running.incrementAndGet();
+                int max;
+                while (nowRunning > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, nowRunning)) ;
+                try {
+                    if (responseDelay > 0) Thread.sleep(responseDelay);
+                } catch (InterruptedException ignored) {
+                }
+                running.decrementAndGet();
+
+                final boolean tooMany = tooManyRequests.getAndDecrement() > 0;
+                final byte[] body = (tooMany ? "slow down" : "ok").getBytes("UTF-8");
+                exchange.sendResponseHeaders(tooMany ? 429 : 200, body.length);
+                final OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/watch";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testBackoffAfterTooManyRequests() throws Exception {
+        final RateLimitingDownloader downloader = new RateLimitingDownloader(new HttpDownloader(),
+                new RateLimitingDownloader.Limits(100, 10, 4, 300));
+
+        assertEquals("ok", downloader.download(url));
+        assertFalse(downloader.isThrottled(url));
+
+        tooManyRequests.set(1);
+        try {
+            downloader.download(url);
+            fail("Expected a ReCaptchaException");
+        } catch (ReCaptchaException expected) {
+        }
+        assertTrue(downloader.isThrottled(url));
+        assertTrue(downloader.isThrottled());
+        assertEquals(50, downloader.getCurrentRate(url), 0.001);
+
+        // Held back until the backoff is over
+        final long start = System.currentTimeMillis();
+        assertEquals("ok", downloader.download(url));
+        assertTrue(System.currentTimeMillis() - start >= 250);
+        assertFalse(downloader.isThrottled(url));
+        assertEquals(60, downloader.getCurrentRate(url), 0.001);
+    }
+
+    @Test
+    public void testConsecutiveBackoffsDouble() throws Exception {
+        final RateLimitingDownloader downloader = new RateLimitingDownloader(new HttpDownloader(),
+                new RateLimitingDownloader.Limits(100, 10, 4, 100));
+
+        tooManyRequests.set(2);
+        for (int i = 0; i < 2; i++) {
+            try {
+                downloader.download(url);
+                fail("Expected a ReCaptchaException");
+            } catch (ReCaptchaException expected) {
+            }
+        }
+
+        // 100ms, then 200ms
+        final long start = System.currentTimeMillis();
+        assertEquals("ok", downloader.download(url));
+        assertTrue(System.currentTimeMillis() - start >= 150);
+        assertEquals(35, downloader.getCurrentRate(url), 0.001);
+    }
+
+    @Test
+    public void testConcurrencyCap() throws Exception {
+        final RateLimitingDownloader downloader = new RateLimitingDownloader(new HttpDownloader(),
+                new RateLimitingDownloader.Limits(1000, 100, 2, 100));
+        responseDelay = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return downloader.download(url);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals("ok", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8, requests.get());
+        assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        final RateLimitingDownloader downloader = new RateLimitingDownloader(new HttpDownloader(),
+                new RateLimitingDownloader.Limits(20, 2, 4, 100));
+
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < 6; i++) {
+            downloader.download(url);
+        }
+        // 2 from the burst, then one every 50ms
+        assertTrue(System.currentTimeMillis() - start >= 180);
+    }
+
+    @Test
+    public void testSuccessStartedBeforeThrottleKeepsBackoff() throws Exception {
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        final CountDownLatch slowRelease = new CountDownLatch(1);
+        final RateLimitingDownloader downloader = new RateLimitingDownloader(new HttpDownloader() {
+            @Override
+            public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                    throws IOException, ReCaptchaException {
+                if (siteUrl.endsWith("/slow")) {
+                    slowStarted.countDown();
+                    try {
+                        slowRelease.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                return super.downloadStream(siteUrl, requestHeaders);
+            }
+        }, new RateLimitingDownloader.Limits(100, 10, 4, 200));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> slow = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return downloader.download(url.replace("/watch", "/slow"));
+                }
+            });
+            assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+            tooManyRequests.set(1);
+            try {
+                downloader.download(url);
+                fail("Expected a ReCaptchaException");
+            } catch (ReCaptchaException expected) {
+            }
+            slowRelease.countDown();
+            assertEquals("ok", slow.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The late success of the slow request doesn't reset the backoff, so the next one is 400ms
+        tooManyRequests.set(1);
+        try {
+            downloader.download(url);
+            fail("Expected a ReCaptchaException");
+        } catch (ReCaptchaException expected) {
+        }
+        final long start = System.currentTimeMillis();
+        assertEquals("ok", downloader.download(url));
+        assertTrue(System.currentTimeMillis() - start >= 350);
+    }
+
+    @Test
+    public void testWaitBoundedByDeadline() throws Exception {
+        final RateLimitingDownloader downloader = new RateLimitingDownloader(new HttpDownloader(),
+                new RateLimitingDownloader.Limits(100, 10, 4, TimeUnit.MINUTES.toMillis(1)));
+        tooManyRequests.set(1);
+        try {
+            downloader.download(url);
+            fail("Expected a ReCaptchaException");
+        } catch (ReCaptchaException expected) {
+        }
+
+        final Deadline previous = Deadline.setCurrent(Deadline.after(2, TimeUnit.SECONDS));
+        final long start = System.currentTimeMillis();
+        try {
+            downloader.download(url);
+            fail("Expected a DeadlineExceededException");
+        } catch (DeadlineExceededException expected) {
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Plain http counterpart of the test downloader, which only supports https
+     */
+    private static class HttpDownloader extends FakeStreamingDownloader {
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                throws IOException, ReCaptchaException {
+            HttpURLConnection con = (HttpURLConnection) new URL(siteUrl).openConnection();
+            for (Map.Entry<String, String> pair : requestHeaders.entrySet()) {
+                con.setRequestProperty(pair.getKey(), pair.getValue());
+            }
+            final InputStream body;
+            try {
+                body = con.getInputStream();
+            } catch (IOException e) {
+                if (con.getResponseCode() == 429) {
+                    throw new ReCaptchaException("reCaptcha Challenge requested");
+                }
+                throw e;
+            }
+            return new DownloadResponse(siteUrl, con.getResponseCode(), con.getHeaderFields(), body);
+        }
+    }
+}
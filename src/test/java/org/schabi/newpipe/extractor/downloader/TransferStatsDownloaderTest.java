@@ -0,0 +1,99 @@
+package org.schabi.newpipe.extractor.downloader;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.DownloadResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link TransferStatsDownloader}
+ */
+public class TransferStatsDownloaderTest {
+    private static final String WATCH_URL = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+    private static final String API_URL = "https://api.soundcloud.com/tracks/1";
+
+    @Test
+    public void testCountsPerEndpointClass() throws Exception {
+        final TransferStatsDownloader downloader = new TransferStatsDownloader(new GzipServer());
+
+        final String page = downloader.download(WATCH_URL);
+        downloader.download(WATCH_URL);
+        downloader.download(API_URL);
+        downloader.download("https://example.com");
+
+        final TransferStatsDownloader.Stats watch = downloader.getStats().get("youtube-watch");
+        assertEquals(2, watch.getResponses());
+        assertEquals(2 * page.length(), watch.getDecodedBytes());
+        assertTrue(watch.getWireBytes() > 0);
+        assertTrue(watch.getSavedBytes() > watch.getDecodedBytes() / 2);
+
+        assertEquals(1, downloader.getStats().get("soundcloud-api").getResponses());
+        assertEquals(1, downloader.getStats().get(TransferStatsDownloader.OTHER).getResponses());
+        assertEquals(0, downloader.getStats().get("youtube-player").getResponses());
+    }
+
+    @Test
+    public void testCountedOnceWhenClosed() throws Exception {
+        final TransferStatsDownloader downloader = new TransferStatsDownloader(new GzipServer());
+
+        final DownloadResponse response = downloader.downloadStream(API_URL, Collections.<String, String>emptyMap());
+        response.readBody();
+        assertEquals(0, downloader.getStats().get("soundcloud-api").getResponses());
+        response.close();
+        response.close();
+        assertEquals(1, downloader.getStats().get("soundcloud-api").getResponses());
+    }
+
+    @Test
+    public void testKeepsEncodingOfResponse() throws Exception {
+        final TransferStatsDownloader downloader = new TransferStatsDownloader(new DeadlineDownloader(new GzipServer()));
+        final Deadline previous = Deadline.setCurrent(Deadline.after(1, TimeUnit.MINUTES));
+        final DownloadResponse response;
+        final String body;
+        try {
+            response = downloader.downloadStream(API_URL, Collections.<String, String>emptyMap());
+            body = response.readBody();
+            response.close();
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+
+        assertEquals("gzip", response.getContentEncoding());
+        assertEquals(body.length(), response.getDecodedBytes());
+        assertTrue(response.getWireBytes() > 0);
+        assertTrue(response.getWireBytes() < response.getDecodedBytes() / 2);
+    }
+
+    /**
+     * Answers every request with a repetitive, gzip compressed body
+     */
+    private static class GzipServer extends FakeStreamingDownloader {
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                throws IOException {
+            final StringBuilder body = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                body.append("body of ").append(siteUrl).append('\n');
+            }
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            final GZIPOutputStream output = new GZIPOutputStream(compressed);
+            output.write(body.toString().getBytes("UTF-8"));
+            output.close();
+
+            final Map<String, List<String>> headers =
+                    Collections.singletonMap("Content-Encoding", Collections.singletonList("gzip"));
+            return DownloadResponse.fromRawBody(siteUrl, 200, headers,
+                    new ByteArrayInputStream(compressed.toByteArray()));
+        }
+    }
+}
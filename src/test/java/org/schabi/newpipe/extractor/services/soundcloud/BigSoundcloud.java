@@ -0,0 +1,109 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.downloader.FakeStreamingDownloader;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves a 200kB home page whose app script is linked at the end of the head, and a 1MB app script
+ * containing the id "big" in its middle. Keeps track of how the bodies it handed out were read.
+ */
+class BigSoundcloud extends FakeStreamingDownloader {
+    static final String HOME_URL = "https://soundcloud.com";
+    static final String SCRIPT_URL = "https://a-v2.sndcdn.com/assets/app-1.js";
+
+    final byte[] homePage;
+    final byte[] script;
+    final List<Body> bodies = Collections.synchronizedList(new ArrayList<Body>());
+
+    BigSoundcloud() throws IOException {
+        final StringBuilder home = new StringBuilder("<html><head><meta charset=\"utf-8\">");
+        while (home.length() < 50 * 1024) home.append("<link rel=\"preload\" href=\"/assets/x.css\">");
+        home.append("<script crossorigin src=\"" + SCRIPT_URL + "\"></script></head><body>");
+        while (home.length() < 200 * 1024) home.append("<div class=\"item\"><a href=\"/track\">Track</a></div>");
+        home.append("</body></html>");
+        homePage = home.toString().getBytes("UTF-8");
+
+        final StringBuilder js = new StringBuilder();
+        while (js.length() < 512 * 1024) js.append("function f(a,b){return a+b};");
+        js.append("var c={x:1,client_id:\"big\",y:2};");
+        while (js.length() < 1024 * 1024) js.append("function g(a,b){return a*b};");
+        script = js.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * The body of a response, counting the bytes read from it
+     */
+    static class Body extends FilterInputStream {
+        final String url;
+        final int length;
+        long bytesRead = 0;
+        boolean endReached = false;
+        boolean closed = false;
+
+        Body(String url, byte[] content) {
+            super(new ByteArrayInputStream(content));
+            this.url = url;
+            this.length = content.length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read == -1) {
+                endReached = true;
+            } else {
+                bytesRead++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                endReached = true;
+            } else {
+                bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    long getBytesRead() {
+        long total = 0;
+        synchronized (bodies) {
+            for (Body body : bodies) {
+                total += body.bytesRead;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException {
+        final Body body;
+        if (siteUrl.equals(HOME_URL)) {
+            body = new Body(siteUrl, homePage);
+        } else if (siteUrl.equals(SCRIPT_URL)) {
+            body = new Body(siteUrl, script);
+        } else {
+            throw new IOException("404 Not Found");
+        }
+        bodies.add(body);
+        return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(), body);
+    }
+}
@@ -0,0 +1,61 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.schabi.newpipe.extractor.utils.Parser;
+
+/**
+ * Compares the streaming search for the client_id with the previous one, which parsed the whole home page
+ * with Jsoup and downloaded the whole app script, on the pages of {@link BigSoundcloud}.
+ * <p>
+ * Not a test, run it with {@code gradle benchmark -Pharness=} followed by the name of this class.
+ */
+public class SoundcloudClientIdBenchmark {
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws Exception {
+        final BigSoundcloud soundcloud = new BigSoundcloud();
+
+        // Warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            check(SoundcloudClientIdManager.findClientId(soundcloud));
+            check(findClientIdWithDom(soundcloud));
+        }
+
+        soundcloud.bodies.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            SoundcloudClientIdManager.findClientId(soundcloud);
+        }
+        final long streamingTime = System.nanoTime() - start;
+        final long streamingBytes = soundcloud.getBytesRead();
+
+        soundcloud.bodies.clear();
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            findClientIdWithDom(soundcloud);
+        }
+        final long domTime = System.nanoTime() - start;
+        final long domBytes = soundcloud.getBytesRead();
+
+        System.out.println(String.format("Streaming search: %d kB read, %.2f ms to the id",
+                streamingBytes / ITERATIONS / 1024, streamingTime / 1e6 / ITERATIONS));
+        System.out.println(String.format("Full download:    %d kB read, %.2f ms to the id",
+                domBytes / ITERATIONS / 1024, domTime / 1e6 / ITERATIONS));
+    }
+
+    private static void check(String id) {
+        if (!"big".equals(id)) throw new AssertionError("Found " + id);
+    }
+
+    /**
+     * The search as it was done before
+     */
+    private static String findClientIdWithDom(BigSoundcloud downloader) throws Exception {
+        final Document doc = Jsoup.parse(downloader.download(BigSoundcloud.HOME_URL), BigSoundcloud.HOME_URL);
+        final Element jsElement = doc.select("script[src^=https://a-v2.sndcdn.com/assets/app]").first();
+        final String js = downloader.download(jsElement.attr("src"));
+        return Parser.matchGroup1(",client_id:\"(.*?)\"", js);
+    }
+}
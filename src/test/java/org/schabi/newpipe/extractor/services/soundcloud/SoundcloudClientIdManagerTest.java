@@ -0,0 +1,265 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.downloader.FakeStreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.HttpResponseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link SoundcloudClientIdManager}
+ */
+public class SoundcloudClientIdManagerTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testStoredIdUsedWhenValid() throws Exception {
+        final File file = File.createTempFile("client_id", ".properties");
+        try {
+            final SoundcloudClientIdManager.FileStore store = new SoundcloudClientIdManager.FileStore(file);
+            store.save(new SoundcloudClientIdManager.ClientId("stored", System.currentTimeMillis()));
+
+            final FakeSoundcloud soundcloud = new FakeSoundcloud("fresh", "stored");
+            final SoundcloudClientIdManager manager =
+                    new SoundcloudClientIdManager(store, SoundcloudClientIdManager.DEFAULT_REFRESH_AGE, DIRECT);
+
+            assertEquals("stored", manager.get(soundcloud));
+            assertEquals("stored", manager.get(soundcloud));
+            // Only the validation, neither the home page nor the script
+            assertEquals(1, soundcloud.requests.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRejectedStoredIdReplaced() throws Exception {
+        final File file = File.createTempFile("client_id", ".properties");
+        try {
+            final SoundcloudClientIdManager.FileStore store = new SoundcloudClientIdManager.FileStore(file);
+            store.save(new SoundcloudClientIdManager.ClientId("revoked", System.currentTimeMillis()));
+
+            final FakeSoundcloud soundcloud = new FakeSoundcloud("fresh", "fresh");
+            final SoundcloudClientIdManager manager =
+                    new SoundcloudClientIdManager(store, SoundcloudClientIdManager.DEFAULT_REFRESH_AGE, DIRECT);
+
+            assertEquals("fresh", manager.get(soundcloud));
+            assertEquals("fresh", store.load().getId());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRefreshAfterRejection() throws Exception {
+        final FakeSoundcloud soundcloud = new FakeSoundcloud("first", "first");
+        final SoundcloudClientIdManager manager = new SoundcloudClientIdManager();
+        assertEquals("first", manager.get(soundcloud));
+
+        soundcloud.currentId = "second";
+        soundcloud.validIds.remove("first");
+        final String url = "https://api.soundcloud.com/tracks/1?client_id=first&limit=10";
+        assertEquals("https://api.soundcloud.com/tracks/1?client_id=second&limit=10",
+                manager.refreshUrl(soundcloud, url));
+        assertEquals("second", manager.get(soundcloud));
+
+        // Another request rejected with the old id doesn't cause another search
+        final int requests = soundcloud.requests.size();
+        assertEquals("second", manager.refresh(soundcloud, "first"));
+        assertEquals(requests, soundcloud.requests.size());
+
+        assertNull(manager.refreshUrl(soundcloud, "https://api.soundcloud.com/tracks/1"));
+    }
+
+    @Test
+    public void testValidIdKeptWhenRequestRejected() throws Exception {
+        final FakeSoundcloud soundcloud = new FakeSoundcloud("first", "first");
+        final SoundcloudClientIdManager previous = SoundcloudParsingHelper.getClientIdManager();
+        final SoundcloudClientIdManager manager = new SoundcloudClientIdManager();
+        SoundcloudParsingHelper.setClientIdManager(manager);
+        try {
+            assertEquals("first", manager.get(soundcloud));
+            soundcloud.currentId = "second";
+
+            for (int i = 0; i < 2; i++) {
+                try {
+                    SoundcloudParsingHelper.downloadJson(soundcloud,
+                            "https://api.soundcloud.com/tracks/2?client_id=first");
+                    fail("Expected the private track to be rejected");
+                } catch (HttpResponseException expected) {
+                    assertEquals(403, expected.getResponseCode());
+                }
+            }
+            // Only checked the id, without searching for a new one
+            assertEquals(1, Collections.frequency(soundcloud.requests, "https://soundcloud.com"));
+            assertEquals("first", manager.get(soundcloud));
+        } finally {
+            SoundcloudParsingHelper.setClientIdManager(previous);
+        }
+    }
+
+    @Test
+    public void testRefreshInBackgroundWhenOld() throws Exception {
+        final FakeSoundcloud soundcloud = new FakeSoundcloud("first", "first");
+        final SoundcloudClientIdManager manager =
+                new SoundcloudClientIdManager(SoundcloudClientIdManager.NO_STORE, -1, DIRECT);
+        assertEquals("first", manager.get(soundcloud));
+
+        soundcloud.currentId = "second";
+        // The old id is still returned, the new one is used from then on
+        assertEquals("first", manager.get(soundcloud));
+        assertEquals("second", manager.get(soundcloud));
+    }
+
+    @Test
+    public void testRefreshWithoutExecutor() throws Exception {
+        final FakeSoundcloud soundcloud = new FakeSoundcloud("first", "first");
+        final SoundcloudClientIdManager manager =
+                new SoundcloudClientIdManager(SoundcloudClientIdManager.NO_STORE, -1, null);
+        assertEquals("first", manager.get(soundcloud));
+
+        soundcloud.currentId = "second";
+        final int requests = soundcloud.requests.size();
+        assertEquals("first", manager.get(soundcloud));
+        // Searched on this thread, before returning
+        assertEquals(requests + 2, soundcloud.requests.size());
+        assertEquals("second", manager.get(soundcloud));
+    }
+
+    @Test
+    public void testApiCallRetriedOnce() throws Exception {
+        final FakeSoundcloud soundcloud = new FakeSoundcloud("first", "first");
+        final SoundcloudClientIdManager previous = SoundcloudParsingHelper.getClientIdManager();
+        final SoundcloudClientIdManager manager = new SoundcloudClientIdManager();
+        SoundcloudParsingHelper.setClientIdManager(manager);
+        try {
+            assertEquals("first", manager.get(soundcloud));
+            soundcloud.currentId = "second";
+            soundcloud.validIds.remove("first");
+            soundcloud.validIds.add("second");
+
+            assertEquals("second", SoundcloudParsingHelper.downloadJson(soundcloud,
+                    "https://api.soundcloud.com/tracks/1?client_id=first").getString("client_id"));
+            assertEquals("second", manager.get(soundcloud));
+        } finally {
+            SoundcloudParsingHelper.setClientIdManager(previous);
+        }
+    }
+
+    @Test
+    public void testRejectionThrownByDownloader() throws Exception {
+        final FakeSoundcloud soundcloud = new FakeSoundcloud("first", "first");
+        soundcloud.throwErrors = true;
+        final SoundcloudClientIdManager previous = SoundcloudParsingHelper.getClientIdManager();
+        final SoundcloudClientIdManager manager = new SoundcloudClientIdManager();
+        SoundcloudParsingHelper.setClientIdManager(manager);
+        try {
+            assertEquals("first", manager.get(soundcloud));
+            soundcloud.currentId = "second";
+            soundcloud.validIds.remove("first");
+            soundcloud.validIds.add("second");
+
+            assertEquals("second", SoundcloudParsingHelper.downloadJson(soundcloud,
+                    "https://api.soundcloud.com/tracks/1?client_id=first").getString("client_id"));
+        } finally {
+            SoundcloudParsingHelper.setClientIdManager(previous);
+        }
+
+        // Only the status counts, not how the message reads
+        assertFalse(SoundcloudClientIdManager.isRejected(new IOException("401 Unauthorized")));
+        assertTrue(SoundcloudClientIdManager.isRejected(new HttpResponseException(403, "Forbidden")));
+    }
+
+    @Test
+    public void testFindFirstAcrossChunks() throws Exception {
+        final StringBuilder js = new StringBuilder();
+        while (js.length() < 8192 - 10) js.append("var x=1;");
+        js.append("{a:1,client_id:\"split\",b:2}");
+        assertEquals("split", SoundcloudClientIdManager.findFirst(new StringReader(js.toString()),
+                Pattern.compile(",client_id:\"([^\"]{0,256})\"")));
+        assertNull(SoundcloudClientIdManager.findFirst(new StringReader("client_id=none"),
+                Pattern.compile(",client_id:\"([^\"]{0,256})\"")));
+    }
+
+    @Test
+    public void testTransfersCutOffAtMatch() throws Exception {
+        final BigSoundcloud soundcloud = new BigSoundcloud();
+        assertEquals("big", SoundcloudClientIdManager.findClientId(soundcloud));
+
+        assertEquals(2, soundcloud.bodies.size());
+        assertEquals(BigSoundcloud.HOME_URL, soundcloud.bodies.get(0).url);
+        assertEquals(BigSoundcloud.SCRIPT_URL, soundcloud.bodies.get(1).url);
+        for (BigSoundcloud.Body body : soundcloud.bodies) {
+            assertTrue(body.url + " not closed", body.closed);
+            assertFalse(body.url + " read to its end", body.endReached);
+            // Only up to a buffer past the match, which is at a quarter of the home page and half of the script
+            assertTrue(body.url + ": " + body.bytesRead + " bytes read", body.bytesRead < body.length * 3 / 4);
+        }
+    }
+
+    /**
+     * Serves a home page linking to an app script containing {@link #currentId}, and answers the
+     * validation and api requests with 401 if their id is not one of {@link #validIds}.
+     * The track 2 is private, and always answered with 403.
+     * The errors are thrown instead of returned if {@link #throwErrors} is set.
+     */
+    private static class FakeSoundcloud extends FakeStreamingDownloader {
+        final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+        final Set<String> validIds = new HashSet<>();
+        volatile String currentId;
+        volatile boolean throwErrors = false;
+
+        FakeSoundcloud(String currentId, String validId) {
+            this.currentId = currentId;
+            validIds.add(validId);
+            validIds.add(currentId);
+        }
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException {
+            requests.add(siteUrl);
+            if (siteUrl.startsWith("https://api-v2.soundcloud.com/?client_id=")) {
+                final String id = siteUrl.substring(siteUrl.indexOf('=') + 1);
+                return respond(siteUrl, validIds.contains(id) ? 404 : 401, "{}");
+            } else if (siteUrl.equals("https://soundcloud.com")) {
+                return respond(siteUrl, 200, "<html><head>"
+                        + "<script src=\"https://a-v2.sndcdn.com/assets/app-1.js\"></script></head></html>");
+            } else if (siteUrl.equals("https://a-v2.sndcdn.com/assets/app-1.js")) {
+                return respond(siteUrl, 200, "var a={x:1,client_id:\"" + currentId + "\",y:2};");
+            } else if (siteUrl.startsWith("https://api.soundcloud.com/tracks/2?client_id=")) {
+                return respond(siteUrl, 403, "{}");
+            } else if (siteUrl.startsWith("https://api.soundcloud.com/tracks/1?client_id=")) {
+                final String id = siteUrl.substring(siteUrl.indexOf('=') + 1);
+                return validIds.contains(id)
+                        ? respond(siteUrl, 200, "{\"client_id\":\"" + id + "\"}")
+                        : respond(siteUrl, 401, "{}");
+            }
+            throw new IOException("404 Not Found");
+        }
+
+        private DownloadResponse respond(String url, int code, String body) throws IOException {
+            if (throwErrors && code >= 400) throw new HttpResponseException(code, code + " " + url);
+            return new DownloadResponse(url, code, Collections.<String, List<String>>emptyMap(),
+                    new ByteArrayInputStream(body.getBytes("UTF-8")));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import com.grack.nanojson.JsonArray;
+import com.grack.nanojson.JsonObject;
+import com.grack.nanojson.JsonParser;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamInfoItemsCollector;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link SoundcloudCollectionReader}
+ */
+public class SoundcloudCollectionReaderTest {
+
+    @Test
+    public void testKeepsOnlyUsedFields() throws Exception {
+        final JsonObject response = read(page(2), SoundcloudCollectionReader.TRACK);
+        assertEquals("https://api-v2.soundcloud.com/users/1/tracks?offset=2&limit=2", response.getString("next_href"));
+
+        final JsonArray collection = response.getArray("collection");
+        assertEquals(2, collection.size());
+        final JsonObject track = collection.getObject(1);
+        assertEquals("Track \"1\" ]}\u00e9/", track.getString("title"));
+        assertEquals(183000, track.getNumber("duration").intValue());
+        assertEquals(12345678901L, track.getNumber("playback_count").longValue());
+        assertNull(track.getString("artwork_url"));
+        assertFalse(track.has("media"));
+        assertFalse(track.has("publisher_metadata"));
+        assertEquals("uploader", track.getObject("user").getString("username"));
+        assertFalse(track.getObject("user").has("visuals"));
+
+        final StreamInfoItemsCollector collector = new StreamInfoItemsCollector(1);
+        collector.commit(new SoundcloudStreamInfoItemExtractor(track));
+        final StreamInfoItem item = collector.getItemList().get(0);
+        assertEquals("https://soundcloud.com/uploader/track1", item.getUrl());
+        assertEquals(183, item.getDuration());
+        assertEquals("https://soundcloud.com/uploader", item.getUploaderUrl());
+        assertEquals("2018-01-02", item.getUploadDate());
+    }
+
+    @Test
+    public void testKeptFieldsParsedLikeJsonParser() throws Exception {
+        final String page = page(3);
+        final JsonArray full = JsonParser.object().from(page).getArray("collection");
+        final JsonArray compact = read(page, SoundcloudCollectionReader.ANY).getArray("collection");
+
+        for (int i = 0; i < full.size(); i++) {
+            final JsonObject fullTrack = full.getObject(i);
+            final JsonObject track = compact.getObject(i);
+            for (String key : new String[]{"kind", "permalink_url", "title", "created_at", "artwork_url"}) {
+                assertEquals(key, fullTrack.get(key), track.get(key));
+            }
+            assertEquals(fullTrack.getNumber("duration").longValue(), track.getNumber("duration").longValue());
+            assertEquals(fullTrack.getObject("user").getString("avatar_url"), track.getObject("user").getString("avatar_url"));
+        }
+    }
+
+    @Test
+    public void testChartEntries() throws Exception {
+        final String page = "{\"collection\":[{\"score\":1.5e3,\"track\":" + track(0) + "}],\"genre\":\"all\"}";
+        final JsonObject entry = read(page, SoundcloudCollectionReader.CHART_ENTRY).getArray("collection").getObject(0);
+        assertEquals(1, entry.size());
+        assertEquals("Track \"0\" ]}\u00e9/", entry.getObject("track").getString("title"));
+    }
+
+    @Test
+    public void testArrayResponse() throws Exception {
+        final JsonObject response = read(" [ {\"username\":\"a\",\"city\":null} , {\"username\":\"b\"} ] ",
+                SoundcloudCollectionReader.USER);
+        assertEquals(2, response.getArray("collection").size());
+        assertEquals("b", response.getArray("collection").getObject(1).getString("username"));
+        assertFalse(response.has("next_href"));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        for (String malformed : new String[]{"", "{\"collection\":[{\"title\":\"x\"}", "{\"collection\":[{\"media\":{]}]}",
+                "{\"collection\":[{\"title\":\"\\x\"}]}", "{\"collection\":[{\"duration\":-}]}", "{\"next_href\":null}"}) {
+            try {
+                read(malformed, SoundcloudCollectionReader.TRACK);
+                fail("No exception for " + malformed);
+            } catch (ParsingException expected) {
+            }
+        }
+    }
+
+    private static JsonObject read(String json, SoundcloudCollectionReader.Fields itemFields) throws Exception {
+        return SoundcloudCollectionReader.read(new StringReader(json), itemFields);
+    }
+
+    /**
+     * A page of tracks shaped like the ones of api-v2, with the blocks the list doesn't use
+     */
+    private static String page(int size) {
+        final StringBuilder page = new StringBuilder("{\"collection\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) page.append(",\n");
+            page.append(track(i));
+        }
+        return page.append("],\"next_href\":\"https:\\/\\/api-v2.soundcloud.com\\/users\\/1\\/tracks?offset=").append(size)
+                .append("&limit=").append(size).append("\",\"query_urn\":null}").toString();
+    }
+
+    private static String track(int i) {
+        return "{\"artwork_url\":null,\"comment_count\":4,\"created_at\":\"2018-01-02T03:04:05Z\","
+                + "\"description\":\"A description with {braces} and [brackets] and \\\"quotes\\\"\\n\","
+                + "\"duration\":183000,\"embeddable_by\":\"all\",\"genre\":\"Electronic\",\"id\":" + (1000 + i) + ","
+                + "\"kind\":\"track\",\"media\":{\"transcodings\":["
+                + "{\"url\":\"https://api-v2.soundcloud.com/media/soundcloud:tracks:" + i + "/stream/hls\","
+                + "\"preset\":\"mp3_0_0\",\"duration\":183000,\"snipped\":false,\"format\":{\"protocol\":\"hls\",\"mime_type\":\"audio/mpeg\"},\"quality\":\"sq\"},"
+                + "{\"url\":\"https://api-v2.soundcloud.com/media/soundcloud:tracks:" + i + "/stream/progressive\","
+                + "\"preset\":\"mp3_0_0\",\"duration\":183000,\"snipped\":false,\"format\":{\"protocol\":\"progressive\",\"mime_type\":\"audio/mpeg\"},\"quality\":\"sq\"},"
+                + "{\"url\":\"https://api-v2.soundcloud.com/media/soundcloud:tracks:" + i + "/stream/hls-opus\","
+                + "\"preset\":\"opus_0_0\",\"duration\":183000,\"snipped\":false,\"format\":{\"protocol\":\"hls\",\"mime_type\":\"audio/ogg; codecs=\\\"opus\\\"\"},\"quality\":\"sq\"}]},"
+                + "\"permalink_url\":\"https://soundcloud.com/uploader/track" + i + "\",\"playback_count\":12345678901,"
+                + "\"publisher_metadata\":{\"id\":" + i + ",\"urn\":\"soundcloud:tracks:" + i + "\",\"artist\":\"Uploader\",\"contains_music\":true,\"isrc\":\"XX0000000000\"},"
+                + "\"streamable\":true,\"tag_list\":\"a b c\",\"title\":\"Track \\\"" + i + "\\\" ]}\\u00e9\\/\","
+                + "\"user\":{\"avatar_url\":\"https://i1.sndcdn.com/avatars-000-large.jpg\",\"first_name\":\"\",\"full_name\":\"Up Loader\","
+                + "\"id\":1,\"kind\":\"user\",\"last_modified\":\"2018-01-01T00:00:00Z\",\"permalink\":\"uploader\","
+                + "\"permalink_url\":\"https://soundcloud.com/uploader\",\"uri\":\"https://api.soundcloud.com/users/1\","
+                + "\"urn\":\"soundcloud:users:1\",\"username\":\"uploader\",\"verified\":false,\"city\":\"Berlin\",\"country_code\":\"DE\","
+                + "\"badges\":{\"pro\":false,\"pro_unlimited\":true,\"verified\":false},"
+                + "\"visuals\":{\"urn\":\"soundcloud:users:1\",\"enabled\":true,\"visuals\":[{\"urn\":\"x\",\"entry_time\":0,\"visual_url\":\"https://i1.sndcdn.com/visuals.jpg\"}]}},"
+                + "\"visual\":null,\"waveform_url\":\"https://wave.sndcdn.com/" + i + "_m.json\"}";
+    }
+}
@@ -0,0 +1,233 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import com.grack.nanojson.JsonArray;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.channel.ChannelInfoItem;
+import org.schabi.newpipe.extractor.channel.ChannelInfoItemsCollector;
+import org.schabi.newpipe.extractor.downloader.FakeStreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link SoundcloudPager}
+ */
+public class SoundcloudPagerTest {
+    private static final String API_URL = "https://api.soundcloud.com/users/1/followings?client_id=id&limit=20&linked_partitioning=1";
+
+    @Test
+    public void testPageSize() {
+        assertEquals("https://x?limit=200&a=1", SoundcloudPager.withPageSize("https://x?limit=20&a=1", 2500));
+        assertEquals("https://x?a=1&limit=50", SoundcloudPager.withPageSize("https://x?a=1&limit=20", 50));
+        assertEquals("https://x?limit=20", SoundcloudPager.withPageSize("https://x?limit=20", 15));
+        assertEquals("https://x?a=1", SoundcloudPager.withPageSize("https://x?a=1", 100));
+    }
+
+    @Test
+    public void testOffsetPagesFetchedConcurrently() throws Exception {
+        final FakeApi api = new FakeApi(1000, true);
+        final SoundcloudPager previous = SoundcloudParsingHelper.getPager();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        SoundcloudParsingHelper.setPager(new SoundcloudPager(3, executor));
+        try {
+            final ChannelInfoItemsCollector collector = new ChannelInfoItemsCollector(1);
+            final String next = SoundcloudParsingHelper.getUsersFromApiMinItems(api, 700, collector, API_URL);
+
+            assertItemsInOrder(collector.getItemList(), 800);
+            assertEquals(800L, SoundcloudPager.getOffset(next));
+            assertEquals(4, api.requests.size());
+            assertTrue(api.requests.get(0).contains("limit=200"));
+            assertTrue("at most 3 pages at a time: " + api.maxConcurrent, api.maxConcurrent.get() <= 3);
+            assertTrue("pages not fetched concurrently", api.maxConcurrent.get() > 1);
+        } finally {
+            SoundcloudParsingHelper.setPager(previous);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFetchedInTurnWithoutExecutor() throws Exception {
+        final FakeApi api = new FakeApi(1000, true);
+        final ChannelInfoItemsCollector collector = new ChannelInfoItemsCollector(1);
+        final SoundcloudPager previous = SoundcloudParsingHelper.getPager();
+        SoundcloudParsingHelper.setPager(new SoundcloudPager(3, null));
+        final String next;
+        try {
+            next = SoundcloudParsingHelper.getUsersFromApiMinItems(api, 700, collector, API_URL);
+        } finally {
+            SoundcloudParsingHelper.setPager(previous);
+        }
+
+        assertItemsInOrder(collector.getItemList(), 800);
+        assertEquals(800L, SoundcloudPager.getOffset(next));
+        assertEquals(4, api.requests.size());
+        assertEquals(1, api.maxConcurrent.get());
+        assertEquals(Collections.singleton(Thread.currentThread()), api.threads);
+    }
+
+    @Test
+    public void testPagesAheadClosedOnCancel() throws Exception {
+        final FakeApi api = new FakeApi(1000, true);
+        api.blockAfterFirstPage = true;
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final long start = System.currentTimeMillis();
+        try {
+            new SoundcloudPager(3, executor).fetch(api, API_URL, 700, SoundcloudCollectionReader.USER, null,
+                    new SoundcloudPager.PageConsumer() {
+                        @Override
+                        public int consume(JsonArray collection) throws ParsingException {
+                            // Fail once the pages started ahead are being read
+                            while (api.blockedOpened.get() < 3 && System.currentTimeMillis() - start < 1000) {
+                                Thread.yield();
+                            }
+                            throw new ParsingException("Could not commit");
+                        }
+                    });
+            fail("Expected a ParsingException");
+        } catch (ParsingException expected) {
+        } finally {
+            executor.shutdown();
+        }
+
+        // Interrupting the threads doesn't unblock the reads, closing the responses does
+        assertTrue(executor.awaitTermination(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start < 3000);
+        assertEquals(3, api.blockedOpened.get());
+        assertEquals(3, api.blockedClosed.get());
+    }
+
+    @Test
+    public void testCursorPagesFetchedInTurn() throws Exception {
+        final FakeApi api = new FakeApi(450, false);
+        final ChannelInfoItemsCollector collector = new ChannelInfoItemsCollector(1);
+        final String next = SoundcloudParsingHelper.getUsersFromApiMinItems(api, 2500, collector, API_URL);
+
+        assertItemsInOrder(collector.getItemList(), 450);
+        assertEquals("", next);
+        assertEquals(3, api.requests.size());
+        assertEquals(1, api.maxConcurrent.get());
+    }
+
+    @Test
+    public void testStopsOnShortLastPage() throws Exception {
+        final FakeApi api = new FakeApi(250, true);
+        final ChannelInfoItemsCollector collector = new ChannelInfoItemsCollector(1);
+        final String next = SoundcloudParsingHelper.getUsersFromApiMinItems(api, 2500, collector, API_URL);
+
+        assertItemsInOrder(collector.getItemList(), 250);
+        assertEquals("", next);
+    }
+
+    private static void assertItemsInOrder(List<ChannelInfoItem> items, int expectedSize) {
+        assertEquals(expectedSize, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals("user" + i, items.get(i).getName());
+        }
+    }
+
+    /**
+     * Serves a followings collection of the given size, paged by offset or by an opaque cursor
+     */
+    private static class FakeApi extends FakeStreamingDownloader {
+        private static final Pattern POSITION = Pattern.compile("[?&](?:offset|cursor)=(\\d+)");
+        private static final Pattern LIMIT = Pattern.compile("[?&]limit=(\\d+)");
+
+        final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        /**
+         * Whether the bodies of the pages after the first block until closed
+         */
+        volatile boolean blockAfterFirstPage = false;
+        final AtomicInteger blockedOpened = new AtomicInteger();
+        final AtomicInteger blockedClosed = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final int size;
+        private final boolean byOffset;
+
+        FakeApi(int size, boolean byOffset) {
+            this.size = size;
+            this.byOffset = byOffset;
+        }
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException {
+            requests.add(siteUrl);
+            threads.add(Thread.currentThread());
+            final int running = concurrent.incrementAndGet();
+            maxConcurrent.set(Math.max(maxConcurrent.get(), running));
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted");
+            } finally {
+                concurrent.decrementAndGet();
+            }
+
+            final Matcher position = POSITION.matcher(siteUrl);
+            final int start = position.find() ? Integer.parseInt(position.group(1)) : 0;
+            final Matcher limitMatcher = LIMIT.matcher(siteUrl);
+            final int limit = limitMatcher.find() ? Integer.parseInt(limitMatcher.group(1)) : 50;
+            final int end = Math.min(start + limit, size);
+
+            final StringBuilder body = new StringBuilder("{\"collection\":[");
+            for (int i = start; i < end; i++) {
+                if (i > start) body.append(',');
+                body.append("{\"username\":\"user").append(i)
+                        .append("\",\"permalink_url\":\"https://soundcloud.com/user").append(i).append("\"}");
+            }
+            body.append(']');
+            if (end < size) {
+                body.append(",\"next_href\":\"https://api.soundcloud.com/users/1/followings?")
+                        .append(byOffset ? "offset=" : "cursor=").append(end)
+                        .append("&limit=").append(limit).append("&client_id=id&linked_partitioning=1\"");
+            }
+            body.append('}');
+            if (blockAfterFirstPage && start > 0) {
+                blockedOpened.incrementAndGet();
+                return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(), new InputStream() {
+                    private final CountDownLatch closed = new CountDownLatch(1);
+
+                    @Override
+                    public int read() throws IOException {
+                        // Like a blocking socket read, which doesn't care about interrupts
+                        final long end = System.currentTimeMillis() + 5000;
+                        while (closed.getCount() > 0 && System.currentTimeMillis() < end) {
+                            try {
+                                closed.await(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                            } catch (InterruptedException ignored) {
+                            }
+                        }
+                        throw new IOException("Stream closed");
+                    }
+
+                    @Override
+                    public void close() {
+                        if (closed.getCount() > 0) blockedClosed.incrementAndGet();
+                        closed.countDown();
+                    }
+                });
+            }
+            return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(),
+                    new ByteArrayInputStream(body.toString().getBytes("UTF-8")));
+        }
+    }
+}
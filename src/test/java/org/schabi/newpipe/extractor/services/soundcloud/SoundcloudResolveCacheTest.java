@@ -0,0 +1,225 @@
+package org.schabi.newpipe.extractor.services.soundcloud;
+
+import com.grack.nanojson.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.Downloader;
+import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.downloader.FakeStreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+import org.schabi.newpipe.extractor.exceptions.HttpResponseException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link SoundcloudResolveCache}
+ */
+public class SoundcloudResolveCacheTest {
+    private static final String PERMALINK = "https://soundcloud.com/user/track";
+
+    private SoundcloudClientIdManager previousManager;
+    private SoundcloudResolveCache previousCache;
+
+    @Test
+    public void testLookupByUrlVariantsAndId() {
+        final SoundcloudResolveCache cache = new SoundcloudResolveCache();
+        cache.put("https://m.soundcloud.com/User/Track/?in=user/sets/x", track());
+
+        for (String url : new String[]{PERMALINK, "http://www.soundcloud.com/user/track/", "https://soundcloud.com/user/track#t=1",
+                "https://api.soundcloud.com/tracks/123"}) {
+            final SoundcloudResolveCache.Entry entry = cache.get(url);
+            assertNotNull(url, entry);
+            assertEquals("123", entry.getId());
+            assertEquals(PERMALINK, entry.getCanonicalUrl());
+            assertEquals("https://api.soundcloud.com/tracks/123", entry.getApiUrl());
+        }
+        assertNull(cache.get("https://soundcloud.com/user/other"));
+        assertNull(cache.get("https://api.soundcloud.com/users/123"));
+    }
+
+    @Test
+    public void testMergesPartialKnowledge() {
+        final SoundcloudResolveCache cache = new SoundcloudResolveCache();
+        // What cleanUrl, the embed player and the api learn, in that order
+        cache.put("https://soundcloud.com/user/track?utm_source=x", null, null, PERMALINK);
+        cache.put(PERMALINK, null, "123", null);
+        assertEquals("123", cache.get("https://soundcloud.com/user/track?utm_source=x").getId());
+        assertNull(cache.get(PERMALINK).getApiUrl());
+
+        cache.put("https://api.soundcloud.com/tracks/123", null, null, PERMALINK);
+        assertEquals("https://api.soundcloud.com/tracks/123", cache.get(PERMALINK).getApiUrl());
+    }
+
+    @Test
+    public void testBounded() {
+        final SoundcloudResolveCache cache = new SoundcloudResolveCache(4);
+        for (int i = 0; i < 10; i++) {
+            cache.put("https://soundcloud.com/user/track" + i, "track", Integer.toString(i), null);
+        }
+        assertEquals(4, cache.size());
+        assertNotNull(cache.get("https://soundcloud.com/user/track9"));
+        assertNull(cache.get("https://soundcloud.com/user/track0"));
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        final SoundcloudResolveCache cache = new SoundcloudResolveCache();
+        cache.put("https://soundcloud.com/user/track?in=x", track());
+        cache.put("https://soundcloud.com/other", null, "7", null);
+
+        final StringWriter written = new StringWriter();
+        cache.writeTo(written);
+
+        final SoundcloudResolveCache read = new SoundcloudResolveCache();
+        read.readFrom(new StringReader(written.toString() + "malformed line\n"));
+        assertEquals("123", read.get("https://api.soundcloud.com/tracks/123").getId());
+        assertEquals(PERMALINK, read.get("https://soundcloud.com/user/track").getCanonicalUrl());
+        assertEquals("7", read.get("https://soundcloud.com/other").getId());
+    }
+
+    @Test
+    public void testResolveForSkipsResolveOnceKnown() throws Exception {
+        final FakeApi api = new FakeApi();
+        final Downloader previousDownloader = NewPipe.getDownloader();
+        NewPipe.init(api);
+        try {
+            assertEquals(123, SoundcloudParsingHelper.resolveFor(api, PERMALINK).getInt("id"));
+            assertEquals(123, SoundcloudParsingHelper.resolveFor(api, PERMALINK + "?in=x").getInt("id"));
+            assertEquals(PERMALINK, SoundcloudParsingHelper.resolveCanonicalUrl(PERMALINK + "/"));
+
+            assertEquals(1, api.requests("https://api.soundcloud.com/resolve"));
+            assertEquals(1, api.requests("https://api.soundcloud.com/tracks/123"));
+        } finally {
+            NewPipe.init(previousDownloader);
+        }
+    }
+
+    @Test
+    public void testResolveForForgetsOnlyWhatIsWrong() throws Exception {
+        final FakeApi api = new FakeApi();
+        SoundcloudParsingHelper.resolveFor(api, PERMALINK);
+
+        // Failures which don't say anything about the resource
+        for (IOException failure : new IOException[]{new HttpResponseException(500, "500 Internal Server Error"),
+                new IOException("Connection reset")}) {
+            api.failure = failure;
+            try {
+                SoundcloudParsingHelper.resolveFor(api, PERMALINK);
+                fail("Expected " + failure);
+            } catch (IOException expected) {
+                assertSame(failure, expected);
+            }
+            assertNotNull(SoundcloudParsingHelper.getResolveCache().get(PERMALINK));
+        }
+
+        // Neither the time nor the resource is over when the extraction is
+        final int resolveRequests = api.requests("https://api.soundcloud.com/resolve?");
+        api.failure = new DeadlineExceededException("Extraction deadline exceeded");
+        try {
+            SoundcloudParsingHelper.resolveFor(api, PERMALINK);
+            fail("Expected a DeadlineExceededException");
+        } catch (DeadlineExceededException expected) {
+        }
+        assertEquals(resolveRequests, api.requests("https://api.soundcloud.com/resolve?"));
+        assertNotNull(SoundcloudParsingHelper.getResolveCache().get(PERMALINK));
+
+        api.failure = new HttpResponseException(404, "404 Not Found");
+        try {
+            SoundcloudParsingHelper.resolveFor(api, PERMALINK);
+            fail("Expected a HttpResponseException");
+        } catch (HttpResponseException expected) {
+        }
+        assertNull(SoundcloudParsingHelper.getResolveCache().get(PERMALINK));
+    }
+
+    @Test
+    public void testResolveForForgetsOtherKind() throws Exception {
+        final FakeApi api = new FakeApi();
+        SoundcloudParsingHelper.getResolveCache().put(PERMALINK, "playlist", "123", PERMALINK);
+
+        final JsonObject resource = SoundcloudParsingHelper.resolveFor(api, PERMALINK);
+        assertEquals("track", resource.getString("kind"));
+        assertEquals(1, api.requests("https://api.soundcloud.com/resolve?"));
+        assertEquals("track", SoundcloudParsingHelper.getResolveCache().get(PERMALINK).getKind());
+    }
+
+    @Before
+    public void setUp() {
+        previousManager = SoundcloudParsingHelper.getClientIdManager();
+        previousCache = SoundcloudParsingHelper.getResolveCache();
+        SoundcloudParsingHelper.setClientIdManager(new SoundcloudClientIdManager(new SoundcloudClientIdManager.Store() {
+            @Nullable
+            @Override
+            public SoundcloudClientIdManager.ClientId load() {
+                return new SoundcloudClientIdManager.ClientId("id", System.currentTimeMillis());
+            }
+
+            @Override
+            public void save(@Nonnull SoundcloudClientIdManager.ClientId clientId) {
+            }
+        }, SoundcloudClientIdManager.DEFAULT_REFRESH_AGE, null));
+        SoundcloudParsingHelper.setResolveCache(new SoundcloudResolveCache());
+    }
+
+    @After
+    public void tearDown() {
+        SoundcloudParsingHelper.setClientIdManager(previousManager);
+        SoundcloudParsingHelper.setResolveCache(previousCache);
+    }
+
+    private static JsonObject track() {
+        final JsonObject track = new JsonObject();
+        track.put("kind", "track");
+        track.put("id", 123);
+        track.put("permalink_url", PERMALINK);
+        return track;
+    }
+
+    /**
+     * Answers the client_id validation, and the resolve and track endpoints with the same track
+     * or with {@link #failure} if it is set
+     */
+    private static class FakeApi extends FakeStreamingDownloader {
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+        @Nullable
+        volatile IOException failure;
+
+        int requests(String prefix) {
+            int count = 0;
+            for (String request : new ArrayList<>(requests)) {
+                if (request.startsWith(prefix)) count++;
+            }
+            return count;
+        }
+
+        @Override
+        public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders) throws IOException {
+            requests.add(siteUrl);
+            final String body;
+            if (siteUrl.startsWith("https://api-v2.soundcloud.com/?client_id=")) {
+                throw new HttpResponseException(404, "404 Not Found");
+            } else if (siteUrl.startsWith("https://api.soundcloud.com/resolve?")
+                    || siteUrl.startsWith("https://api.soundcloud.com/tracks/123?")) {
+                if (failure != null) throw failure;
+                body = "{\"kind\":\"track\",\"id\":123,\"permalink_url\":\"" + PERMALINK + "\"}";
+            } else {
+                throw new HttpResponseException(404, "404 Not Found");
+            }
+            return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(),
+                    new ByteArrayInputStream(body.getBytes("UTF-8")));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Differential test for {@link JavaSignatureDecrypter}: every recorded player in
+ * src/test/resources/youtube/players has its signatures decrypted by both
+ * the {@link JavaSignatureDecrypter} and the {@link RhinoSignatureDecrypter}, the results must be the same.
+ */
+public class SignatureDecrypterTest {
+    private static final File PLAYERS_DIRECTORY = new File("src/test/resources/youtube/players");
+    private static final String SIGNATURE_CHARS = "0123456789ABCDEF.";
+
+    @Test
+    public void testJavaAndRhinoDecryptersAgree() throws Exception {
+        File[] players = PLAYERS_DIRECTORY.listFiles();
+        assertNotNull(players);
+        assertTrue(players.length > 0);
+
+        Random random = new Random(42);
+        for (File player : players) {
+            DecryptionCode code = DecryptionCode.extractFrom(readFile(player));
+            SignatureDecrypter rhino = code.createScriptDecrypter();
+            JavaSignatureDecrypter java = JavaSignatureDecrypter.analyze(code);
+            if (java == null) {
+                // Not recognized, the rhino fallback has to be used
+                assertTrue(player.getName(), code.createDecrypter() instanceof RhinoSignatureDecrypter);
+                continue;
+            }
+
+            for (int i = 0; i < 500; i++) {
+                String signature = randomSignature(random, 80 + random.nextInt(10));
+                assertEquals(player.getName() + ": " + signature, rhino.decrypt(signature), java.decrypt(signature));
+            }
+        }
+    }
+
+    @Test
+    public void testRecognizedPlayers() throws Exception {
+        assertNotNull(JavaSignatureDecrypter.analyze(extract("player-dot-calls.js")));
+        assertNotNull(JavaSignatureDecrypter.analyze(extract("player-dollar-names.js")));
+        assertNull(JavaSignatureDecrypter.analyze(extract("player-unknown-operation.js")));
+    }
+
+    @Test
+    public void testCreateDecrypterPrefersJava() throws Exception {
+        assertTrue(extract("player-dot-calls.js").createDecrypter() instanceof JavaSignatureDecrypter);
+        assertTrue(extract("player-unknown-operation.js").createDecrypter() instanceof RhinoSignatureDecrypter);
+    }
+
+    private static DecryptionCode extract(String playerName) throws Exception {
+        return DecryptionCode.extractFrom(readFile(new File(PLAYERS_DIRECTORY, playerName)));
+    }
+
+    private static String randomSignature(Random random, int length) {
+        StringBuilder signature = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            signature.append(SIGNATURE_CHARS.charAt(random.nextInt(SIGNATURE_CHARS.length())));
+        }
+        return signature.toString();
+    }
+
+    private static String readFile(File file) throws Exception {
+        StringBuilder builder = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) builder.append(buffer, 0, read);
+        } finally {
+            reader.close();
+        }
+        return builder.toString();
+    }
+}
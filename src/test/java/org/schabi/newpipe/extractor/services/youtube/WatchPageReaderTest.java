@@ -0,0 +1,114 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link WatchPageReader}
+ */
+public class WatchPageReaderTest {
+    private static final String CONFIG = "{\"args\":{\"title\":\"a } \\\" {\",\"length_seconds\":\"42\"},"
+            + "\"assets\":{\"js\":\"/yts/jsbin/player.js\"}}";
+    private static final String PAGE = "<html><head><script>var ytplayer = ytplayer || {};"
+            + "if (ytplayer.config) {ytplayer.config.loaded = true;}"
+            + "ytplayer.config = " + CONFIG + ";ytplayer.load = function() {};</script></head>"
+            + "<body><div id=\"watch7-content\"></div></body></html>";
+
+    @Test
+    public void testFindPlayerConfig() throws IOException {
+        WatchPageReader reader = new WatchPageReader();
+        reader.read(new StringReader(PAGE));
+        assertEquals(CONFIG, reader.getPlayerConfig());
+        assertEquals(PAGE, reader.getPage());
+    }
+
+    @Test
+    public void testFindPlayerConfigInSmallChunks() throws IOException {
+        for (int chunkSize = 1; chunkSize < 20; chunkSize++) {
+            WatchPageReader reader = new WatchPageReader();
+            reader.read(new ChunkedReader(PAGE, chunkSize));
+            assertEquals("chunk size " + chunkSize, CONFIG, reader.getPlayerConfig());
+            assertEquals(PAGE, reader.getPage());
+        }
+    }
+
+    @Test
+    public void testAgeRestrictionInSmallChunks() throws IOException {
+        final String restricted = "<html><head><meta property=\"og:restrictions:age\" content=\"18+\">"
+                + "</head><body></body></html>";
+        for (int chunkSize = 1; chunkSize < 20; chunkSize++) {
+            WatchPageReader reader = new WatchPageReader();
+            reader.read(new ChunkedReader(restricted, chunkSize));
+            assertTrue("chunk size " + chunkSize, reader.isAgeRestricted());
+
+            reader = new WatchPageReader();
+            reader.read(new ChunkedReader(PAGE, chunkSize));
+            assertFalse("chunk size " + chunkSize, reader.isAgeRestricted());
+        }
+    }
+
+    @Test
+    public void testNoPlayerConfig() throws IOException {
+        WatchPageReader reader = new WatchPageReader();
+        reader.read(new StringReader("<html><h1 id=\"unavailable-message\">Unavailable</h1></html>"));
+        assertFalse(reader.hasPlayerConfig());
+        assertNull(reader.getPlayerConfig());
+    }
+
+    @Test
+    public void testReadUntilPlayerConfig() throws IOException {
+        final StringBuilder longPage = new StringBuilder(PAGE);
+        for (int i = 0; i < 10000; i++) {
+            longPage.append("<div class=\"related\"></div>");
+        }
+        final ChunkedReader input = new ChunkedReader(longPage.toString(), 16);
+
+        WatchPageReader reader = new WatchPageReader();
+        reader.readUntilPlayerConfig(input);
+        assertEquals(CONFIG, reader.getPlayerConfig());
+        assertFalse(reader.isComplete());
+        assertTrue(reader.getPage().startsWith(PAGE.substring(0, PAGE.indexOf(CONFIG) + CONFIG.length())));
+        // Stopped within the chunk containing the end of the config
+        assertTrue(input.position <= PAGE.indexOf(CONFIG) + CONFIG.length() + 16);
+    }
+
+    @Test
+    public void testReadUntilMissingPlayerConfig() throws IOException {
+        WatchPageReader reader = new WatchPageReader();
+        reader.readUntilPlayerConfig(new StringReader("<html><h1 id=\"unavailable-message\">Unavailable</h1></html>"));
+        assertFalse(reader.hasPlayerConfig());
+        assertTrue(reader.isComplete());
+    }
+
+    /**
+     * Hands out the text in chunks of the given size, like a slow connection would
+     */
+    private static class ChunkedReader extends Reader {
+        private final String text;
+        private final int chunkSize;
+        private int position = 0;
+
+        ChunkedReader(String text, int chunkSize) {
+            this.text = text;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= text.length()) return -1;
+            int count = Math.min(Math.min(length, chunkSize), text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.DownloadResponse;
+import org.schabi.newpipe.extractor.ExtractionContext;
+import org.schabi.newpipe.extractor.downloader.FakeStreamingDownloader;
+import org.schabi.newpipe.extractor.exceptions.ContentNotAvailableException;
+import org.schabi.newpipe.extractor.stream.StreamExtractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.schabi.newpipe.extractor.ServiceList.YouTube;
+
+/**
+ * Test for the watch pages without player config, on which {@link YoutubeStreamExtractor} reports why
+ */
+public class YoutubeStreamExtractorUnavailableTest {
+    private static final String URL = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+
+    @Test
+    public void testPageWithoutMessage() throws Exception {
+        final StreamExtractor extractor = extractor("<html><body><form action=\"https://consent.youtube.com/s\">"
+                + "</form></body></html>");
+        try {
+            extractor.fetchPage();
+            fail("Expected a ContentNotAvailableException");
+        } catch (ContentNotAvailableException expected) {
+        }
+        assertNull(extractor.getErrorMessage());
+    }
+
+    @Test
+    public void testMessageWithoutSubmessage() throws Exception {
+        final StreamExtractor extractor = extractor("<html><body><h1 id=\"unavailable-message\">"
+                + "This video is unavailable.</h1></body></html>");
+        try {
+            extractor.fetchPage();
+            fail("Expected a ContentNotAvailableException");
+        } catch (ContentNotAvailableException expected) {
+        }
+        assertEquals("This video is unavailable.", extractor.getErrorMessage());
+    }
+
+    private static StreamExtractor extractor(final String page) throws Exception {
+        return YouTube.getStreamExtractor(URL, new ExtractionContext(new FakeStreamingDownloader() {
+            @Override
+            public DownloadResponse downloadStream(String siteUrl, Map<String, String> requestHeaders)
+                    throws IOException {
+                return new DownloadResponse(siteUrl, 200, Collections.<String, List<String>>emptyMap(),
+                        new ByteArrayInputStream(page.getBytes("UTF-8")));
+            }
+        }));
+    }
+}
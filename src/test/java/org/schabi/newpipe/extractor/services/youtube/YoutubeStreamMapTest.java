@@ -0,0 +1,82 @@
+package org.schabi.newpipe.extractor.services.youtube;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+
+import javax.annotation.Nonnull;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the decoding of the stream maps in {@link YoutubeStreamExtractor}
+ */
+public class YoutubeStreamMapTest {
+    private static final SignatureDecrypter REVERSING_DECRYPTER = new SignatureDecrypter() {
+        @Nonnull
+        @Override
+        public String decrypt(String encryptedSig) {
+            return new StringBuilder(encryptedSig).reverse().toString();
+        }
+    };
+
+    private Map<ItagItem.ItagType, Map<String, ItagItem>> table;
+
+    @Before
+    public void setUp() {
+        table = new EnumMap<>(ItagItem.ItagType.class);
+        for (ItagItem.ItagType itagType : ItagItem.ItagType.values()) {
+            table.put(itagType, new LinkedHashMap<String, ItagItem>());
+        }
+    }
+
+    @Test
+    public void testSimilarStreamsSkipped() throws Exception {
+        decode(entry(22, "https://a.googlevideo.com/1", null),
+                entry(22, "https://a.googlevideo.com/2", null),
+                entry(18, "https://a.googlevideo.com/3", "cba"));
+
+        final Map<String, ItagItem> videos = table.get(ItagItem.ItagType.VIDEO);
+        assertEquals(2, videos.size());
+        assertEquals(22, videos.get("https://a.googlevideo.com/1").id);
+        assertEquals(18, videos.get("https://a.googlevideo.com/3&signature=abc").id);
+    }
+
+    @Test
+    public void testMalformedEntryDoesNotHideSimilarStream() throws Exception {
+        decode("itag=22&type=video%2Fmp4",
+                "itag=abc&url=https%3A%2F%2Fa.googlevideo.com%2F0",
+                entry(22, "https://a.googlevideo.com/1", null));
+
+        final Map<String, ItagItem> videos = table.get(ItagItem.ItagType.VIDEO);
+        assertEquals(new ArrayList<>(videos.keySet()).toString(), 1, videos.size());
+        assertEquals(22, videos.get("https://a.googlevideo.com/1").id);
+    }
+
+    @Test
+    public void testUnwantedTypesSkipped() throws Exception {
+        YoutubeStreamExtractor.decodeStreamMap(entry(140, "https://a.googlevideo.com/audio", null),
+                EnumSet.of(ItagItem.ItagType.VIDEO), table, REVERSING_DECRYPTER);
+        assertTrue(table.get(ItagItem.ItagType.AUDIO).isEmpty());
+    }
+
+    private void decode(String... entries) throws ParsingException {
+        final StringBuilder map = new StringBuilder();
+        for (String entry : entries) {
+            if (map.length() > 0) map.append(',');
+            map.append(entry);
+        }
+        YoutubeStreamExtractor.decodeStreamMap(map.toString(), EnumSet.of(ItagItem.ItagType.VIDEO), table,
+                REVERSING_DECRYPTER);
+    }
+
+    private static String entry(int itag, String url, String signature) throws Exception {
+        return "itag=" + itag + "&url=" + URLEncoder.encode(url, "UTF-8") + (signature == null ? "" : "&s=" + signature);
+    }
+}
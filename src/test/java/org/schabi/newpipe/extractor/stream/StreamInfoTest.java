@@ -0,0 +1,589 @@
+package org.schabi.newpipe.extractor.stream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.schabi.newpipe.Downloader;
+import org.schabi.newpipe.extractor.AsyncCallback;
+import org.schabi.newpipe.extractor.Deadline;
+import org.schabi.newpipe.extractor.ExtractionContext;
+import org.schabi.newpipe.extractor.Extractor;
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.RequestFlow;
+import org.schabi.newpipe.extractor.StreamingService;
+import org.schabi.newpipe.extractor.Subtitles;
+import org.schabi.newpipe.extractor.SuggestionExtractor;
+import org.schabi.newpipe.extractor.UrlIdHandler;
+import org.schabi.newpipe.extractor.channel.ChannelExtractor;
+import org.schabi.newpipe.extractor.exceptions.DeadlineExceededException;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.kiosk.KioskList;
+import org.schabi.newpipe.extractor.playlist.PlaylistExtractor;
+import org.schabi.newpipe.extractor.search.SearchEngine;
+import org.schabi.newpipe.extractor.subscription.SubscriptionExtractor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link StreamInfo#getInfo(StreamingService, String, java.util.Set)}
+ * <p>
+ * The extractor used fails the test as soon as a getter of a field which was not requested is called.
+ */
+public class StreamInfoTest {
+    private static final String URL = "https://example.com/watch/1";
+
+    @BeforeClass
+    public static void setUp() {
+        NewPipe.init(Downloader.getInstance());
+    }
+
+    @Test
+    public void testOnlyStreams() throws Exception {
+        StreamInfo info = StreamInfo.getInfo(new FakeService(EnumSet.of(StreamInfoField.STREAMS)), URL,
+                EnumSet.of(StreamInfoField.STREAMS));
+        assertEquals("Title", info.getName());
+        assertEquals(1, info.getAudioStreams().size());
+        assertTrue(info.getVideoStreams().isEmpty());
+        assertNull(info.getUploaderName());
+        assertNull(info.getRelatedStreams());
+        assertTrue(info.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testOnlyMetadata() throws Exception {
+        EnumSet<StreamInfoField> fields = EnumSet.of(StreamInfoField.UPLOADER_NAME, StreamInfoField.VIEW_COUNT);
+        StreamInfo info = StreamInfo.getInfo(new FakeService(fields), URL, fields);
+        assertEquals("Uploader", info.getUploaderName());
+        assertEquals(42, info.getViewCount());
+        // No stream was requested, so not getting any is not an error
+        assertTrue(info.getAudioStreams().isEmpty());
+        assertNull(info.getDashMpdUrl());
+        assertTrue(info.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testAllFields() throws Exception {
+        StreamInfo info = StreamInfo.getInfo(new FakeService(StreamInfoField.ALL), URL);
+        assertEquals("Uploader", info.getUploaderName());
+        assertEquals(1, info.getAudioStreams().size());
+        assertTrue(info.getRelatedStreams().isEmpty());
+    }
+
+    @Test
+    public void testCachedUntilExpiry() throws Exception {
+        StreamInfo.clearCache();
+        final long expire = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        FakeService service = new FakeService(StreamInfoField.ALL, "https://example.com/1.mp3?expire=" + expire);
+
+        StreamInfo info = StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL);
+        assertEquals(TimeUnit.SECONDS.toMillis(expire), info.getExpiryTime());
+        assertEquals(info.getAudioStreams(), StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL).getAudioStreams());
+        assertEquals("Uploader", StreamInfo.getCachedInfo(service, URL, EnumSet.of(StreamInfoField.STREAMS)).getUploaderName());
+        assertEquals(1, service.extractorsCreated);
+
+        // Only getCachedInfo uses the cache
+        StreamInfo.getInfo(service, URL);
+        assertEquals(2, service.extractorsCreated);
+        StreamInfo.clearCache();
+    }
+
+    @Test
+    public void testCachedInfoNotShared() throws Exception {
+        StreamInfo.clearCache();
+        final long expire = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        FakeService service = new FakeService(StreamInfoField.ALL, "https://example.com/1.mp3?expire=" + expire);
+
+        StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL);
+        StreamInfo first = StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL);
+        first.getAudioStreams().clear();
+        first.addError(new Exception("seen by the first caller only"));
+
+        StreamInfo second = StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL);
+        assertNotSame(first, second);
+        assertEquals(1, second.getAudioStreams().size());
+        assertTrue(second.getErrors().isEmpty());
+        second.getAudioStreams().clear();
+        assertEquals(1, StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL).getAudioStreams().size());
+        assertEquals(1, service.extractorsCreated);
+        StreamInfo.clearCache();
+    }
+
+    @Test
+    public void testNotCachedWithoutExpiry() throws Exception {
+        FakeService service = new FakeService(StreamInfoField.ALL);
+        StreamInfo info = StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL);
+        assertEquals(-1, info.getExpiryTime());
+        assertNotSame(info, StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL));
+        assertEquals(2, service.extractorsCreated);
+    }
+
+    @Test
+    public void testNotCachedWhenAboutToExpire() throws Exception {
+        final long expire = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() + StreamInfo.EXPIRY_MARGIN / 2);
+        FakeService service = new FakeService(StreamInfoField.ALL, "https://example.com/1.mp3?expire=" + expire);
+        StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL);
+        StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL);
+        assertEquals(2, service.extractorsCreated);
+    }
+
+    @Test
+    public void testWithExecutor() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            StreamInfo info = StreamInfo.getInfo(new FakeService(StreamInfoField.ALL), URL,
+                    StreamInfoField.ALL, executor);
+            assertEquals("Uploader", info.getUploaderName());
+            assertEquals(1, info.getAudioStreams().size());
+            assertTrue(info.getErrors().isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testNoStreamWithExecutor() throws Exception {
+        final ExtractionContext context = new ExtractionContext(new org.schabi.newpipe.extractor.Downloader() {
+            @Override
+            public String download(String siteUrl, String language) throws IOException {
+                return download(siteUrl);
+            }
+
+            @Override
+            public String download(String siteUrl, Map<String, String> customProperties) throws IOException {
+                return download(siteUrl);
+            }
+
+            @Override
+            public String download(String siteUrl) throws IOException {
+                throw new IOException("403 Forbidden");
+            }
+        });
+        // Fails the test if the optional data is extracted before the streams were checked
+        final FakeService service = new FakeService(EnumSet.of(StreamInfoField.STREAMS, StreamInfoField.DASH_MANIFEST),
+                null, "https://example.com/manifest.mpd");
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            StreamInfo.getInfo(service, URL, StreamInfoField.ALL, executor, context);
+            fail("Expected a StreamExtractException");
+        } catch (StreamInfo.StreamExtractException expected) {
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDashManifestInFlowOfPage() throws Exception {
+        final AtomicReference<RequestFlow> manifestFlow = new AtomicReference<>();
+        final ExtractionContext context = new ExtractionContext(new org.schabi.newpipe.extractor.Downloader() {
+            @Override
+            public String download(String siteUrl, String language) throws IOException {
+                return download(siteUrl);
+            }
+
+            @Override
+            public String download(String siteUrl, Map<String, String> customProperties) throws IOException {
+                return download(siteUrl);
+            }
+
+            @Override
+            public String download(String siteUrl) throws IOException {
+                manifestFlow.set(RequestFlow.current());
+                throw new IOException("404 Not Found");
+            }
+        });
+        final FakeService service = new FakeService(StreamInfoField.ALL, "https://example.com/1.mp3",
+                "https://example.com/manifest.mpd");
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            StreamInfo.getInfo(service, URL, StreamInfoField.ALL, executor, context);
+        } finally {
+            executor.shutdown();
+        }
+        assertNotNull(service.lastExtractor.pageFlow);
+        assertSame(service.lastExtractor.pageFlow, manifestFlow.get());
+        assertNull(RequestFlow.current());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch called = new CountDownLatch(1);
+            final AtomicReference<StreamInfo> result = new AtomicReference<>();
+            Future<StreamInfo> future = StreamInfo.getInfoAsync(new FakeService(StreamInfoField.ALL), URL,
+                    StreamInfoField.ALL, executor, new AsyncCallback<StreamInfo>() {
+                        @Override
+                        public void onSuccess(StreamInfo info) {
+                            result.set(info);
+                            called.countDown();
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            called.countDown();
+                        }
+                    });
+
+            assertTrue(called.await(5, TimeUnit.SECONDS));
+            assertSame(future.get(), result.get());
+            assertEquals("Uploader", result.get().getUploaderName());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncKeepsContext() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final ExtractionContext context = new ExtractionContext(Downloader.getInstance()).withLanguage("de");
+        final ExtractionContext previous = ExtractionContext.setCurrent(context);
+        try {
+            final FakeService service = new FakeService(StreamInfoField.ALL);
+            StreamInfo.getInfoAsync(service, URL, StreamInfoField.ALL, executor, null).get(5, TimeUnit.SECONDS);
+            assertSame(context, service.lastExtractor.getContext());
+        } finally {
+            ExtractionContext.setCurrent(previous);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeadlineOver() throws Exception {
+        final Deadline previous = Deadline.setCurrent(Deadline.after(0, TimeUnit.MILLISECONDS));
+        try {
+            StreamInfo.getInfo(new FakeService(StreamInfoField.ALL), URL);
+            fail("Expected a DeadlineExceededException");
+        } catch (DeadlineExceededException expected) {
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+    }
+
+    @Test
+    public void testContext() throws Exception {
+        final List<Extractor> fetched = Collections.synchronizedList(new ArrayList<Extractor>());
+        final ExtractionContext context = new ExtractionContext(Downloader.getInstance())
+                .withMetrics(new ExtractionContext.MetricsSink() {
+                    @Override
+                    public void onDownload(String url, long millis, @Nullable Exception error) {
+                    }
+
+                    @Override
+                    public void onFetchPage(Extractor extractor, long millis, @Nullable Exception error) {
+                        fetched.add(extractor);
+                    }
+                });
+        final long expire = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        FakeService service = new FakeService(StreamInfoField.ALL, "https://example.com/1.mp3?expire=" + expire);
+
+        StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL, null, context);
+        assertEquals(1, fetched.size());
+        assertSame(context, fetched.get(0).getContext());
+
+        // Derived contexts share the caches, unless asked not to
+        StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL, null, context.withLanguage("de"));
+        assertEquals(1, service.extractorsCreated);
+        StreamInfo.getCachedInfo(service, URL, StreamInfoField.ALL, null, context.withNewCaches());
+        assertEquals(2, service.extractorsCreated);
+
+        try {
+            StreamInfo.getInfo(service, URL, StreamInfoField.ALL, null,
+                    context.withNewCaches().withDeadline(Deadline.after(0, TimeUnit.MILLISECONDS)));
+            fail("Expected a DeadlineExceededException");
+        } catch (DeadlineExceededException expected) {
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Fakes
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static class FakeService extends StreamingService {
+        private final Set<StreamInfoField> allowed;
+        private final String audioUrl;
+        private final String dashMpdUrl;
+        int extractorsCreated = 0;
+        volatile FakeStreamExtractor lastExtractor;
+
+        FakeService(Set<StreamInfoField> allowed) {
+            this(allowed, "https://example.com/1.mp3");
+        }
+
+        FakeService(Set<StreamInfoField> allowed, String audioUrl) {
+            this(allowed, audioUrl, "");
+        }
+
+        /**
+         * @param audioUrl the url of the only audio stream, null for none
+         */
+        FakeService(Set<StreamInfoField> allowed, @Nullable String audioUrl, String dashMpdUrl) {
+            super(99, "Fake", Collections.<ServiceInfo.MediaCapability>emptyList());
+            this.allowed = allowed;
+            this.audioUrl = audioUrl;
+            this.dashMpdUrl = dashMpdUrl;
+        }
+
+        @Override
+        public UrlIdHandler getStreamUrlIdHandler() {
+            return new UrlIdHandler() {
+                @Override
+                public String getUrl(String id) {
+                    return "https://example.com/watch/" + id;
+                }
+
+                @Override
+                public String getId(String url) {
+                    return url.substring(url.lastIndexOf('/') + 1);
+                }
+
+                @Override
+                public String cleanUrl(String complexUrl) {
+                    return complexUrl;
+                }
+
+                @Override
+                public boolean acceptUrl(String url) {
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public StreamExtractor getStreamExtractor(String url) throws IOException, ExtractionException {
+            extractorsCreated++;
+            lastExtractor = new FakeStreamExtractor(this, url, allowed, audioUrl, dashMpdUrl);
+            return lastExtractor;
+        }
+
+        @Override
+        public UrlIdHandler getChannelUrlIdHandler() {
+            return null;
+        }
+
+        @Override
+        public UrlIdHandler getPlaylistUrlIdHandler() {
+            return null;
+        }
+
+        @Override
+        public SearchEngine getSearchEngine() {
+            return null;
+        }
+
+        @Override
+        public SuggestionExtractor getSuggestionExtractor() {
+            return null;
+        }
+
+        @Override
+        public ChannelExtractor getChannelExtractor(String url, String nextPageUrl) {
+            return null;
+        }
+
+        @Override
+        public PlaylistExtractor getPlaylistExtractor(String url, String nextPageUrl) {
+            return null;
+        }
+
+        @Override
+        public KioskList getKioskList() {
+            return null;
+        }
+
+        @Override
+        public SubscriptionExtractor getSubscriptionExtractor() {
+            return null;
+        }
+    }
+
+    private static class FakeStreamExtractor extends StreamExtractor {
+        private final Set<StreamInfoField> allowed;
+        private final String audioUrl;
+        private final String dashMpdUrl;
+        volatile RequestFlow pageFlow;
+
+        FakeStreamExtractor(StreamingService service, String url, Set<StreamInfoField> allowed, String audioUrl,
+                            String dashMpdUrl) throws IOException, ExtractionException {
+            super(service, url);
+            this.allowed = allowed;
+            this.audioUrl = audioUrl;
+            this.dashMpdUrl = dashMpdUrl;
+        }
+
+        private void check(StreamInfoField field) {
+            if (!allowed.contains(field)) throw new AssertionError(field + " was not requested");
+        }
+
+        @Override
+        public void onFetchPage(@Nonnull org.schabi.newpipe.extractor.Downloader downloader) {
+            pageFlow = RequestFlow.current();
+        }
+
+        @Nonnull
+        @Override
+        public String getId() throws ParsingException {
+            return getUrlIdHandler().getId(getOriginalUrl());
+        }
+
+        @Nonnull
+        @Override
+        public String getName() {
+            return "Title";
+        }
+
+        @Override
+        public int getAgeLimit() {
+            return NO_AGE_LIMIT;
+        }
+
+        @Override
+        public StreamType getStreamType() {
+            return StreamType.AUDIO_STREAM;
+        }
+
+        @Nonnull
+        @Override
+        public String getUploadDate() {
+            check(StreamInfoField.UPLOAD_DATE);
+            return "2018-01-01";
+        }
+
+        @Nonnull
+        @Override
+        public String getThumbnailUrl() {
+            check(StreamInfoField.THUMBNAIL);
+            return "";
+        }
+
+        @Nonnull
+        @Override
+        public String getDescription() {
+            check(StreamInfoField.DESCRIPTION);
+            return "";
+        }
+
+        @Override
+        public long getLength() {
+            check(StreamInfoField.DURATION);
+            return 60;
+        }
+
+        @Override
+        public long getTimeStamp() {
+            check(StreamInfoField.START_POSITION);
+            return 0;
+        }
+
+        @Override
+        public long getViewCount() {
+            check(StreamInfoField.VIEW_COUNT);
+            return 42;
+        }
+
+        @Override
+        public long getLikeCount() {
+            check(StreamInfoField.LIKE_COUNT);
+            return -1;
+        }
+
+        @Override
+        public long getDislikeCount() {
+            check(StreamInfoField.DISLIKE_COUNT);
+            return -1;
+        }
+
+        @Nonnull
+        @Override
+        public String getUploaderUrl() {
+            check(StreamInfoField.UPLOADER_URL);
+            return "";
+        }
+
+        @Nonnull
+        @Override
+        public String getUploaderName() {
+            check(StreamInfoField.UPLOADER_NAME);
+            return "Uploader";
+        }
+
+        @Nonnull
+        @Override
+        public String getUploaderAvatarUrl() {
+            check(StreamInfoField.UPLOADER_AVATAR);
+            return "";
+        }
+
+        @Override
+        public String getDashMpdUrl() {
+            check(StreamInfoField.DASH_MANIFEST);
+            return dashMpdUrl;
+        }
+
+        @Override
+        public List<AudioStream> getAudioStreams() {
+            check(StreamInfoField.STREAMS);
+            if (audioUrl == null) return Collections.emptyList();
+            return Collections.singletonList(new AudioStream(audioUrl, MediaFormat.MP3, 128));
+        }
+
+        @Override
+        public List<VideoStream> getVideoStreams() {
+            check(StreamInfoField.STREAMS);
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<VideoStream> getVideoOnlyStreams() {
+            check(StreamInfoField.STREAMS);
+            return Collections.emptyList();
+        }
+
+        @Nonnull
+        @Override
+        public List<Subtitles> getSubtitlesDefault() {
+            check(StreamInfoField.SUBTITLES);
+            return Collections.emptyList();
+        }
+
+        @Nonnull
+        @Override
+        public List<Subtitles> getSubtitles(SubtitlesFormat format) {
+            check(StreamInfoField.SUBTITLES);
+            return Collections.emptyList();
+        }
+
+        @Override
+        public StreamInfoItem getNextVideo() {
+            check(StreamInfoField.NEXT_VIDEO);
+            return null;
+        }
+
+        @Override
+        public StreamInfoItemsCollector getRelatedVideos() {
+            check(StreamInfoField.RELATED_STREAMS);
+            return new StreamInfoItemsCollector(getServiceId());
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.schabi.newpipe.extractor.utils;
+
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.services.youtube.ItagItem;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.Stream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the streaming {@link DashMpdParser} with the DOM based parsing it replaced, on the manifest of the
+ * tests with as many segments per representation as a real ten minutes video has.
+ * <p>
+ * Not a test, run it with {@code gradle benchmark -Pharness=} followed by the name of this class.
+ */
+public class DashMpdParserBenchmark {
+    private static final File MANIFEST = new File("src/test/resources/youtube/dash/manifest.mpd");
+    private static final int SEGMENTS = 120;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws Exception {
+        final byte[] manifest = withSegments(readManifest(), SEGMENTS);
+        if (parse(manifest).getVideoOnlyStreams().size() != parseWithDom(manifest).getVideoOnlyStreams().size()) {
+            throw new AssertionError("The parsers found different streams");
+        }
+
+        // Warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            parse(manifest);
+            parseWithDom(manifest);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parse(manifest);
+        }
+        final long streamingTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parseWithDom(manifest);
+        }
+        final long domTime = System.nanoTime() - start;
+
+        System.out.println(String.format("DashMpdParser: %d kB manifest, streaming %.2f ms, DOM %.2f ms per parse",
+                manifest.length / 1024, streamingTime / 1e6 / ITERATIONS, domTime / 1e6 / ITERATIONS));
+    }
+
+    /**
+     * Repeat the last segment of each list until it has the given number of segments
+     */
+    private static byte[] withSegments(String manifest, int segments) throws Exception {
+        final Matcher matcher = Pattern.compile("( *<SegmentURL media=\"range/\\d+-\\d+\"/>\n)( *</SegmentList>)")
+                .matcher(manifest);
+        final StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            final StringBuilder padding = new StringBuilder();
+            for (int i = 0; i < segments; i++) {
+                padding.append(matcher.group(1));
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(padding + matcher.group(2)));
+        }
+        matcher.appendTail(result);
+        return result.toString().getBytes("UTF-8");
+    }
+
+    private static String readManifest() throws Exception {
+        final byte[] manifest = new byte[(int) MANIFEST.length()];
+        final InputStream in = new FileInputStream(MANIFEST);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < manifest.length && (read = in.read(manifest, offset, manifest.length - offset)) != -1) {
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+        return new String(manifest, "UTF-8");
+    }
+
+    private static StreamInfo newStreamInfo() {
+        StreamInfo streamInfo = new StreamInfo(0, "https://www.youtube.com/watch?v=test", StreamType.VIDEO_STREAM,
+                "test", "Test", 0);
+        streamInfo.setAudioStreams(new ArrayList<AudioStream>());
+        streamInfo.setVideoStreams(new ArrayList<VideoStream>());
+        streamInfo.setVideoOnlyStreams(new ArrayList<VideoStream>());
+        return streamInfo;
+    }
+
+    private static StreamInfo parse(byte[] manifest) throws Exception {
+        StreamInfo streamInfo = newStreamInfo();
+        DashMpdParser.getStreams(streamInfo, new ByteArrayInputStream(manifest));
+        return streamInfo;
+    }
+
+    /**
+     * The DOM based implementation the streaming parser replaced
+     */
+    private static StreamInfo parseWithDom(byte[] manifest) throws Exception {
+        StreamInfo streamInfo = newStreamInfo();
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        Document doc = factory.newDocumentBuilder().parse(new ByteArrayInputStream(manifest));
+        NodeList representationList = doc.getElementsByTagName("Representation");
+
+        for (int i = 0; i < representationList.getLength(); i++) {
+            Element representation = ((Element) representationList.item(i));
+            try {
+                String mimeType = ((Element) representation.getParentNode()).getAttribute("mimeType");
+                String id = representation.getAttribute("id");
+                String url = representation.getElementsByTagName("BaseURL").item(0).getTextContent();
+                ItagItem itag = ItagItem.getItag(Integer.parseInt(id));
+                MediaFormat mediaFormat = MediaFormat.getFromMimeType(mimeType);
+
+                if (itag.itagType.equals(ItagItem.ItagType.AUDIO)) {
+                    AudioStream audioStream = new AudioStream(url, mediaFormat, itag.avgBitrate);
+                    if (!Stream.containSimilarStream(audioStream, streamInfo.audio_streams)) {
+                        streamInfo.audio_streams.add(audioStream);
+                    }
+                } else {
+                    boolean isVideoOnly = itag.itagType.equals(ItagItem.ItagType.VIDEO_ONLY);
+                    VideoStream videoStream = new VideoStream(url, mediaFormat, itag.resolutionString, isVideoOnly);
+                    if (isVideoOnly) {
+                        if (!Stream.containSimilarStream(videoStream, streamInfo.video_only_streams)) {
+                            streamInfo.video_only_streams.add(videoStream);
+                        }
+                    } else if (!Stream.containSimilarStream(videoStream, streamInfo.video_streams)) {
+                        streamInfo.video_streams.add(videoStream);
+                    }
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        return streamInfo;
+    }
+}
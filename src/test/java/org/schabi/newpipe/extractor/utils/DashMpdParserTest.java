@@ -0,0 +1,135 @@
+package org.schabi.newpipe.extractor.utils;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.Stream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link DashMpdParser}
+ */
+public class DashMpdParserTest {
+    private static final File MANIFEST = new File("src/test/resources/youtube/dash/manifest.mpd");
+
+    @Test
+    public void testGetStreams() throws Exception {
+        StreamInfo streamInfo = parse(readManifest());
+
+        // 251 and 134 are not supported
+        assertEquals(5, streamInfo.getAudioStreams().size());
+        assertTrue(streamInfo.getVideoStreams().isEmpty());
+        assertEquals(13, streamInfo.getVideoOnlyStreams().size());
+
+        for (Stream stream : streamInfo.getAudioStreams()) {
+            assertTrue(stream.getUrl(), stream.getUrl().startsWith("https://"));
+            assertTrue(stream.getUrl(), stream.getUrl().endsWith("/ipbits/0/"));
+        }
+        assertEquals(MediaFormat.M4A, streamInfo.getAudioStreams().get(0).getFormat());
+    }
+
+    @Test
+    public void testStreamsOfManifest() throws Exception {
+        StreamInfo streamInfo = parse(readManifest());
+
+        // In the order of the manifest
+        assertEquals(Arrays.asList("139", "140", "141", "171", "172"), itags(streamInfo.getAudioStreams()));
+        final MediaFormat[] audioFormats = {MediaFormat.M4A, MediaFormat.M4A, MediaFormat.M4A,
+                MediaFormat.WEBMA, MediaFormat.WEBMA};
+        final int[] bitrates = {48, 128, 256, 128, 256};
+        for (int i = 0; i < bitrates.length; i++) {
+            final AudioStream stream = streamInfo.getAudioStreams().get(i);
+            assertEquals(audioFormats[i], stream.getFormat());
+            assertEquals(bitrates[i], stream.getAverageBitrate());
+        }
+
+        assertEquals(Arrays.asList("160", "133", "135", "137", "298", "299", "278", "242", "244", "247", "248",
+                "302", "303"), itags(streamInfo.getVideoOnlyStreams()));
+        final String[] resolutions = {"144p", "240p", "480p", "1080p", "720p60", "1080p60",
+                "144p", "240p", "480p", "720p", "1080p", "720p60", "1080p60"};
+        for (int i = 0; i < resolutions.length; i++) {
+            final VideoStream stream = streamInfo.getVideoOnlyStreams().get(i);
+            assertEquals(i < 6 ? MediaFormat.MPEG_4 : MediaFormat.WEBM, stream.getFormat());
+            assertEquals(resolutions[i], stream.getResolution());
+            assertTrue(stream.isVideoOnly);
+        }
+    }
+
+    @Test
+    public void testKeepsExistingStreams() throws Exception {
+        StreamInfo streamInfo = newStreamInfo();
+        AudioStream existing = new AudioStream("https://example.com/audio", MediaFormat.M4A, 128);
+        streamInfo.getAudioStreams().add(existing);
+
+        DashMpdParser.getStreams(streamInfo, new ByteArrayInputStream(readManifest()));
+
+        // The 128kbps m4a stream of the manifest is similar to the existing one
+        assertEquals(5, streamInfo.getAudioStreams().size());
+        assertSame(existing, streamInfo.getAudioStreams().get(0));
+    }
+
+    @Test(expected = DashMpdParser.DashMpdParsingException.class)
+    public void testInvalidManifest() throws Exception {
+        DashMpdParser.getStreams(newStreamInfo(), new ByteArrayInputStream("<MPD><Period>".getBytes("UTF-8")));
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Utils
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static byte[] readManifest() throws IOException {
+        final byte[] manifest = new byte[(int) MANIFEST.length()];
+        final InputStream in = new FileInputStream(MANIFEST);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < manifest.length && (read = in.read(manifest, offset, manifest.length - offset)) != -1) {
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+        return manifest;
+    }
+
+    private static StreamInfo newStreamInfo() {
+        StreamInfo streamInfo = new StreamInfo(0, "https://www.youtube.com/watch?v=test", StreamType.VIDEO_STREAM,
+                "test", "Test", 0);
+        streamInfo.setAudioStreams(new ArrayList<AudioStream>());
+        streamInfo.setVideoStreams(new ArrayList<VideoStream>());
+        streamInfo.setVideoOnlyStreams(new ArrayList<VideoStream>());
+        return streamInfo;
+    }
+
+    private static StreamInfo parse(byte[] manifest) throws Exception {
+        StreamInfo streamInfo = newStreamInfo();
+        DashMpdParser.getStreams(streamInfo, new ByteArrayInputStream(manifest));
+        return streamInfo;
+    }
+
+    /**
+     * The itags in the urls of the streams
+     */
+    private static List<String> itags(List<? extends Stream> streams) {
+        List<String> itags = new ArrayList<>();
+        for (Stream stream : streams) {
+            final String url = stream.getUrl();
+            final int start = url.indexOf("/itag/") + "/itag/".length();
+            itags.add(url.substring(start, url.indexOf('/', start)));
+        }
+        return itags;
+    }
+}
@@ -0,0 +1,108 @@
+package org.schabi.newpipe.extractor.utils;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link ExpiringCache}
+ */
+public class ExpiringCacheTest {
+
+    @Test
+    public void testExpiredEntriesAreDropped() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(4, 60000);
+        cache.put("valid", "value");
+        cache.put("expired", "value", System.currentTimeMillis() - 1);
+
+        assertEquals("value", cache.getIfPresent("valid"));
+        assertNull(cache.getIfPresent("expired"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(2, 60000);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.getIfPresent(1);
+        cache.put(3, "three");
+
+        assertEquals("one", cache.getIfPresent(1));
+        assertNull(cache.getIfPresent(2));
+        assertEquals("three", cache.getIfPresent(3));
+    }
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(4, 60000);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExpiringCache.Loader<String, String> loader = new ExpiringCache.Loader<String, String>() {
+            @Nonnull
+            @Override
+            public String load(String key) throws IOException, ExtractionException {
+                loads.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return key.toUpperCase();
+            }
+        };
+
+        final List<String> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        String result = cache.get("player", loader);
+                        synchronized (results) {
+                            results.add(result);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(1, loads.get());
+        assertEquals(16, results.size());
+        for (String result : results) assertEquals("PLAYER", result);
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(4, 60000);
+        try {
+            cache.get("key", new ExpiringCache.Loader<String, String>() {
+                @Nonnull
+                @Override
+                public String load(String key) throws IOException {
+                    throw new IOException("failed");
+                }
+            });
+            fail("Loader exception should be propagated");
+        } catch (IOException expected) {
+            assertEquals("failed", expected.getMessage());
+        }
+        assertNull(cache.getIfPresent("key"));
+    }
+}
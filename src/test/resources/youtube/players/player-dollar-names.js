@@ -0,0 +1,7 @@
+var _yt_player={};(function(g){var window=this;
+var $q={x1:function(a){a.reverse()},
+J$:function(a,b){var c=a[0];a[0]=a[b%a.length];a[b]=c},
+Ym:function(a,b){a.splice(0,b)}};
+var Hl=function(a){a=a.split("");$q.x1(a,40);$q.J$(a,18);$q.Ym(a,2);$q.J$(a,45);$q.x1(a,22);$q.Ym(a,1);return a.join("")};
+var r$=function(a,b){a.s&&b.set("signature",Hl(a.s));return b};
+})(_yt_player);
@@ -0,0 +1,9 @@
+var _yt_player={};(function(g){var window=this;var aa,ba;
+var nw=function(a,b){if(a.g)return a.g.get(b);return null};
+var zw={oL:function(a,b){a.splice(0,b)},
+VR:function(a){a.reverse()},
+Ne:function(a,b){var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c}};
+var yw=function(a){a=a.split("");zw.VR(a,9);zw.Ne(a,31);zw.oL(a,1);zw.Ne(a,3);zw.VR(a,51);zw.oL(a,3);zw.Ne(a,64);return a.join("")};
+var Ow=function(a,b){var d=a.s;d&&b.set("signature",yw(d));return b};
+g.Pw=function(a){this.url=a;this.g=null};
+})(_yt_player);
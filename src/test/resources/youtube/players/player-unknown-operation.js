@@ -0,0 +1,7 @@
+var _yt_player={};(function(g){var window=this;
+var Kf={Rt:function(a,b){a.splice(0,b)},
+pq:function(a,b){for(var c=0;c<b;c++)a.push(a.shift())},
+mA:function(a){a.reverse()}};
+var eS=function(a){a=a.split("");Kf.mA(a,3);Kf.pq(a,7);Kf.Rt(a,2);Kf.mA(a,60);return a.join("")};
+var fS=function(a,b){b.set("signature",eS(a.s));return b};
+})(_yt_player);